@@ -0,0 +1,54 @@
+package com.example.invoiceapi.benchmark;
+
+import com.example.invoiceapi.util.Base64Helper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base64 cleanup and decoding, as done by {@link Base64Helper#safeBase64Decode(String)} and,
+ * with the same steps, by the InvoiceService decode stage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Base64Benchmark {
+
+    @Param({InvoiceFixtures.MINIMAL, "64KB", "1MB", "4MB"})
+    public String invoiceSize;
+
+    private String base64;
+
+    /** The same payload wrapped at 76 characters, as pasted from mail clients and PEM-style tools. */
+    private String wrappedBase64;
+
+    @Setup
+    public void setUp() {
+        InvoiceFixtures.quietLogging();
+        base64 = InvoiceFixtures.base64(invoiceSize);
+        wrappedBase64 = base64.replaceAll("(.{76})", "$1\r\n");
+    }
+
+    @Benchmark
+    public String safeBase64Decode() {
+        return Base64Helper.safeBase64Decode(base64);
+    }
+
+    @Benchmark
+    public String safeBase64DecodeWrapped() {
+        return Base64Helper.safeBase64Decode(wrappedBase64);
+    }
+}
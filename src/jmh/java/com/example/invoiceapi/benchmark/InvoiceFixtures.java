@@ -0,0 +1,180 @@
+package com.example.invoiceapi.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.example.invoiceapi.config.XmlProperties;
+import com.example.invoiceapi.model.InvoiceEntity;
+import com.example.invoiceapi.repository.InvoiceRepository;
+import com.example.invoiceapi.service.InvoiceService;
+import com.example.invoiceapi.service.RecentInvoiceCache;
+import com.example.invoiceapi.service.SchemaRegistry;
+import com.example.invoiceapi.service.XmlEngine;
+import com.example.invoiceapi.util.Base64Helper;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Synthetic invoices and wiring shared by the benchmarks.
+ */
+public final class InvoiceFixtures {
+
+    /** Benchmark parameter values for the invoice size; "minimal" is the example from Base64Helper. */
+    public static final String MINIMAL = "minimal";
+
+    private static final String PADDING_LINE = "  <!-- " + "x".repeat(56) + " -->\n";
+
+    private InvoiceFixtures() {
+    }
+
+    /**
+     * Builds a valid invoice of roughly the requested size by padding the example invoice
+     * with XML comments, which the schema ignores but every parser still has to read.
+     *
+     * @param size "minimal", or a size such as "64KB" or "4MB"
+     * @return The invoice XML
+     */
+    public static String xml(String size) {
+        String example = Base64Helper.generateExample().get("xml");
+        if (MINIMAL.equals(size)) {
+            return example;
+        }
+        int target = parseSize(size);
+        int lines = Math.max(0, (target - example.length()) / PADDING_LINE.length());
+        StringBuilder xml = new StringBuilder(target + PADDING_LINE.length());
+        int split = example.indexOf("  <Fa>");
+        xml.append(example, 0, split);
+        for (int i = 0; i < lines; i++) {
+            xml.append(PADDING_LINE);
+        }
+        xml.append(example, split, example.length());
+        return xml.toString();
+    }
+
+    /**
+     * Builds a valid invoice with the given number of line items, all at 23% VAT, with the
+     * matching declared totals.
+     */
+    public static byte[] xmlWithLines(int lines) {
+        String example = Base64Helper.generateExample().get("xml");
+        int split = example.indexOf("  </Fa>");
+        BigDecimal net = new BigDecimal("10.00").multiply(BigDecimal.valueOf(lines));
+        BigDecimal vat = new BigDecimal("2.30").multiply(BigDecimal.valueOf(lines));
+        StringBuilder xml = new StringBuilder(example.length() + lines * 200);
+        xml.append(example, 0, split)
+                .append("    <P_13_1>").append(net).append("</P_13_1>\n")
+                .append("    <P_14_1>").append(vat).append("</P_14_1>\n")
+                .append("    <P_15>").append(net.add(vat)).append("</P_15>\n");
+        for (int i = 1; i <= lines; i++) {
+            xml.append("    <FaWiersz><NrWierszaFa>").append(i).append("</NrWierszaFa><P_7>Pozycja ").append(i)
+                    .append("</P_7><P_8A>szt</P_8A><P_8B>4</P_8B><P_9A>2.50</P_9A><P_11>10.00</P_11><P_12>23</P_12></FaWiersz>\n");
+        }
+        xml.append(example, split, example.length());
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static String base64(String size) {
+        return Base64.getEncoder().encodeToString(xml(size).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * An InvoiceRepository that only supports save/saveAll, assigns ids in memory and never
+     * finds an existing invoice.
+     */
+    public static InvoiceRepository inMemoryRepository() {
+        AtomicLong ids = new AtomicLong();
+        return (InvoiceRepository) Proxy.newProxyInstance(InvoiceRepository.class.getClassLoader(),
+                new Class<?>[]{InvoiceRepository.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "save" -> {
+                            ((InvoiceEntity) args[0]).setId(ids.incrementAndGet());
+                            return args[0];
+                        }
+                        case "saveAll" -> {
+                            for (Object entity : (Iterable<?>) args[0]) {
+                                ((InvoiceEntity) entity).setId(ids.incrementAndGet());
+                            }
+                            return args[0];
+                        }
+                        case "findFirstByContentHashOrNipAndP2" -> {
+                            return Optional.empty();
+                        }
+                        case "findByContentHashInOrNipInAndP2In" -> {
+                            return List.of();
+                        }
+                        case "hashCode" -> {
+                            return System.identityHashCode(proxy);
+                        }
+                        case "equals" -> {
+                            return proxy == args[0];
+                        }
+                        case "toString" -> {
+                            return "InMemoryInvoiceRepository";
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * Wraps a repository so that every call first blocks for the given time, like a JDBC round trip.
+     */
+    public static InvoiceRepository blockingRepository(InvoiceRepository delegate, long millis) {
+        return (InvoiceRepository) Proxy.newProxyInstance(InvoiceRepository.class.getClassLoader(),
+                new Class<?>[]{InvoiceRepository.class}, (proxy, method, args) -> {
+                    if (method.getDeclaringClass() != Object.class) {
+                        Thread.sleep(millis);
+                    }
+                    try {
+                        return method.invoke(delegate, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * A service without the recent-invoice cache, so every call runs the whole pipeline.
+     */
+    public static InvoiceService invoiceService(XmlEngine xmlEngine, XmlProperties properties) {
+        return invoiceService(xmlEngine, properties, 0);
+    }
+
+    public static InvoiceService invoiceService(XmlEngine xmlEngine, XmlProperties properties, int cacheSize) {
+        return invoiceService(xmlEngine, properties, cacheSize, inMemoryRepository());
+    }
+
+    public static InvoiceService invoiceService(XmlEngine xmlEngine, XmlProperties properties, int cacheSize,
+                                                InvoiceRepository repository) {
+        return InvoiceService.builder(new SchemaRegistry(xmlEngine, 0))
+                .repository(repository)
+                .xmlProperties(properties)
+                .recentInvoices(new RecentInvoiceCache(cacheSize))
+                .build();
+    }
+
+    /**
+     * The service logs every stage at INFO/DEBUG; silence it so the benchmarks measure parsing, not logging.
+     */
+    public static void quietLogging() {
+        ((Logger) LoggerFactory.getLogger("com.example.invoiceapi")).setLevel(Level.WARN);
+    }
+
+    private static int parseSize(String size) {
+        String value = size.toUpperCase();
+        if (value.endsWith("MB")) {
+            return Integer.parseInt(value.substring(0, value.length() - 2)) * 1024 * 1024;
+        }
+        if (value.endsWith("KB")) {
+            return Integer.parseInt(value.substring(0, value.length() - 2)) * 1024;
+        }
+        return Integer.parseInt(value);
+    }
+}
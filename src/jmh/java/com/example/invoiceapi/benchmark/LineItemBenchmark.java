@@ -0,0 +1,62 @@
+package com.example.invoiceapi.benchmark;
+
+import com.example.invoiceapi.service.InvoiceLineReader;
+import com.example.invoiceapi.service.InvoiceTotals;
+import com.example.invoiceapi.service.SchemaRegistry;
+import com.example.invoiceapi.service.XmlEngine;
+import com.example.invoiceapi.util.DocumentCompression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading, checking and totalling the line items of an invoice with {@link InvoiceLineReader},
+ * from the uncompressed XML (as while an invoice is prepared) and from the stored compressed
+ * document (as when its lines are inserted). With {@code -prof gc} the allocation per line stays
+ * flat as {@code lines} grows, since no line outlives its own step.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineItemBenchmark {
+
+    @Param({"10", "1000", "50000"})
+    public int lines;
+
+    private InvoiceLineReader reader;
+    private byte[] xml;
+    private byte[] compressed;
+
+    @Setup
+    public void setUp() {
+        InvoiceFixtures.quietLogging();
+        reader = new InvoiceLineReader(new SchemaRegistry(new XmlEngine(4), 4));
+        xml = InvoiceFixtures.xmlWithLines(lines);
+        compressed = DocumentCompression.deflate(xml, 0, xml.length);
+    }
+
+    @Benchmark
+    public InvoiceTotals readLines(Blackhole blackhole) {
+        return reader.read(new ByteArrayInputStream(xml), blackhole::consume);
+    }
+
+    @Benchmark
+    public InvoiceTotals readLinesFromStoredDocument(Blackhole blackhole) {
+        return reader.read(DocumentCompression.inflating(compressed), blackhole::consume);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.invoiceapi.benchmark;
+
+import com.example.invoiceapi.config.XmlProperties;
+import com.example.invoiceapi.dto.InvoiceResult;
+import com.example.invoiceapi.service.InvoiceService;
+import com.example.invoiceapi.service.XmlEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link InvoiceService#processInvoice(String)} against an in-memory repository,
+ * in each combination of validation pass and extraction mode. {@code processDuplicate} measures
+ * a resubmission answered from the recent-invoice cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+    @Param({InvoiceFixtures.MINIMAL, "64KB", "1MB", "4MB"})
+    public String invoiceSize;
+
+    @Param({"SINGLE_PASS", "TWO_PASS", "STAX"})
+    public String mode;
+
+    private InvoiceService invoiceService;
+    private InvoiceService cachingInvoiceService;
+    private String base64;
+
+    @Setup
+    public void setUp() {
+        InvoiceFixtures.quietLogging();
+        XmlProperties properties = new XmlProperties();
+        properties.getValidation().setSinglePass(!"TWO_PASS".equals(mode));
+        if ("STAX".equals(mode)) {
+            properties.getExtraction().setMode(XmlProperties.ExtractionMode.STAX);
+        }
+        invoiceService = InvoiceFixtures.invoiceService(new XmlEngine(4), properties);
+        base64 = InvoiceFixtures.base64(invoiceSize);
+        cachingInvoiceService = InvoiceFixtures.invoiceService(new XmlEngine(4), properties, 16);
+        cachingInvoiceService.processInvoice(base64);
+    }
+
+    @Benchmark
+    public InvoiceResult processInvoice() {
+        return invoiceService.processInvoice(base64);
+    }
+
+    @Benchmark
+    public InvoiceResult processDuplicate() {
+        return cachingInvoiceService.processInvoice(base64);
+    }
+}
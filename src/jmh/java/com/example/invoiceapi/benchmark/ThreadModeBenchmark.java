@@ -0,0 +1,99 @@
+package com.example.invoiceapi.benchmark;
+
+import com.example.invoiceapi.config.XmlProperties;
+import com.example.invoiceapi.dto.InvoiceResult;
+import com.example.invoiceapi.service.InvoiceService;
+import com.example.invoiceapi.service.XmlEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InvoiceService#processInvoice(String)} for {@value #REQUESTS} concurrent requests whose
+ * database calls block for {@code persistMillis} each, run on a fixed pool of platform threads
+ * the size of Tomcat's default ({@code server.tomcat.threads.max}) or on one virtual thread per
+ * request, as with {@code spring.threads.virtual.enabled=true}. The score is requests per second.
+ * <p>
+ * The virtual mode needs Java 21: {@code mvn -Pjava21,jmh test-compile exec:exec -Djmh.args=ThreadMode}.
+ * Pinned carrier threads are printed by {@code -Djdk.tracePinnedThreads=short}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.tracePinnedThreads=short")
+@OperationsPerInvocation(ThreadModeBenchmark.REQUESTS)
+public class ThreadModeBenchmark {
+
+    static final int REQUESTS = 2000;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"5"})
+    public long persistMillis;
+
+    @Param({"200"})
+    public int platformThreads;
+
+    private ExecutorService platformPool;
+    private AsyncTaskExecutor executor;
+    private InvoiceService invoiceService;
+    private String base64;
+
+    @Setup
+    public void setUp() {
+        InvoiceFixtures.quietLogging();
+        if ("virtual".equals(threads)) {
+            // Java 21 öncesinde UnsupportedOperationException fırlatır
+            executor = new VirtualThreadTaskExecutor("invoice-virtual-");
+        } else {
+            platformPool = Executors.newFixedThreadPool(platformThreads);
+            executor = new TaskExecutorAdapter(platformPool);
+        }
+        invoiceService = InvoiceFixtures.invoiceService(new XmlEngine(0), new XmlProperties(), 0,
+                InvoiceFixtures.blockingRepository(InvoiceFixtures.inMemoryRepository(), persistMillis));
+        base64 = InvoiceFixtures.base64(InvoiceFixtures.MINIMAL);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (platformPool != null) {
+            platformPool.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public List<InvoiceResult> processConcurrently() throws Exception {
+        List<Future<InvoiceResult>> futures = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            futures.add(executor.submit(() -> invoiceService.processInvoice(base64)));
+        }
+        List<InvoiceResult> results = new ArrayList<>(REQUESTS);
+        for (Future<InvoiceResult> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.invoiceapi.benchmark;
+
+import com.example.invoiceapi.dto.InvoiceFields;
+import com.example.invoiceapi.service.InvoiceFieldExtractor;
+import com.example.invoiceapi.service.XmlEngine;
+import com.example.invoiceapi.xml.Faktura;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * XSD validation against schemat.xsd, JAXB unmarshalling of {@link Faktura}, the single-pass
+ * combination of both, and the StAX field extractor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlBenchmark {
+
+    @Param({InvoiceFixtures.MINIMAL, "64KB", "1MB", "4MB"})
+    public String invoiceSize;
+
+    private XmlEngine xmlEngine;
+    private InvoiceFieldExtractor extractor;
+    private String xml;
+
+    @Setup
+    public void setUp() {
+        InvoiceFixtures.quietLogging();
+        xmlEngine = new XmlEngine(4);
+        extractor = new InvoiceFieldExtractor();
+        xml = InvoiceFixtures.xml(invoiceSize);
+    }
+
+    @Benchmark
+    public void validate() throws Exception {
+        xmlEngine.validate(new StreamSource(new StringReader(xml)));
+    }
+
+    @Benchmark
+    public Faktura unmarshal() throws Exception {
+        return xmlEngine.unmarshal(new StreamSource(new StringReader(xml)));
+    }
+
+    @Benchmark
+    public Faktura validateAndUnmarshalSinglePass() throws Exception {
+        return xmlEngine.unmarshalValidated(new StreamSource(new StringReader(xml)));
+    }
+
+    @Benchmark
+    public InvoiceFields staxExtract() {
+        return extractor.extract(new StreamSource(new StringReader(xml)));
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.invoiceapi.load;
+
+import com.example.invoiceapi.InvoiceApiApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives {@code POST /api/invoices} with {@link SyntheticInvoices} at a fixed concurrency and,
+ * optionally, a fixed request rate, and prints throughput, latency percentiles and status counts
+ * as JSON.
+ * <p>
+ * Without {@code --target} the application is started in this JVM on a random port with an
+ * in-memory H2 database, rate limits off and service logging at WARN, so a run needs no network
+ * or PostgreSQL. With a rate, requests are scheduled at fixed intervals and latency is measured
+ * from the scheduled time, so a slow response also counts against the requests queued behind it
+ * (no coordinated omission). Results of the warm-up phase are discarded.
+ * <pre>
+ * mvn -Pload test-compile exec:exec -Dload.args="concurrency=32 rate=500 duration=60s mix=valid=90,schema_violation=10"
+ * </pre>
+ * Options, each {@code name=value} with an optional leading {@code --}: {@code target=http://host:8080},
+ * {@code concurrency=16}, {@code rate=0} (requests per second, 0 = as fast as the workers go),
+ * {@code duration=30s}, {@code requests=0} (stop after this many instead), {@code warmup=5s},
+ * {@code mix=valid=100}, {@code sizes=minimal=100} (for example {@code minimal=70,64KB=25,1MB=5}),
+ * {@code timeout=30s}, {@code output=report.json}. Options starting with {@code app.} are passed to
+ * the embedded application, for example {@code app.xml.extraction.mode=stax}.
+ */
+public final class LoadTest {
+
+    private final Map<String, String> options;
+    private final SyntheticInvoices invoices;
+    private final HttpClient client;
+    private final URI uri;
+    private final int concurrency;
+    private final double rate;
+    private final Duration timeout;
+
+    private LoadTest(Map<String, String> options, String target) {
+        this.options = options;
+        this.invoices = new SyntheticInvoices(SyntheticInvoices.parseMix(option("mix", "valid=100")),
+                SyntheticInvoices.parseSizes(option("sizes", "minimal=100")));
+        this.concurrency = Integer.parseInt(option("concurrency", "16"));
+        this.rate = Double.parseDouble(option("rate", "0"));
+        this.timeout = duration(option("timeout", "30s"));
+        this.uri = URI.create(target.replaceAll("/+$", "") + "/api/invoices");
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String target = options.getOrDefault("target", "");
+        ConfigurableApplicationContext app = target.isEmpty() ? startEmbedded(options) : null;
+        try {
+            if (app != null) {
+                target = "http://localhost:" + ((WebServerApplicationContext) app).getWebServer().getPort();
+            }
+            LoadTest test = new LoadTest(options, target);
+            Duration warmup = duration(test.option("warmup", "5s"));
+            if (!warmup.isZero()) {
+                System.err.println("Warming up for " + warmup + " against " + test.uri);
+                test.run(warmup, 0);
+            }
+            long requests = Long.parseLong(test.option("requests", "0"));
+            Duration duration = requests > 0 ? Duration.ofDays(1) : duration(test.option("duration", "30s"));
+            System.err.println("Measuring " + (requests > 0 ? requests + " requests" : "for " + duration));
+            Map<String, Object> report = test.run(duration, requests).report(test, target);
+
+            String json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report);
+            System.out.println(json);
+            String output = options.get("output");
+            if (output != null) {
+                Files.writeString(Path.of(output), json);
+            }
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startEmbedded(Map<String, String> options) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create");
+        // İstek başına INFO/DEBUG logları ölçümü bozar
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.example.invoiceapi", "WARN");
+        properties.put("logging.level.org.hibernate.SQL", "WARN");
+        properties.put("logging.level.org.hibernate.type.descriptor.sql.BasicBinder", "WARN");
+        properties.put("spring.jpa.show-sql", "false");
+        options.forEach((key, value) -> {
+            if (key.startsWith("app.")) {
+                properties.put(key.substring(4), value);
+            }
+        });
+        // Komut satırı argümanı olarak: application.properties'teki PostgreSQL ayarlarını ezer
+        return new SpringApplicationBuilder(InvoiceApiApplication.class)
+                .run(properties.entrySet().stream().map(e -> "--" + e.getKey() + "=" + e.getValue()).toArray(String[]::new));
+    }
+
+    /**
+     * Sends requests from {@code concurrency} threads until the duration has passed or the
+     * number of requests has been sent.
+     *
+     * @param requests Requests to send, or 0 to run for the whole duration
+     */
+    private Results run(Duration duration, long requests) throws InterruptedException {
+        AtomicLong tickets = new AtomicLong();
+        long intervalNanos = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        List<Worker> workers = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Worker worker = new Worker(tickets, start, deadline, intervalNanos, requests);
+            worker.setName("load-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+        Results results = new Results();
+        for (Worker worker : workers) {
+            worker.join();
+            results.add(worker.results);
+        }
+        results.elapsedNanos = System.nanoTime() - start;
+        return results;
+    }
+
+    private final class Worker extends Thread {
+
+        private final AtomicLong tickets;
+        private final long start;
+        private final long deadline;
+        private final long intervalNanos;
+        private final long requests;
+        private final Results results = new Results();
+
+        Worker(AtomicLong tickets, long start, long deadline, long intervalNanos, long requests) {
+            this.tickets = tickets;
+            this.start = start;
+            this.deadline = deadline;
+            this.intervalNanos = intervalNanos;
+            this.requests = requests;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                long ticket = tickets.getAndIncrement();
+                if (requests > 0 && ticket >= requests) {
+                    return;
+                }
+                long scheduled = intervalNanos > 0 ? start + ticket * intervalNanos : System.nanoTime();
+                if (scheduled - deadline >= 0) {
+                    return;
+                }
+                long wait;
+                while ((wait = scheduled - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                SyntheticInvoices.Invoice invoice = invoices.next();
+                HttpRequest request = HttpRequest.newBuilder(uri)
+                        .timeout(timeout)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(invoice.body()))
+                        .build();
+                int status;
+                try {
+                    status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    status = 0;
+                }
+                results.record(invoice, status, System.nanoTime() - scheduled);
+            }
+        }
+    }
+
+    /**
+     * Latencies and counts of one worker, merged into one instance at the end of a run.
+     */
+    private static final class Results {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private long xmlBytes;
+        private long elapsedNanos;
+        private final Map<Integer, Long> statuses = new TreeMap<>();
+        private final Map<SyntheticInvoices.Kind, long[]> kinds = new EnumMap<>(SyntheticInvoices.Kind.class);
+
+        void record(SyntheticInvoices.Invoice invoice, int status, long latencyNanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            xmlBytes += invoice.xmlSize();
+            statuses.merge(status, 1L, Long::sum);
+            long[] perKind = kinds.computeIfAbsent(invoice.kind(), kind -> new long[2]);
+            perKind[0]++;
+            if (!invoice.kind().isExpected(status)) {
+                perKind[1]++;
+            }
+        }
+
+        void add(Results other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, count + other.count);
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            xmlBytes += other.xmlBytes;
+            other.statuses.forEach((status, n) -> statuses.merge(status, n, Long::sum));
+            other.kinds.forEach((kind, n) -> {
+                long[] perKind = kinds.computeIfAbsent(kind, k -> new long[2]);
+                perKind[0] += n[0];
+                perKind[1] += n[1];
+            });
+        }
+
+        Map<String, Object> report(LoadTest test, String target) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            double seconds = elapsedNanos / 1e9;
+
+            Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("p50", millis(percentile(sorted, 0.50)));
+            latency.put("p95", millis(percentile(sorted, 0.95)));
+            latency.put("p99", millis(percentile(sorted, 0.99)));
+            latency.put("p999", millis(percentile(sorted, 0.999)));
+            latency.put("max", millis(count == 0 ? 0 : sorted[count - 1]));
+            latency.put("mean", millis(count == 0 ? 0 : (long) Arrays.stream(sorted).average().orElse(0)));
+
+            Map<String, Object> perKind = new LinkedHashMap<>();
+            kinds.forEach((kind, n) -> {
+                Map<String, Long> counts = new LinkedHashMap<>();
+                counts.put("requests", n[0]);
+                counts.put("unexpectedStatus", n[1]);
+                perKind.put(kind.name(), counts);
+            });
+            Map<String, Long> status = new LinkedHashMap<>();
+            // 0: bağlantı hatası ya da zaman aşımı
+            statuses.forEach((code, n) -> status.put(code == 0 ? "error" : code.toString(), n));
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("target", target);
+            report.put("concurrency", test.concurrency);
+            report.put("targetRate", test.rate);
+            report.put("mix", test.option("mix", "valid=100"));
+            report.put("sizes", test.option("sizes", "minimal=100"));
+            report.put("durationSeconds", round(seconds));
+            report.put("requests", count);
+            report.put("throughput", round(count / seconds));
+            report.put("xmlMegabytesPerSecond", round(xmlBytes / seconds / (1024 * 1024)));
+            report.put("latencyMs", latency);
+            report.put("status", status);
+            report.put("kinds", perKind);
+            return report;
+        }
+
+        private static long percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+
+        private static double millis(long nanos) {
+            return Math.round(nanos / 1_000.0) / 1_000.0;
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 100.0) / 100.0;
+        }
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            // Baştaki "--" isteğe bağlı; pom.xml yorumlarında "--" yazılamıyor
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int split = option.indexOf('=');
+            if (split <= 0) {
+                throw new IllegalArgumentException("Expected name=value, got '" + arg + "'");
+            }
+            options.put(option.substring(0, split), option.substring(split + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Parses {@code "500ms"}, {@code "30s"} or {@code "2m"}.
+     */
+    private static Duration duration(String value) {
+        String text = value.trim().toLowerCase();
+        if (text.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(text.substring(0, text.length() - 2)));
+        }
+        if (text.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(text.substring(0, text.length() - 1)));
+        }
+        if (text.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(text.substring(0, text.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(text));
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.invoiceapi.load;
+
+import com.example.invoiceapi.util.Base64Helper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates the request bodies of a load test from the example invoice of
+ * {@link Base64Helper#generateExample()}: valid invoices with a fresh NIP and invoice number each,
+ * so every one is stored as a new row, resubmissions of one fixed invoice, and several kinds of
+ * invalid documents, drawn by weight. Documents are padded with XML comments to the drawn size,
+ * which the schema ignores but the parser still has to read.
+ */
+public final class SyntheticInvoices {
+
+    public enum Kind {
+        /** A new invoice; answered with 201. */
+        VALID(201),
+        /** The same invoice every time; answered with 201 once, then with 200 and "duplicate": true. */
+        DUPLICATE(200),
+        /** Well-formed but without the required P_2; rejected by the XSD. */
+        SCHEMA_VIOLATION(400),
+        /** Truncated in the middle of an element. */
+        MALFORMED(400),
+        /** Not Base64 at all. */
+        BAD_BASE64(400),
+        /** A Faktura root in a namespace that is not a supported schema version. */
+        UNSUPPORTED_SCHEMA(400);
+
+        private final int expectedStatus;
+
+        Kind(int expectedStatus) {
+            this.expectedStatus = expectedStatus;
+        }
+
+        public boolean isExpected(int status) {
+            return status == expectedStatus || this == DUPLICATE && status == 201;
+        }
+    }
+
+    /**
+     * @param body    The JSON request body for {@code POST /api/invoices}
+     * @param xmlSize Bytes of XML before Base64 encoding
+     */
+    public record Invoice(Kind kind, String body, int xmlSize) {
+    }
+
+    private static final String EXAMPLE = Base64Helper.generateExample().get("xml");
+    private static final String PADDING_LINE = "  <!-- " + "x".repeat(56) + " -->\n";
+    private static final String NAMESPACE = "http://crd.gov.pl/wzor/2023/06/29/12648/";
+
+    private final Map<Kind, Integer> mix;
+    private final Map<Integer, Integer> sizes;
+    private final int totalKindWeight;
+    private final int totalSizeWeight;
+    private final String runId;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param mix   Weight of each kind of document
+     * @param sizes Weight of each document size in bytes (0 = the unpadded example)
+     */
+    public SyntheticInvoices(Map<Kind, Integer> mix, Map<Integer, Integer> sizes) {
+        this.mix = new LinkedHashMap<>(mix);
+        this.sizes = new LinkedHashMap<>(sizes);
+        this.totalKindWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        this.totalSizeWeight = sizes.values().stream().mapToInt(Integer::intValue).sum();
+        if (totalKindWeight <= 0 || totalSizeWeight <= 0) {
+            throw new IllegalArgumentException("The document mix and size weights must not all be zero");
+        }
+        // Kalıcı bir veritabanında önceki koşuların faturalarıyla çakışmasın
+        this.runId = Long.toString(System.currentTimeMillis(), 36).toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Draws the kind and size of the next document and builds it. Safe to call from any thread.
+     */
+    public Invoice next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Kind kind = draw(mix, totalKindWeight, random.nextInt(totalKindWeight));
+        int size = draw(sizes, totalSizeWeight, random.nextInt(totalSizeWeight));
+        return build(kind, size, sequence.incrementAndGet());
+    }
+
+    Invoice build(Kind kind, int size, long id) {
+        String xml = switch (kind) {
+            case VALID -> invoice(size, nip(id), "LT/" + runId + "/" + id);
+            case DUPLICATE -> invoice(size, "0000000000", "LT/" + runId + "/DUPLICATE/" + size);
+            case SCHEMA_VIOLATION -> invoice(size, nip(id), "LT/" + runId + "/" + id).replaceFirst("\\s*<P_2>[^<]*</P_2>", "");
+            case MALFORMED -> {
+                String valid = invoice(size, nip(id), "LT/" + runId + "/" + id);
+                yield valid.substring(0, valid.indexOf("<P_1>") + 7);
+            }
+            case BAD_BASE64 -> null;
+            case UNSUPPORTED_SCHEMA -> invoice(size, nip(id), "LT/" + runId + "/" + id)
+                    .replace(NAMESPACE, "http://crd.gov.pl/wzor/2099/01/01/00000/");
+        };
+        if (xml == null) {
+            return new Invoice(kind, "{\"base64xml\":\"*** not base64 " + id + " ***\"}", 0);
+        }
+        byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+        return new Invoice(kind, "{\"base64xml\":\"" + Base64.getEncoder().encodeToString(bytes) + "\"}", bytes.length);
+    }
+
+    private static String invoice(int size, String nip, String number) {
+        String example = EXAMPLE.replace("<NIP>1234567890</NIP>", "<NIP>" + nip + "</NIP>")
+                .replace("<P_2>FK2023/08/31</P_2>", "<P_2>" + number + "</P_2>");
+        int lines = Math.max(0, (size - example.length()) / PADDING_LINE.length());
+        StringBuilder xml = new StringBuilder(Math.max(size, example.length()) + PADDING_LINE.length());
+        int split = example.indexOf("  <Fa>");
+        xml.append(example, 0, split);
+        for (int i = 0; i < lines; i++) {
+            xml.append(PADDING_LINE);
+        }
+        xml.append(example, split, example.length());
+        return xml.toString();
+    }
+
+    private static String nip(long id) {
+        return String.format("%010d", id % 10_000_000_000L);
+    }
+
+    private static <T> T draw(Map<T, Integer> weights, int total, int ticket) {
+        for (Map.Entry<T, Integer> entry : weights.entrySet()) {
+            ticket -= entry.getValue();
+            if (ticket < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Ticket out of range of " + total);
+    }
+
+    /**
+     * Parses {@code "valid=90,schema_violation=5,bad_base64=5"}.
+     */
+    public static Map<Kind, Integer> parseMix(String spec) {
+        Map<Kind, Integer> mix = new LinkedHashMap<>();
+        for (String[] pair : pairs(spec)) {
+            mix.put(Kind.valueOf(pair[0].toUpperCase(Locale.ROOT).replace('-', '_')), Integer.parseInt(pair[1]));
+        }
+        return mix;
+    }
+
+    /**
+     * Parses {@code "minimal=50,64KB=40,1MB=10"} into weights keyed by size in bytes.
+     */
+    public static Map<Integer, Integer> parseSizes(String spec) {
+        Map<Integer, Integer> sizes = new LinkedHashMap<>();
+        for (String[] pair : pairs(spec)) {
+            sizes.put(parseSize(pair[0]), Integer.parseInt(pair[1]));
+        }
+        return sizes;
+    }
+
+    static int parseSize(String size) {
+        String value = size.trim().toUpperCase(Locale.ROOT);
+        if (value.equals("MINIMAL")) {
+            return 0;
+        }
+        if (value.endsWith("MB")) {
+            return Integer.parseInt(value.substring(0, value.length() - 2)) * 1024 * 1024;
+        }
+        if (value.endsWith("KB")) {
+            return Integer.parseInt(value.substring(0, value.length() - 2)) * 1024;
+        }
+        return Integer.parseInt(value.endsWith("B") ? value.substring(0, value.length() - 1) : value);
+    }
+
+    private static List<String[]> pairs(String spec) {
+        List<String[]> pairs = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected name=weight, got '" + part + "'");
+            }
+            pairs.add(new String[]{pair[0].trim(), pair[1].trim()});
+        }
+        return pairs;
+    }
+}
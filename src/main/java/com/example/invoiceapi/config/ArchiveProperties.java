@@ -0,0 +1,34 @@
+package com.example.invoiceapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings under the {@code invoice.archive.*} prefix for ZIP uploads. The size limits apply to
+ * inflated bytes, so a small archive cannot expand into an unbounded amount of memory or work.
+ */
+@Component
+@ConfigurationProperties(prefix = "invoice.archive")
+@Data
+public class ArchiveProperties {
+
+    /** Maximum number of entries, directories and non-XML files included. */
+    private int maxEntries = 50_000;
+
+    /** Maximum inflated size of a single entry. */
+    private DataSize maxEntrySize = DataSize.ofMegabytes(10);
+
+    /** Maximum inflated size of all entries together. */
+    private DataSize maxTotalSize = DataSize.ofGigabytes(2);
+
+    /** Entries read into memory but not yet parsed; the reader waits when the limit is reached. */
+    private int maxInFlight = 32;
+
+    /** Number of parsed entries stored together with one {@code saveAll}. */
+    private int writeBatchSize = 500;
+
+    /** Inflated size of the entries waiting to be stored; a group is stored early when it is reached. */
+    private DataSize writeBatchBytes = DataSize.ofMegabytes(64);
+}
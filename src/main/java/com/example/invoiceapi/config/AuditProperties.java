@@ -0,0 +1,44 @@
+package com.example.invoiceapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings under the {@code invoice.audit.*} prefix for the audit log of submitted invoices.
+ */
+@Component
+@ConfigurationProperties(prefix = "invoice.audit")
+@Data
+public class AuditProperties {
+
+    /** When false (the default), no audit records are kept. */
+    private boolean enabled = false;
+
+    /**
+     * Directory of the segment files; created if missing. There is no default: it must be set
+     * to durable storage when the log is enabled, or startup fails.
+     */
+    private String directory = "";
+
+    /** Size of one memory-mapped segment file; a new one is started when it is full. */
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    /** Segment files kept; older ones are deleted at startup and on rotation (0 = keep all). */
+    private int retainedSegments = 0;
+
+    /** Records waiting for the writer; when it is full, new records are dropped and counted. */
+    private int bufferCapacity = 65_536;
+
+    /** Whether the compressed XML of stored and rejected invoices is kept with their records. */
+    private boolean includePayload = false;
+
+    /** Compressed payloads larger than this are left out of the record. */
+    private DataSize maxPayloadSize = DataSize.ofMegabytes(1);
+
+    /** How often written records are forced to disk. */
+    private Duration flushInterval = Duration.ofSeconds(1);
+}
@@ -0,0 +1,60 @@
+package com.example.invoiceapi.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Fixed pool used to validate and unmarshal the documents of a batch in parallel. The work is
+     * CPU-bound, so these stay platform threads in the virtual-thread mode as well.
+     */
+    @Bean(name = "batchExecutor", destroyMethod = "shutdown")
+    public ExecutorService batchExecutor(@Value("${invoice.batch.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return Executors.newFixedThreadPool(threads, namedThreads("invoice-batch-"));
+    }
+
+    /**
+     * Worker pool behind the asynchronous ingestion endpoint. The queue is bounded and
+     * submissions beyond its capacity are rejected, which the controller turns into 503.
+     * <p>
+     * With {@code spring.threads.virtual.enabled=true} on Java 21 the workers are virtual threads,
+     * so a worker waiting for the database does not hold a platform thread; their number still
+     * bounds how many invoices are processed at once.
+     */
+    @Bean(name = "asyncInvoiceExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor asyncInvoiceExecutor(@Value("${invoice.async.workers:0}") int workers,
+                                                   @Value("${invoice.async.queue-capacity:1000}") int queueCapacity,
+                                                   Environment environment) {
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        ThreadFactory threadFactory = Threading.VIRTUAL.isActive(environment)
+                ? new VirtualThreadTaskExecutor("invoice-async-").getVirtualThreadFactory()
+                : namedThreads("invoice-async-");
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.invoiceapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings under the {@code invoice.lines.*} prefix for the line items ({@code FaWiersz}) of
+ * invoices, which are checked against the declared totals and stored in {@code invoice_lines}.
+ */
+@Component
+@ConfigurationProperties(prefix = "invoice.lines")
+@Data
+public class LineItemProperties {
+
+    /** When false, line items are neither checked nor stored; only the invoice header is kept. */
+    private boolean enabled = true;
+
+    /** Line rows sent to the database in one JDBC batch. */
+    private int batchSize = 1000;
+}
@@ -0,0 +1,33 @@
+package com.example.invoiceapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings under the {@code invoice.lookup-cache.*} prefix for the cache in front of the
+ * invoice lookups by id and by NIP and invoice number.
+ */
+@Component
+@ConfigurationProperties(prefix = "invoice.lookup-cache")
+@Data
+public class LookupCacheProperties {
+
+    /** When false, every lookup goes to the database. */
+    private boolean enabled = true;
+
+    /** Keys held per lookup; the oldest are evicted first. */
+    private int maxSize = 10_000;
+
+    /** How long a found invoice is served from the cache. */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * How long a lookup that found nothing is answered from the cache (0 = misses are not cached).
+     * Invoices stored by this instance replace such entries at once; ones stored by another
+     * instance are only seen after this long.
+     */
+    private Duration negativeTtl = Duration.ofSeconds(30);
+}
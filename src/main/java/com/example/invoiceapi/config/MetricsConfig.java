@@ -0,0 +1,46 @@
+package com.example.invoiceapi.config;
+
+import com.example.invoiceapi.service.SchemaRegistry;
+import com.example.invoiceapi.service.XmlEngine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.Function;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Publishes the pool counters of every XmlEngine next to the pipeline metrics, including the
+     * engines SchemaRegistry compiles on first use, tagged with their schema version.
+     */
+    @Bean
+    public MeterBinder xmlEnginePoolMetrics(SchemaRegistry schemaRegistry) {
+        return registry -> schemaRegistry.onEngine(engine -> {
+            bindPool(registry, engine, XmlEngine::validatorStats);
+            bindPool(registry, engine, XmlEngine::unmarshallerStats);
+            bindPool(registry, engine, XmlEngine::validatingUnmarshallerStats);
+        });
+    }
+
+    private static void bindPool(MeterRegistry registry, XmlEngine engine,
+                                 Function<XmlEngine, XmlEngine.PoolStats> stats) {
+        String pool = stats.apply(engine).name();
+        String schema = engine.getVersion().name();
+        // Motor, SchemaRegistry'de tutulduğu için ölçümlerin zayıf referansı boşa düşmez
+        Gauge.builder("xml.engine.pool.idle", engine, e -> stats.apply(e).idle())
+                .tags("pool", pool, "schema", schema)
+                .register(registry);
+        // hits/misses yalnızca artar: sayaç olarak yayınlanır, rate() ile okunabilir
+        FunctionCounter.builder("xml.engine.pool.hits", engine, e -> stats.apply(e).hits())
+                .tags("pool", pool, "schema", schema)
+                .register(registry);
+        FunctionCounter.builder("xml.engine.pool.misses", engine, e -> stats.apply(e).misses())
+                .tags("pool", pool, "schema", schema)
+                .register(registry);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.invoiceapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings under the {@code invoice.partitioning.*} prefix for the monthly partitions of the
+ * {@code invoices} table in PostgreSQL ({@code db/postgresql/schema-partitioned.sql}).
+ */
+@Component
+@ConfigurationProperties(prefix = "invoice.partitioning")
+@Data
+public class PartitioningProperties {
+
+    /** When false, partitions are neither created nor dropped by the application. */
+    private boolean enabled = false;
+
+    /** Months after the current one whose partitions are kept ready. */
+    private int createAhead = 3;
+
+    /** Months before the current one whose partitions are kept; older ones are dropped (0 = keep all). */
+    private int retentionMonths = 0;
+
+    /** Cron expression of the maintenance run; it also runs once at startup. */
+    private String schedule = "0 0 3 * * *";
+}
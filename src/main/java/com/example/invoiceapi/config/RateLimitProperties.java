@@ -0,0 +1,60 @@
+package com.example.invoiceapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings under the {@code invoice.rate-limit.*} prefix for admitting single invoice uploads:
+ * a token bucket per client, one per taxpayer NIP, and a cap on uploads processed at once.
+ */
+@Component
+@ConfigurationProperties(prefix = "invoice.rate-limit")
+@Data
+public class RateLimitProperties {
+
+    /**
+     * When false (the default), uploads are admitted without any limit. Before turning it on
+     * behind a proxy, set {@link #clientHeader}; otherwise every client shares the proxy's bucket.
+     */
+    private boolean enabled = false;
+
+    /** Uploads processed at the same time across all clients (0 = CPU count x 2). */
+    private int maxConcurrent = 0;
+
+    /**
+     * Request header that identifies the client. When empty, or missing from a request, the
+     * remote address is used. Only set it when a trusted proxy fills the header in.
+     */
+    private String clientHeader = "";
+
+    private Bucket client = new Bucket(20, 40);
+
+    private Bucket nip = new Bucket(5, 20);
+
+    /** Buckets kept per limiter; clients beyond this share one bucket until idle ones are evicted. */
+    private int maxKeys = 100_000;
+
+    /** How often buckets that have refilled completely are dropped. */
+    private Duration evictionInterval = Duration.ofMinutes(1);
+
+    @Data
+    public static class Bucket {
+
+        /** Tokens added per second; 0 turns this limit off. */
+        private double rate;
+
+        /** Tokens a bucket holds when full, i.e. the largest burst admitted at once. */
+        private int burst;
+
+        public Bucket() {
+        }
+
+        public Bucket(double rate, int burst) {
+            this.rate = rate;
+            this.burst = burst;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.invoiceapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings under the {@code invoice.warmup.*} prefix for the warm-up run at startup.
+ */
+@Component
+@ConfigurationProperties(prefix = "invoice.warmup")
+@Data
+public class WarmupProperties {
+
+    /** When false, the application reports ready without a warm-up run. */
+    private boolean enabled = true;
+
+    /** Synthetic documents run through the pipeline, valid and invalid ones alternating. */
+    private int iterations = 100;
+
+    /** Threads submitting them; enough to fill the validator and unmarshaller pools (0 = CPU count). */
+    private int threads = 0;
+
+    /** The warm-up is abandoned after this long and the application reports ready anyway. */
+    private Duration timeout = Duration.ofSeconds(60);
+}
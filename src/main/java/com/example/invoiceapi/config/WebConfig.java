@@ -0,0 +1,32 @@
+package com.example.invoiceapi.config;
+
+import com.example.invoiceapi.controller.InvoiceAdmissionInterceptor;
+import com.example.invoiceapi.service.InvoiceExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.format.FormatterRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Locale;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final InvoiceAdmissionInterceptor invoiceAdmissionInterceptor;
+
+    @Override
+    public void addFormatters(FormatterRegistry registry) {
+        // ?format=csv ve ?format=CSV aynı kabul edilsin
+        registry.addConverter(String.class, InvoiceExportService.Format.class,
+                value -> InvoiceExportService.Format.valueOf(value.trim().toUpperCase(Locale.ROOT)));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Tekil yüklemeler (JSON, ham XML, Base64 akışı); toplu yükleme ve arşivin kendi sınırları var
+        registry.addInterceptor(invoiceAdmissionInterceptor)
+                .addPathPatterns("/api/invoices", "/api/invoices/base64");
+    }
+}
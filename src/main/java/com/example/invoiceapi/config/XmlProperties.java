@@ -0,0 +1,47 @@
+package com.example.invoiceapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings under the {@code xml.*} prefix that control how invoices are parsed.
+ */
+@Component
+@ConfigurationProperties(prefix = "xml")
+@Data
+public class XmlProperties {
+
+    private Validation validation = new Validation();
+
+    private Extraction extraction = new Extraction();
+
+    public enum ExtractionMode {
+        /** Unmarshal the full {@code Faktura} object graph through JAXB. */
+        JAXB,
+        /** Read only the persisted fields with a StAX cursor and stop once they are found. */
+        STAX
+    }
+
+    @Data
+    public static class Validation {
+
+        /**
+         * Whether the StAX extraction mode validates the whole document against the schema
+         * before reading the fields. JAXB extraction always validates.
+         */
+        private boolean strict = true;
+
+        /**
+         * When true the schema is attached to the unmarshaller so the document is parsed once;
+         * when false it is validated and unmarshalled in two separate passes.
+         */
+        private boolean singlePass = true;
+    }
+
+    @Data
+    public static class Extraction {
+
+        private ExtractionMode mode = ExtractionMode.JAXB;
+    }
+}
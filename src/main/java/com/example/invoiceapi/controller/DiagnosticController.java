@@ -0,0 +1,43 @@
+package com.example.invoiceapi.controller;
+
+import com.example.invoiceapi.service.AuditLog;
+import com.example.invoiceapi.service.XmlEngine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/diagnostic")
+@RequiredArgsConstructor
+public class DiagnosticController {
+
+    private static final int MAX_AUDIT_RECORDS = 1000;
+
+    private final XmlEngine xmlEngine;
+    private final AuditLog auditLog;
+
+    @GetMapping("/xml-engine")
+    public ResponseEntity<?> xmlEngineStats() {
+        return ResponseEntity.ok(Map.of(
+                "validator", xmlEngine.validatorStats(),
+                "unmarshaller", xmlEngine.unmarshallerStats(),
+                "validatingUnmarshaller", xmlEngine.validatingUnmarshallerStats()));
+    }
+
+    /**
+     * Audit records written at or after {@code from}, oldest first, without their payloads.
+     */
+    @GetMapping("/audit")
+    public ResponseEntity<?> auditRecords(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                          @RequestParam(defaultValue = "100") int limit) throws IOException {
+        return ResponseEntity.ok(auditLog.reader().read(from, Math.min(Math.max(limit, 0), MAX_AUDIT_RECORDS)));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.invoiceapi.controller;
+
+import com.example.invoiceapi.service.InvoiceAdmission;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Admits single invoice uploads before the request body is read, so a refused client costs
+ * neither decoding nor validation. The processing slot taken here is released once the
+ * response is complete. A refusal is answered with 429 by the exception handler.
+ */
+@Component
+@RequiredArgsConstructor
+public class InvoiceAdmissionInterceptor implements HandlerInterceptor {
+
+    private static final String PERMIT_ATTRIBUTE = InvoiceAdmissionInterceptor.class.getName() + ".permit";
+
+    private final InvoiceAdmission admission;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Listeleme aynı yolu kullanır; yalnızca yüklemeler sınırlanır
+        if (!"POST".equals(request.getMethod())) {
+            return true;
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, admission.admit(clientOf(request)));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) instanceof InvoiceAdmission.Permit permit) {
+            permit.close();
+        }
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        String header = admission.getClientHeader();
+        if (header != null && !header.isBlank()) {
+            String client = request.getHeader(header);
+            if (client != null && !client.isBlank()) {
+                return client.strip();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+}
@@ -1,97 +1,130 @@
 package com.example.invoiceapi.controller;
 
+import com.example.invoiceapi.dto.BatchResult;
+import com.example.invoiceapi.dto.InvoiceFilter;
+import com.example.invoiceapi.dto.InvoiceJob;
 import com.example.invoiceapi.dto.InvoiceRequest;
+import com.example.invoiceapi.dto.InvoiceResult;
+import com.example.invoiceapi.dto.InvoiceSummary;
+import com.example.invoiceapi.exception.ArchiveProcessingException;
+import com.example.invoiceapi.exception.InvoiceConflictException;
+import com.example.invoiceapi.exception.RateLimitExceededException;
 import com.example.invoiceapi.exception.XmlProcessingException;
+import com.example.invoiceapi.service.InvoiceArchiveService;
+import com.example.invoiceapi.service.InvoiceBatchService;
+import com.example.invoiceapi.service.InvoiceExportService;
+import com.example.invoiceapi.service.InvoiceJobService;
+import com.example.invoiceapi.service.InvoiceQueryService;
 import com.example.invoiceapi.service.InvoiceService;
 import com.example.invoiceapi.util.Base64Helper;
-import lombok.RequiredArgsConstructor;
+import com.example.invoiceapi.util.DocumentCompression;
+import com.example.invoiceapi.util.TextExcerpt;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/invoices")
-@RequiredArgsConstructor
 @Slf4j
 public class InvoiceController {
 
+    // Örnek gövdeler bir kez oluşturulur, her hatalı istekte yeniden üretilmez
+    private static final Map<String, String> EXAMPLE = Base64Helper.generateExample();
+    private static final Map<String, String> EMPTY_REQUEST_RESPONSE = Map.of(
+            "error", "base64xml alanı gerekli ve boş olamaz",
+            "örnek_xml", EXAMPLE.get("xml"),
+            "örnek_base64", EXAMPLE.get("base64"));
+    private static final String EXAMPLE_XML = EXAMPLE.get("xml");
+    private static final String BASE64_HINT = "Base64 verilerinizi daha detaylı analiz etmek için /api/diagnostic/analyze-base64 endpoint'ini kullanabilirsiniz.";
+
     private final InvoiceService invoiceService;
+    private final InvoiceBatchService invoiceBatchService;
+    private final InvoiceJobService invoiceJobService;
+    private final InvoiceQueryService invoiceQueryService;
+    private final InvoiceExportService invoiceExportService;
+    private final InvoiceArchiveService invoiceArchiveService;
+    // Hata yanıtında geri gönderilen XML ve Base64 en fazla bu kadar karakter olur (0 = gönderilmez)
+    private final int echoLimit;
+    // Dışa aktarma akışının zaman aşımı (ms); diğer asenkron isteklerin varsayılanı değişmez
+    private final long exportTimeout;
+
+    public InvoiceController(InvoiceService invoiceService,
+                             InvoiceBatchService invoiceBatchService,
+                             InvoiceJobService invoiceJobService,
+                             InvoiceQueryService invoiceQueryService,
+                             InvoiceExportService invoiceExportService,
+                             InvoiceArchiveService invoiceArchiveService,
+                             @Value("${invoice.error.echo-limit:1024}") int echoLimit,
+                             @Value("${invoice.export.timeout:3600000}") long exportTimeout) {
+        this.invoiceService = invoiceService;
+        this.invoiceBatchService = invoiceBatchService;
+        this.invoiceJobService = invoiceJobService;
+        this.invoiceQueryService = invoiceQueryService;
+        this.invoiceExportService = invoiceExportService;
+        this.invoiceArchiveService = invoiceArchiveService;
+        this.echoLimit = echoLimit;
+        this.exportTimeout = exportTimeout;
+    }
+
+    /**
+     * Lists stored invoices in ascending id order. Pass the {@code nextCursor} of a response as
+     * {@code after} to read the next page.
+     */
+    @GetMapping
+    public ResponseEntity<?> listInvoices(@RequestParam(required = false) String nip,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate p1From,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate p1To,
+                                          @RequestParam(required = false) String p2Prefix,
+                                          @RequestParam(required = false) Long after,
+                                          @RequestParam(required = false) Integer limit) {
+        if (limit != null && (limit < 1 || limit > invoiceQueryService.getMaxLimit())) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", "limit 1 ile " + invoiceQueryService.getMaxLimit() + " arasında olmalıdır"));
+        }
+        if (p1From != null && p1To != null && p1From.isAfter(p1To)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", "p1From, p1To tarihinden sonra olamaz"));
+        }
+        InvoiceFilter filter = new InvoiceFilter(blankToNull(nip), p1From, p1To, blankToNull(p2Prefix));
+        return ResponseEntity.ok(invoiceQueryService.find(filter, after, limit));
+    }
 
     @PostMapping
     public ResponseEntity<?> uploadInvoice(@RequestBody InvoiceRequest request) {
         try {
             if (request == null || request.getBase64xml() == null || request.getBase64xml().isEmpty()) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("error", "base64xml alanı gerekli ve boş olamaz");
-
-                // Örnek XML ve Base64 ekleyelim
-                Map<String, String> example = Base64Helper.generateExample();
-                response.put("örnek_xml", example.get("xml"));
-                response.put("örnek_base64", example.get("base64"));
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(EMPTY_REQUEST_RESPONSE);
             }
 
-            invoiceService.processInvoice(request.getBase64xml());
-            return ResponseEntity.status(HttpStatus.CREATED)
-                    .body(Map.of("message", "Fatura başarıyla kaydedildi"));
+            return stored(invoiceService.processInvoice(request.getBase64xml()));
+        } catch (RateLimitExceededException e) {
+            // 429 ve Retry-After GlobalExceptionHandler'da
+            throw e;
+        } catch (InvoiceConflictException e) {
+            return conflict(e);
         } catch (XmlProcessingException e) {
-            Map<String, Object> response = new HashMap<>();
-            response.put("error", e.getMessage());
-            response.put("type", "XML_PROCESSING_ERROR");
-
-            // Gönderdikleri XML'i decode edip gösterelim
-            try {
-                // İlk olarak, gelen veriyi temizleyelim
-                String cleanBase64 = request.getBase64xml().trim();
-
-                // Yeni satır ve boşlukları temizle
-                cleanBase64 = cleanBase64.replaceAll("[\\s\\r\\n\\t]", "");
-
-                // Elipsis (...) karakterlerini temizle
-                cleanBase64 = cleanBase64.replace("...", "");
-
-                // Tırnak işaretlerini kaldır
-                if (cleanBase64.startsWith("\"") && cleanBase64.endsWith("\"")) {
-                    cleanBase64 = cleanBase64.substring(1, cleanBase64.length() - 1);
-                }
-
-                // Base64 ile çözmeyi dene
-                byte[] decodedBytes;
-                try {
-                    decodedBytes = Base64.getDecoder().decode(cleanBase64);
-                } catch (Exception decodeE) {
-                    // URL-safe Base64 ile çözmeyi dene
-                    decodedBytes = Base64.getUrlDecoder().decode(cleanBase64);
-                }
-
-                String xmlContent = new String(decodedBytes, StandardCharsets.UTF_8);
-                response.put("gönderilen_xml", xmlContent);
-
-                // Ayrıca gönderilen veriyi de ekleyelim
-                response.put("gönderilen_veri", request.getBase64xml());
-            } catch (Exception decodeEx) {
-                response.put("decode_hatası", decodeEx.getMessage());
-                response.put("gönderilen_veri", request.getBase64xml());
-
-                // İlk 10 karakteri loglayalım
-                String firstChars = request.getBase64xml().length() > 10 ? 
-                    request.getBase64xml().substring(0, 10) : request.getBase64xml();
-                response.put("gönderilen_veri_ilk_10", firstChars);
-
-                // Karakter analizi için /api/diagnostic/analyze-base64 endpointini önerin
-                response.put("ipucu", "Base64 verilerinizi daha detaylı analiz etmek için /api/diagnostic/analyze-base64 endpoint'ini kullanabilirsiniz.");
-            }
-
-            // Doğru örnek XML ekleyelim
-            response.put("örnek_xml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Faktura xmlns=\"http://crd.gov.pl/wzor/2023/06/29/12648/\">\n  <Podmiot1>\n    <DaneIdentyfikacyjne>\n      <NIP>1234567890</NIP>\n    </DaneIdentyfikacyjne>\n  </Podmiot1>\n  <Fa>\n    <P_1>2023-08-31</P_1>\n    <P_2>FK2023/08/31</P_2>\n  </Fa>\n</Faktura>");
-
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(failureResponse(request.getBase64xml(), e));
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
             response.put("error", "Beklenmedik bir hata oluştu: " + e.getMessage());
@@ -99,4 +132,246 @@ public class InvoiceController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
         }
     }
+
+    /**
+     * Streams every invoice matching the filters as NDJSON or CSV, optionally gzipped, in
+     * ascending id order. Rows are written while they are read from the database.
+     */
+    @GetMapping("/export")
+    public WebAsyncTask<Void> exportInvoices(@RequestParam(defaultValue = "NDJSON") InvoiceExportService.Format format,
+                                             @RequestParam(defaultValue = "false") boolean gzip,
+                                             @RequestParam(required = false) String nip,
+                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate p1From,
+                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate p1To,
+                                             @RequestParam(required = false) String p2Prefix,
+                                             HttpServletResponse response) {
+        InvoiceFilter filter = new InvoiceFilter(blankToNull(nip), p1From, p1To, blankToNull(p2Prefix));
+
+        String fileName = "invoices." + format.getExtension() + (gzip ? ".gz" : "");
+        response.setContentType(gzip ? "application/gzip" : format.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        // StreamingResponseBody gibi MVC'nin görev havuzunda yazılır, ama zaman aşımı yalnızca bu isteğe uygulanır
+        return new WebAsyncTask<>(exportTimeout, () -> {
+            invoiceExportService.export(filter, format, gzip, response.getOutputStream());
+            return null;
+        });
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<InvoiceSummary> getInvoice(@PathVariable Long id) {
+        return ResponseEntity.of(invoiceQueryService.findById(id));
+    }
+
+    /**
+     * Finds a stored invoice by its seller's NIP and its invoice number.
+     */
+    @GetMapping("/lookup")
+    public ResponseEntity<InvoiceSummary> lookupInvoice(@RequestParam String nip, @RequestParam String p2) {
+        return ResponseEntity.of(invoiceQueryService.findByNipAndP2(nip, p2));
+    }
+
+    /**
+     * Downloads the original XML of a stored invoice, decompressed while it is written.
+     */
+    @GetMapping("/{id}/xml")
+    public ResponseEntity<StreamingResponseBody> downloadInvoiceXml(@PathVariable Long id) {
+        return invoiceQueryService.findDocument(id)
+                .map(document -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_XML)
+                        .contentLength(document.getSize())
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"invoice-" + id + ".xml\"")
+                        .body((StreamingResponseBody) out -> DocumentCompression.inflate(document.getContent(), out)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Accepts an array of Base64 encoded invoices. Every item is validated independently and
+     * the valid ones are stored together; the response carries one result per item.
+     */
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> uploadInvoiceBatch(@RequestBody List<InvoiceRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", "En az bir fatura gönderilmelidir"));
+        }
+        if (requests.size() > invoiceBatchService.getMaxSize()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(Map.of("error", "Bir istekte en fazla " + invoiceBatchService.getMaxSize() + " fatura gönderilebilir"));
+        }
+
+        List<String> base64Invoices = new ArrayList<>(requests.size());
+        for (InvoiceRequest request : requests) {
+            base64Invoices.add(request != null ? request.getBase64xml() : null);
+        }
+
+        return batchResponse(invoiceBatchService.processBatch(base64Invoices));
+    }
+
+    /**
+     * Accepts a ZIP archive of invoice XML files, either as the raw request body or as the
+     * {@code file} part of a multipart form. Entries are read from the stream and validated in
+     * parallel; the response carries one result per {@code .xml} entry with its name.
+     * Exceeding an archive limit answers 413 with the results of the entries handled so far.
+     */
+    @PostMapping(path = "/archive", consumes = {"application/zip", "application/x-zip-compressed"})
+    public ResponseEntity<?> uploadInvoiceArchive(InputStream body) {
+        return processArchive(body);
+    }
+
+    @PostMapping(path = "/archive", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadInvoiceArchive(@RequestPart("file") MultipartFile file) throws IOException {
+        try (InputStream body = file.getInputStream()) {
+            return processArchive(body);
+        }
+    }
+
+    private ResponseEntity<?> processArchive(InputStream archive) {
+        try {
+            return batchResponse(invoiceArchiveService.processArchive(archive));
+        } catch (ArchiveProcessingException e) {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("error", e.getMessage());
+            response.put("type", e.isLimitExceeded() ? "ARCHIVE_LIMIT_EXCEEDED" : "INVALID_ARCHIVE");
+            response.put("kısmi_sonuç", e.getPartialResult());
+            return ResponseEntity.status(e.isLimitExceeded() ? HttpStatus.PAYLOAD_TOO_LARGE : HttpStatus.BAD_REQUEST)
+                    .body(response);
+        } catch (XmlProcessingException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", e.getMessage(), "type", "XML_PROCESSING_ERROR"));
+        }
+    }
+
+    private static ResponseEntity<BatchResult> batchResponse(BatchResult result) {
+        HttpStatus status = result.getCreated() > 0 ? HttpStatus.CREATED
+                : result.getDuplicates() > 0 ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
+        return ResponseEntity.status(status).body(result);
+    }
+
+    /**
+     * Queues the invoice for background processing and returns immediately with a tracking id.
+     * Responds 503 with {@code Retry-After} when the work queue is full.
+     */
+    @PostMapping(path = "/async", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> submitInvoice(@RequestBody InvoiceRequest request) {
+        if (request == null || request.getBase64xml() == null || request.getBase64xml().isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", "base64xml alanı gerekli ve boş olamaz"));
+        }
+        try {
+            InvoiceJob job = invoiceJobService.submit(request.getBase64xml());
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .location(URI.create("/api/invoices/jobs/" + job.getId()))
+                    .body(job);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", "İşlem kuyruğu dolu, lütfen daha sonra tekrar deneyin"));
+        }
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<?> getJob(@PathVariable String id) {
+        return invoiceJobService.find(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "İş bulunamadı: " + id)));
+    }
+
+    /**
+     * Accepts the invoice XML as the raw request body and streams it straight into the parser.
+     */
+    @PostMapping(consumes = {MediaType.APPLICATION_XML_VALUE, MediaType.TEXT_XML_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<?> uploadInvoiceXml(InputStream body) {
+        return processStream(body);
+    }
+
+    /**
+     * Accepts a Base64 encoded invoice as a plain-text body and decodes it on the fly.
+     * Line breaks in the body are ignored; the standard Base64 alphabet is expected.
+     */
+    @PostMapping(path = "/base64", consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<?> uploadInvoiceBase64(InputStream body) {
+        return processStream(Base64.getMimeDecoder().wrap(body));
+    }
+
+    private ResponseEntity<?> processStream(InputStream xmlStream) {
+        try {
+            return stored(invoiceService.processInvoice(xmlStream));
+        } catch (RateLimitExceededException e) {
+            throw e;
+        } catch (InvoiceConflictException e) {
+            return conflict(e);
+        } catch (XmlProcessingException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", e.getMessage(), "type", "XML_PROCESSING_ERROR"));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Beklenmedik bir hata oluştu: " + e.getMessage(), "type", "INTERNAL_SERVER_ERROR"));
+        }
+    }
+
+    /**
+     * 201 for a new invoice; 200 with the original id when the same document was stored before.
+     */
+    private ResponseEntity<?> stored(InvoiceResult result) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", result.id());
+        if (result.duplicate()) {
+            response.put("message", "Fatura daha önce kaydedilmiş");
+            response.put("duplicate", true);
+            return ResponseEntity.ok(response);
+        }
+        response.put("message", "Fatura başarıyla kaydedildi");
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    /**
+     * Builds the error body of a rejected JSON submission from what the service already
+     * decoded; the payload is never decoded again here. Echoed content is capped at
+     * {@code invoice.error.echo-limit} characters, centred on the error position if known.
+     */
+    private Map<String, Object> failureResponse(String base64xml, XmlProcessingException e) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("error", e.getMessage());
+        response.put("type", "XML_PROCESSING_ERROR");
+        if (e.getLineNumber() > 0) {
+            response.put("hata_satırı", e.getLineNumber());
+            response.put("hata_sütunu", e.getColumnNumber());
+        }
+
+        String xml = e.getDecodedXml();
+        if (xml != null && echoLimit > 0) {
+            response.put("gönderilen_xml", TextExcerpt.around(xml, e.getLineNumber(), e.getColumnNumber(), echoLimit));
+            if (xml.length() > echoLimit) {
+                response.put("gönderilen_xml_uzunluğu", xml.length());
+            }
+        }
+        if (echoLimit > 0) {
+            response.put("gönderilen_veri", TextExcerpt.head(base64xml, echoLimit));
+            if (base64xml.length() > echoLimit) {
+                response.put("gönderilen_veri_uzunluğu", base64xml.length());
+            }
+        }
+        if (e.getBase64Error() != null) {
+            response.put("decode_hatası", e.getBase64Error());
+            response.put("gönderilen_veri_ilk_10", TextExcerpt.head(base64xml, 10));
+            response.put("ipucu", BASE64_HINT);
+        }
+
+        // Doğru örnek XML ekleyelim
+        response.put("örnek_xml", EXAMPLE_XML);
+        return response;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private ResponseEntity<?> conflict(InvoiceConflictException e) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("error", e.getMessage());
+        response.put("type", "DUPLICATE_INVOICE");
+        response.put("mevcut_id", e.getExistingId());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
 }
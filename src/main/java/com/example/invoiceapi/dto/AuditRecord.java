@@ -0,0 +1,62 @@
+package com.example.invoiceapi.dto;
+
+import com.example.invoiceapi.exception.InvoiceConflictException;
+import com.example.invoiceapi.exception.RateLimitExceededException;
+import com.example.invoiceapi.exception.XmlProcessingException;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.Instant;
+
+/**
+ * One submitted invoice and what became of it, as kept in the audit log.
+ *
+ * @param contentHash SHA-256 of the decoded XML, or null if it is not known (for example when
+ *                    the Base64 payload could not be decoded or a stream was rejected mid-way)
+ * @param size        Bytes of XML read, or of the Base64 text if it could not be decoded; -1 if unknown
+ * @param stage       The failure type ({@code invoice.failures} tag), or null
+ * @param invoiceId   The stored or duplicated invoice's id, or null
+ * @param payload     The deflate-compressed XML, or null when payloads are not kept
+ */
+public record AuditRecord(Instant timestamp,
+                          Source source,
+                          Outcome outcome,
+                          String contentHash,
+                          long size,
+                          String stage,
+                          Long invoiceId,
+                          @JsonIgnore byte[] payload) {
+
+    /**
+     * How the invoice was submitted.
+     */
+    public enum Source { UPLOAD, STREAM, BATCH, ARCHIVE }
+
+    public enum Outcome { CREATED, DUPLICATE, REJECTED, CONFLICT, RATE_LIMITED, FAILED }
+
+    public static AuditRecord completed(Source source, String contentHash, long size, InvoiceResult result, byte[] payload) {
+        return new AuditRecord(Instant.now(), source, result.duplicate() ? Outcome.DUPLICATE : Outcome.CREATED,
+                contentHash, size, null, result.id(), payload);
+    }
+
+    public static AuditRecord failed(Source source, String contentHash, long size, XmlProcessingException error, byte[] payload) {
+        Outcome outcome = error instanceof RateLimitExceededException ? Outcome.RATE_LIMITED
+                : error instanceof InvoiceConflictException ? Outcome.CONFLICT
+                : Outcome.REJECTED;
+        return new AuditRecord(Instant.now(), source, outcome, contentHash, size, error.getStage(), null, payload);
+    }
+
+    public static AuditRecord rejected(Source source, String contentHash, long size, String stage) {
+        return new AuditRecord(Instant.now(), source, Outcome.REJECTED, contentHash, size, stage, null, null);
+    }
+
+    /**
+     * An invoice that could not be processed for a reason other than its content, such as a database error.
+     */
+    public static AuditRecord error(Source source, String contentHash, long size, String stage) {
+        return new AuditRecord(Instant.now(), source, Outcome.FAILED, contentHash, size, stage, null, null);
+    }
+
+    public int getPayloadSize() {
+        return payload == null ? 0 : payload.length;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.invoiceapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResult {
+
+    public enum Status { CREATED, DUPLICATE, REJECTED, FAILED }
+
+    private int index;
+    private Status status;
+    private Long id;
+    private String error;
+
+    /** The archive entry the item was read from; absent for JSON batches. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String name;
+
+    public static BatchItemResult created(int index, Long id) {
+        return new BatchItemResult(index, Status.CREATED, id, null, null);
+    }
+
+    /**
+     * The invoice was already stored; {@code id} is the id of the stored row.
+     */
+    public static BatchItemResult duplicate(int index, Long id) {
+        return new BatchItemResult(index, Status.DUPLICATE, id, null, null);
+    }
+
+    public static BatchItemResult rejected(int index, String error) {
+        return new BatchItemResult(index, Status.REJECTED, null, error, null);
+    }
+
+    public static BatchItemResult failed(int index, String error) {
+        return new BatchItemResult(index, Status.FAILED, null, error, null);
+    }
+
+    /**
+     * Copies this result under another index and entry name.
+     */
+    public BatchItemResult at(int index, String name) {
+        return new BatchItemResult(index, status, id, error, name);
+    }
+}
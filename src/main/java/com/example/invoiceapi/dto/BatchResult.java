@@ -0,0 +1,31 @@
+package com.example.invoiceapi.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchResult {
+
+    private int total;
+    private int created;
+    private int duplicates;
+    private int rejected;
+    private int failed;
+    private List<BatchItemResult> results;
+
+    public static BatchResult of(List<BatchItemResult> results) {
+        BatchResult batch = new BatchResult();
+        batch.setTotal(results.size());
+        batch.setResults(results);
+        for (BatchItemResult result : results) {
+            switch (result.getStatus()) {
+                case CREATED -> batch.created++;
+                case DUPLICATE -> batch.duplicates++;
+                case REJECTED -> batch.rejected++;
+                case FAILED -> batch.failed++;
+            }
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.invoiceapi.dto;
+
+import com.example.invoiceapi.xml.Faktura;
+
+/**
+ * The invoice values that are persisted: {@code Podmiot1/DaneIdentyfikacyjne/NIP},
+ * {@code Fa/P_1} and {@code Fa/P_2}.
+ */
+public record InvoiceFields(String nip, String p1, String p2) {
+
+    public static InvoiceFields from(Faktura faktura) {
+        return new InvoiceFields(
+                faktura.getPodmiot1().getDaneIdentyfikacyjne().getNIP(),
+                faktura.getFa().getP1(),
+                faktura.getFa().getP2());
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.invoiceapi.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Optional criteria for listing stored invoices; null fields are not filtered on.
+ *
+ * @param nip      Exact seller NIP
+ * @param p1From   First issue date ({@code P_1}) to include
+ * @param p1To     Last issue date ({@code P_1}) to include
+ * @param p2Prefix Prefix of the invoice number ({@code P_2})
+ */
+public record InvoiceFilter(String nip, LocalDate p1From, LocalDate p1To, String p2Prefix) {
+}
@@ -0,0 +1,27 @@
+package com.example.invoiceapi.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Tracking record of an invoice submitted through the asynchronous endpoint.
+ * Fields are written by the worker thread and read by status requests, hence volatile.
+ */
+@Data
+public class InvoiceJob {
+
+    public enum Status { QUEUED, PROCESSING, COMPLETED, FAILED }
+
+    private final String id;
+    private final Instant submittedAt;
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant completedAt;
+    private volatile String error;
+    private volatile Long invoiceId;
+    private volatile boolean duplicate;
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+}
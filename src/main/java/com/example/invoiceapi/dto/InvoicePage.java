@@ -0,0 +1,12 @@
+package com.example.invoiceapi.dto;
+
+import java.util.List;
+
+/**
+ * One page of invoices in ascending id order.
+ *
+ * @param items      The invoices on this page
+ * @param nextCursor The {@code after} value for the next page; null on the last page
+ */
+public record InvoicePage(List<InvoiceSummary> items, Long nextCursor) {
+}
@@ -0,0 +1,16 @@
+package com.example.invoiceapi.dto;
+
+/**
+ * Outcome of storing one invoice: the id of the stored row, and whether that row already
+ * existed because the same document had been submitted before.
+ */
+public record InvoiceResult(Long id, boolean duplicate) {
+
+    public static InvoiceResult created(Long id) {
+        return new InvoiceResult(id, false);
+    }
+
+    public static InvoiceResult duplicate(Long id) {
+        return new InvoiceResult(id, true);
+    }
+}
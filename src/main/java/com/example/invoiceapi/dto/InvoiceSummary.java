@@ -0,0 +1,9 @@
+package com.example.invoiceapi.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Read-only view of a stored invoice, selected column by column instead of loading the entity.
+ */
+public record InvoiceSummary(Long id, String nip, LocalDate p1, String p2) {
+}
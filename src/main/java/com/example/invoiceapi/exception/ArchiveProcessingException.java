@@ -0,0 +1,28 @@
+package com.example.invoiceapi.exception;
+
+import com.example.invoiceapi.dto.BatchResult;
+
+/**
+ * Thrown when reading an uploaded archive stops before its end, either because a limit was
+ * exceeded or because the archive is corrupt. Entries handled before that point have already
+ * been stored; their results are carried in {@link #getPartialResult()}.
+ */
+public class ArchiveProcessingException extends XmlProcessingException {
+
+    private final boolean limitExceeded;
+    private final BatchResult partialResult;
+
+    public ArchiveProcessingException(String message, Throwable cause, boolean limitExceeded, BatchResult partialResult) {
+        super(message, cause);
+        this.limitExceeded = limitExceeded;
+        this.partialResult = partialResult;
+    }
+
+    public boolean isLimitExceeded() {
+        return limitExceeded;
+    }
+
+    public BatchResult getPartialResult() {
+        return partialResult;
+    }
+}
@@ -1,9 +1,11 @@
 package com.example.invoiceapi.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import org.xml.sax.SAXException;
 import java.util.Map;
@@ -17,12 +19,31 @@ public class GlobalExceptionHandler {
                 .body(Map.of("error", "XML validation failed: " + ex.getMessage()));
     }
 
+    @ExceptionHandler(InvoiceConflictException.class)
+    public ResponseEntity<?> handleInvoiceConflictException(InvoiceConflictException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<?> handleRateLimitExceededException(RateLimitExceededException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .body(Map.of("error", ex.getMessage(), "type", "RATE_LIMITED"));
+    }
+
     @ExceptionHandler(XmlProcessingException.class)
     public ResponseEntity<?> handleXmlProcessingException(XmlProcessingException ex) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                 .body(Map.of("error", "XML processing failed: " + ex.getMessage()));
     }
 
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<?> handleArgumentTypeMismatch(MethodArgumentTypeMismatchException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "Geçersiz parametre: " + ex.getName() + "=" + ex.getValue()));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<?> handleGenericException(Exception ex) {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -0,0 +1,19 @@
+package com.example.invoiceapi.exception;
+
+/**
+ * Thrown when an invoice with the same NIP and invoice number ({@code P_2}) but different
+ * content is already stored.
+ */
+public class InvoiceConflictException extends XmlProcessingException {
+
+    private final Long existingId;
+
+    public InvoiceConflictException(String message, Long existingId) {
+        super(message);
+        this.existingId = existingId;
+    }
+
+    public Long getExistingId() {
+        return existingId;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.invoiceapi.exception;
+
+/**
+ * Thrown when an upload is not admitted because its client or taxpayer sent too many invoices,
+ * or too many uploads are being processed. Answered with 429 and {@code Retry-After}.
+ */
+public class RateLimitExceededException extends XmlProcessingException {
+
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
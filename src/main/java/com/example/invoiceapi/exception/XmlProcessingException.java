@@ -2,6 +2,13 @@ package com.example.invoiceapi.exception;
 
 public class XmlProcessingException extends RuntimeException {
 
+    // Hata yanıtı için bağlam: girdi tekrar çözümlenmeden gösterilebilsin
+    private String decodedXml;
+    private String base64Error;
+    private int lineNumber = -1;
+    private int columnNumber = -1;
+    private String stage;
+
     public XmlProcessingException(String message) {
         super(message);
     }
@@ -9,4 +16,72 @@ public class XmlProcessingException extends RuntimeException {
     public XmlProcessingException(String message, Throwable cause) {
         super(message, cause);
     }
+
+    /**
+     * Attaches the decoded XML the failure refers to, unless one is already attached.
+     *
+     * @return This exception
+     */
+    public XmlProcessingException withDecodedXml(String xml) {
+        if (decodedXml == null) {
+            decodedXml = xml;
+        }
+        return this;
+    }
+
+    /**
+     * Records why the Base64 payload could not be decoded.
+     *
+     * @return This exception
+     */
+    public XmlProcessingException withBase64Error(String error) {
+        base64Error = error;
+        return this;
+    }
+
+    /**
+     * Records where in the decoded XML the failure was detected (1-based, -1 if unknown).
+     *
+     * @return This exception
+     */
+    public XmlProcessingException withLocation(int line, int column) {
+        lineNumber = line;
+        columnNumber = column;
+        return this;
+    }
+
+    /**
+     * Records the pipeline stage that rejected the input, unless one is already recorded.
+     *
+     * @return This exception
+     */
+    public XmlProcessingException withStage(String failedStage) {
+        if (stage == null) {
+            stage = failedStage;
+        }
+        return this;
+    }
+
+    /** The decoded XML, or null if the payload was not decoded. */
+    public String getDecodedXml() {
+        return decodedXml;
+    }
+
+    /** The Base64 decoder error, or null if decoding was not the problem. */
+    public String getBase64Error() {
+        return base64Error;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public int getColumnNumber() {
+        return columnNumber;
+    }
+
+    /** The {@code invoice.failures} type of the stage that rejected the input, or null if unknown. */
+    public String getStage() {
+        return stage;
+    }
 }
@@ -0,0 +1,29 @@
+package com.example.invoiceapi.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.ToString;
+import org.hibernate.Length;
+
+/**
+ * The original XML of an invoice, deflate-compressed. Keyed by the SHA-256 of the uncompressed
+ * XML, so identical documents are stored once.
+ */
+@Entity
+@Table(name = "invoice_documents")
+@Data
+public class InvoiceDocumentEntity {
+
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // PostgreSQL'de bytea; zlib biçiminde sıkıştırılmış XML
+    @Column(nullable = false, length = Length.LONG32)
+    @ToString.Exclude
+    private byte[] content;
+
+    // Sıkıştırılmamış boyut (byte), indirmede Content-Length olarak döner
+    @Column(nullable = false)
+    private long size;
+}
@@ -2,22 +2,69 @@ package com.example.invoiceapi.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
 
 @Entity
-@Table(name = "invoices")
+// GET /api/invoices filtreleri için: her indeks id ile biter, böylece "id > :afterId ORDER BY id"
+// sayfalaması aynı indeks üzerinde ilerler.
+// Aylara bölünmüş PostgreSQL şemasında (db/postgresql/schema-partitioned.sql) benzersiz anahtarlar p1'i de
+// içerir; orada tablo Hibernate tarafından değil betikle oluşturulur.
+@Table(name = "invoices", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_invoices_content_hash", columnNames = "content_hash"),
+        @UniqueConstraint(name = "uk_invoices_nip_p2", columnNames = {"nip", "p2"})
+}, indexes = {
+        @Index(name = "idx_invoices_nip_id", columnList = "nip, id"),
+        @Index(name = "idx_invoices_p1_id", columnList = "p1, id"),
+        @Index(name = "idx_invoices_p2_id", columnList = "p2, id")
+})
 @Data
 public class InvoiceEntity {
 
+    // IDENTITY yerine sequence: Hibernate ID'leri önceden ayırabildiği için INSERT'leri JDBC batch ile gönderebilir
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "invoices_seq")
+    @SequenceGenerator(name = "invoices_seq", sequenceName = "invoices_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
     private String nip;
 
+    // Düzenleme tarihi; bölümlenmiş şemada bölüm anahtarı
     @Column(nullable = false)
-    private String p1;
+    private LocalDate p1;
 
     @Column(nullable = false)
     private String p2;
+
+    // Çözümlenmiş XML'in SHA-256 özeti (hex); aynı belgenin tekrar gönderimini tanımak için.
+    // Bu sütundan önce kaydedilmiş satırlarda boş kalır.
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // Fatura satırlarının (FaWiersz) sayısı ve toplamları; satırlar invoice_lines tablosunda.
+    // Satır okuma kapalıyken ya da bu sütunlardan önce kaydedilmiş satırlarda boş kalır.
+    @Column(name = "line_count")
+    private Integer lineCount;
+
+    @Column(name = "net_total", precision = 18, scale = 2)
+    private BigDecimal netTotal;
+
+    @Column(name = "vat_total", precision = 18, scale = 2)
+    private BigDecimal vatTotal;
+
+    @Column(name = "gross_total", precision = 18, scale = 2)
+    private BigDecimal grossTotal;
+
+    // Özgün XML ayrı tabloda; tembel yüklenir, listeler ve aramalar bu tabloya hiç dokunmaz.
+    // Aynı content_hash sütunu üzerinden bağlanır; yazma sırasında belge de birlikte eklenir.
+    @ManyToOne(fetch = FetchType.LAZY, cascade = CascadeType.PERSIST)
+    @JoinColumn(name = "content_hash", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private InvoiceDocumentEntity document;
 }
@@ -0,0 +1,58 @@
+package com.example.invoiceapi.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Entity
+// Satırlar Hibernate ile değil InvoiceLineWriter ile JDBC batch olarak eklenir; eşleme şema üretimi
+// ve okuma içindir. Faturaya yabancı anahtar yok: aylara bölünmüş şemada invoices'ın anahtarı (id, p1).
+@Table(name = "invoice_lines")
+@IdClass(InvoiceLineEntity.Key.class)
+@Data
+public class InvoiceLineEntity {
+
+    @Id
+    @Column(name = "invoice_id")
+    private Long invoiceId;
+
+    // FaWiersz/NrWierszaFa
+    @Id
+    @Column(name = "line_no")
+    private Integer lineNo;
+
+    // Faturanın düzenleme tarihi; bölümlenmiş şemada satırlar da faturayla aynı aya düşer
+    @Column(nullable = false)
+    private LocalDate p1;
+
+    @Column(nullable = false, length = 512)
+    private String name;
+
+    @Column(length = 256)
+    private String unit;
+
+    @Column(precision = 22, scale = 8)
+    private BigDecimal quantity;
+
+    @Column(name = "unit_net_price", precision = 22, scale = 8)
+    private BigDecimal unitNetPrice;
+
+    @Column(name = "net_value", nullable = false, precision = 18, scale = 2)
+    private BigDecimal netValue;
+
+    @Column(name = "vat_rate", nullable = false, length = 4)
+    private String vatRate;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long invoiceId;
+        private Integer lineNo;
+    }
+}
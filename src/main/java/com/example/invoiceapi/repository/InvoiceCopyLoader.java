@@ -0,0 +1,312 @@
+package com.example.invoiceapi.repository;
+
+import com.example.invoiceapi.model.InvoiceDocumentEntity;
+import com.example.invoiceapi.model.InvoiceEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Inserts new invoices, and their original documents, with PostgreSQL's
+ * {@code COPY ... FROM STDIN} instead of one INSERT per row. Rows are encoded as CSV into a
+ * small buffer that is sent to the server as it fills, so the whole load is never held as one
+ * string.
+ * <p>
+ * The rows are first copied straight into {@code invoices}. If one of them is already stored
+ * (for example by a concurrent upload), that COPY fails as a whole; it is rolled back to a
+ * savepoint and the rows are copied into a temporary staging table instead, from which
+ * {@code INSERT ... ON CONFLICT DO NOTHING} moves the ones that do not clash. Both paths run in
+ * the caller's transaction. With the partitioned schema the {@code (nip, p2)} key lives in
+ * {@code invoice_keys}, which a trigger fills for every copied row; a clash there also triggers
+ * the fallback, and the staging insert skips numbers already stored.
+ * <p>
+ * Ids come from the entity's own generator, so rows loaded here and rows saved through
+ * Hibernate never collide. Only used when {@code invoice.bulk-load.copy-enabled} is set and
+ * the datasource is PostgreSQL; see {@link #isEnabled()}.
+ */
+@Repository
+@Slf4j
+public class InvoiceCopyLoader {
+
+    static final String COPY_INVOICES = "COPY invoices (id, nip, p1, p2, content_hash, line_count, net_total, vat_total, gross_total) FROM STDIN (FORMAT csv)";
+    static final String COPY_STAGING = "COPY invoice_staging (id, nip, p1, p2, content_hash, line_count, net_total, vat_total, gross_total) FROM STDIN (FORMAT csv)";
+    static final String COPY_DOCUMENTS = "COPY invoice_documents (content_hash, content, size) FROM STDIN (FORMAT csv)";
+    static final String COPY_DOCUMENT_STAGING = "COPY invoice_document_staging (content_hash, content, size) FROM STDIN (FORMAT csv)";
+    private static final String CREATE_STAGING = "CREATE TEMPORARY TABLE IF NOT EXISTS invoice_staging "
+            + "(LIKE invoices INCLUDING DEFAULTS) ON COMMIT DELETE ROWS";
+    private static final String CREATE_DOCUMENT_STAGING = "CREATE TEMPORARY TABLE IF NOT EXISTS invoice_document_staging "
+            + "(LIKE invoice_documents INCLUDING DEFAULTS) ON COMMIT DELETE ROWS";
+    // Bölümlenmiş şemada (nip, p2) invoice_keys'te zorlanır ve ON CONFLICT onu kapsamaz; kayıtlı numaralar önceden elenir
+    private static final String MERGE_STAGING = "INSERT INTO invoices (id, nip, p1, p2, content_hash, line_count, net_total, vat_total, gross_total) "
+            + "SELECT id, nip, p1, p2, content_hash, line_count, net_total, vat_total, gross_total FROM invoice_staging s "
+            + "WHERE NOT EXISTS (SELECT 1 FROM invoices i WHERE i.nip = s.nip AND i.p2 = s.p2) "
+            + "ON CONFLICT DO NOTHING RETURNING id";
+    // Yalnızca az önce eklenen faturaların belgeleri aktarılır (ara tablodaki id'ler yeni üretilmiştir)
+    private static final String MERGE_DOCUMENT_STAGING = "INSERT INTO invoice_documents (content_hash, content, size) "
+            + "SELECT d.content_hash, d.content, d.size FROM invoice_document_staging d "
+            + "JOIN invoice_staging s ON s.content_hash = d.content_hash JOIN invoices i ON i.id = s.id "
+            + "ON CONFLICT DO NOTHING";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final int COPY_CHUNK_SIZE = 64 * 1024;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final DataSource dataSource;
+    private final boolean copyEnabled;
+    // İlk kullanımda bağlantıdan belirlenir
+    private volatile Boolean postgres;
+
+    public InvoiceCopyLoader(DataSource dataSource,
+                             @Value("${invoice.bulk-load.copy-enabled:false}") boolean copyEnabled) {
+        this.dataSource = dataSource;
+        this.copyEnabled = copyEnabled;
+    }
+
+    /**
+     * Whether COPY loading is switched on and the datasource is PostgreSQL. When false, callers
+     * should store the entities through the JPA repository.
+     */
+    public boolean isEnabled() {
+        if (!copyEnabled) {
+            return false;
+        }
+        Boolean detected = postgres;
+        if (detected == null) {
+            Connection connection = DataSourceUtils.getConnection(dataSource);
+            try {
+                detected = connection.isWrapperFor(PGConnection.class);
+            } catch (SQLException e) {
+                detected = false;
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+            if (!detected) {
+                log.warn("invoice.bulk-load.copy-enabled is set but the datasource is not PostgreSQL; using JPA inserts");
+            }
+            postgres = detected;
+        }
+        return detected;
+    }
+
+    /**
+     * Assigns ids to the entities that have none and inserts them.
+     *
+     * @param entities New invoices; none of them may repeat another's content hash or NIP and P_2
+     * @return The entities that were not inserted because a matching invoice is already stored;
+     * their id is reset to null. Every other entity is stored under its assigned id.
+     */
+    @Transactional
+    public List<InvoiceEntity> insert(List<InvoiceEntity> entities) {
+        if (entities.isEmpty()) {
+            return List.of();
+        }
+        assignIds(entities);
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            PGConnection pg = connection.unwrap(PGConnection.class);
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                copy(pg, COPY_INVOICES, entities);
+                copyDocuments(pg, COPY_DOCUMENTS, entities);
+                connection.releaseSavepoint(savepoint);
+                return List.of();
+            } catch (SQLException e) {
+                if (!UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                    throw e;
+                }
+                connection.rollback(savepoint);
+                log.info("COPY of {} invoices hit a stored invoice, loading them through the staging table", entities.size());
+            }
+            return insertThroughStaging(connection, pg, entities);
+        } catch (SQLException e) {
+            throw new UncategorizedSQLException("COPY invoices", COPY_INVOICES, e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private List<InvoiceEntity> insertThroughStaging(Connection connection, PGConnection pg,
+                                                     List<InvoiceEntity> entities) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_STAGING);
+            statement.execute(CREATE_DOCUMENT_STAGING);
+            // Aynı işlemde önceki bir yüklemeden kalan satırlar olmasın
+            statement.execute("TRUNCATE invoice_staging, invoice_document_staging");
+        }
+        copy(pg, COPY_STAGING, entities);
+        copyDocuments(pg, COPY_DOCUMENT_STAGING, entities);
+
+        Set<Long> inserted = new HashSet<>();
+        try (PreparedStatement merge = connection.prepareStatement(MERGE_STAGING);
+             ResultSet ids = merge.executeQuery()) {
+            while (ids.next()) {
+                inserted.add(ids.getLong(1));
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(MERGE_DOCUMENT_STAGING);
+        }
+
+        List<InvoiceEntity> skipped = new ArrayList<>();
+        for (InvoiceEntity entity : entities) {
+            if (!inserted.contains(entity.getId())) {
+                entity.setId(null);
+                skipped.add(entity);
+            }
+        }
+        return skipped;
+    }
+
+    private void assignIds(List<InvoiceEntity> entities) {
+        SharedSessionContractImplementor session = null;
+        BeforeExecutionGenerator generator = null;
+        for (InvoiceEntity entity : entities) {
+            if (entity.getId() != null) {
+                continue;
+            }
+            if (generator == null) {
+                session = entityManager.unwrap(SharedSessionContractImplementor.class);
+                generator = (BeforeExecutionGenerator) session.getEntityPersister(null, entity).getGenerator();
+            }
+            entity.setId((Long) generator.generate(session, entity, null, EventType.INSERT));
+        }
+    }
+
+    /**
+     * Streams the entities as CSV rows into a {@code COPY ... FROM STDIN (FORMAT csv)} command.
+     */
+    static void copy(PGConnection connection, String sql, List<InvoiceEntity> entities) throws SQLException {
+        CopyIn copy = connection.getCopyAPI().copyIn(sql);
+        try {
+            StringBuilder rows = new StringBuilder(COPY_CHUNK_SIZE + 256);
+            for (InvoiceEntity entity : entities) {
+                rows.append(entity.getId()).append(',');
+                appendField(rows, entity.getNip());
+                rows.append(',');
+                appendField(rows, entity.getP1().toString());
+                rows.append(',');
+                appendField(rows, entity.getP2());
+                rows.append(',');
+                appendField(rows, entity.getContentHash());
+                rows.append(',');
+                appendNumber(rows, entity.getLineCount());
+                rows.append(',');
+                appendNumber(rows, entity.getNetTotal());
+                rows.append(',');
+                appendNumber(rows, entity.getVatTotal());
+                rows.append(',');
+                appendNumber(rows, entity.getGrossTotal());
+                rows.append('\n');
+                if (rows.length() >= COPY_CHUNK_SIZE) {
+                    send(copy, rows);
+                }
+            }
+            send(copy, rows);
+            copy.endCopy();
+        } finally {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+    }
+
+    /**
+     * Streams the original documents attached to the entities, with the compressed content in
+     * bytea hex form. Does nothing when none of them carries a document.
+     */
+    static void copyDocuments(PGConnection connection, String sql, List<InvoiceEntity> entities) throws SQLException {
+        if (entities.stream().allMatch(entity -> entity.getDocument() == null)) {
+            return;
+        }
+        CopyIn copy = connection.getCopyAPI().copyIn(sql);
+        try {
+            StringBuilder rows = new StringBuilder(COPY_CHUNK_SIZE + 256);
+            for (InvoiceEntity entity : entities) {
+                InvoiceDocumentEntity document = entity.getDocument();
+                if (document == null) {
+                    continue;
+                }
+                appendField(rows, document.getContentHash());
+                rows.append(",\\x");
+                for (byte b : document.getContent()) {
+                    rows.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+                }
+                rows.append(',').append(document.getSize()).append('\n');
+                if (rows.length() >= COPY_CHUNK_SIZE) {
+                    send(copy, rows);
+                }
+            }
+            send(copy, rows);
+            copy.endCopy();
+        } finally {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+    }
+
+    /**
+     * Appends a text field for COPY's CSV format. Values are always quoted, so an empty string
+     * stays distinct from NULL, which is written as nothing.
+     */
+    private static void appendField(StringBuilder rows, String value) {
+        if (value == null) {
+            return;
+        }
+        rows.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                rows.append('"');
+            }
+            rows.append(c);
+        }
+        rows.append('"');
+    }
+
+    /**
+     * Appends a numeric field unquoted; NULL is written as nothing.
+     */
+    private static void appendNumber(StringBuilder rows, Number value) {
+        if (value instanceof BigDecimal decimal) {
+            rows.append(decimal.toPlainString());
+        } else if (value != null) {
+            rows.append(value);
+        }
+    }
+
+    private static void send(CopyIn copy, StringBuilder rows) throws SQLException {
+        if (rows.length() == 0) {
+            return;
+        }
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+}
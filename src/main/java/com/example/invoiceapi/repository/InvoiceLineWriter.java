@@ -0,0 +1,46 @@
+package com.example.invoiceapi.repository;
+
+import com.example.invoiceapi.model.InvoiceLineEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Inserts invoice line rows with one JDBC batch per call. Lines are written with plain JDBC
+ * rather than through the persistence context, so the rows of a long invoice are never all
+ * managed entities at once.
+ */
+@Repository
+public class InvoiceLineWriter {
+
+    static final String INSERT = "INSERT INTO invoice_lines "
+            + "(invoice_id, line_no, p1, name, unit, quantity, unit_net_price, net_value, vat_rate) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public InvoiceLineWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts the rows in the caller's transaction.
+     */
+    public void insert(List<InvoiceLineEntity> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT, rows, rows.size(), (statement, row) -> {
+            statement.setLong(1, row.getInvoiceId());
+            statement.setInt(2, row.getLineNo());
+            statement.setObject(3, row.getP1());
+            statement.setString(4, row.getName());
+            statement.setString(5, row.getUnit());
+            statement.setBigDecimal(6, row.getQuantity());
+            statement.setBigDecimal(7, row.getUnitNetPrice());
+            statement.setBigDecimal(8, row.getNetValue());
+            statement.setString(9, row.getVatRate());
+        });
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.invoiceapi.repository;
+
+import com.example.invoiceapi.config.PartitioningProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the monthly partitions of the range-partitioned {@code invoices} and {@code invoice_lines}
+ * tables ({@code db/postgresql/schema-partitioned.sql}) in step with the calendar: creates the
+ * partitions of the current month and the next {@code invoice.partitioning.create-ahead} months,
+ * and drops the partitions older than {@code invoice.partitioning.retention-months}.
+ * <p>
+ * A new partition is created as a plain table, filled with the rows of its month that already
+ * landed in the default partition and then attached, so it also works when invoices of that
+ * month were stored before the partition existed. Dropping a month detaches and drops the
+ * partitions of the invoices and their lines, which costs the same however many invoices it
+ * holds; only the original documents and the {@code (nip, p2)} keys of those invoices are
+ * deleted row by row, since {@code invoice_documents} and {@code invoice_keys} are not partitioned. Each run with a retention set then publishes an
+ * {@link InvoicesExpiredEvent}, so the in-memory caches forget the dropped invoices.
+ * <p>
+ * Every step runs in its own short transaction under a PostgreSQL advisory lock, so several
+ * application instances can run the maintenance at once. Runs once at startup and then on
+ * {@code invoice.partitioning.schedule}; does nothing unless {@code invoice.partitioning.enabled}
+ * is set.
+ */
+@Component
+@Slf4j
+public class InvoicePartitionMaintenance implements ApplicationRunner {
+
+    static final String INVOICES = "invoices";
+    static final String LINES = "invoice_lines";
+    static final String IS_PARTITIONED = "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table "
+            + "WHERE partrelid = to_regclass(?))";
+    static final String PARTITIONS = "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+            + "WHERE i.inhparent = to_regclass(?)";
+    // Tüm örnekler aynı anahtarı kullanır; kilit işlem bitince bırakılır
+    static final String LOCK = "SELECT pg_try_advisory_xact_lock(hashtext('invoices_partitions'))";
+    // Varsayılan bölümden taşınan sütunlar; tablo tanımıyla aynı sırada
+    private static final Map<String, String> COLUMNS = Map.of(
+            INVOICES, "id, nip, p1, p2, content_hash, line_count, net_total, vat_total, gross_total",
+            LINES, "invoice_id, line_no, p1, name, unit, quantity, unit_net_price, net_value, vat_rate");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final Pattern PARTITION_NAME = Pattern.compile("(?:invoices|invoice_lines)_(\\d{4})_(\\d{2})");
+
+    private final PartitioningProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String ddlAuto;
+
+    public InvoicePartitionMaintenance(PartitioningProperties properties, JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       ApplicationEventPublisher eventPublisher,
+                                       @Value("${spring.jpa.hibernate.ddl-auto:none}") String ddlAuto) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.ddlAuto = ddlAuto;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        maintain();
+    }
+
+    @Scheduled(cron = "${invoice.partitioning.schedule:0 0 3 * * *}")
+    public void maintain() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            maintain(YearMonth.now());
+        } catch (DataAccessException e) {
+            log.error("Invoice partition maintenance failed", e);
+        }
+    }
+
+    /**
+     * Creates the missing partitions from {@code current} up to the configured months ahead and
+     * drops the ones past retention.
+     */
+    void maintain(YearMonth current) {
+        if (!isPartitioned(INVOICES)) {
+            log.warn("invoice.partitioning.enabled is set but the invoices table is not partitioned; "
+                    + "see db/postgresql/migrate-to-partitioned.sql");
+            return;
+        }
+        if ("update".equalsIgnoreCase(ddlAuto)) {
+            // Hibernate update, bölüm anahtarını içermeyen benzersiz kısıtları yeniden kurmaya çalışır
+            log.warn("spring.jpa.hibernate.ddl-auto=update should not be used with the partitioned invoices table; use validate or none");
+        }
+        boolean linesPartitioned = isPartitioned(LINES);
+        List<String> tables = linesPartitioned ? List.of(INVOICES, LINES) : List.of(INVOICES);
+        Set<YearMonth> months = new TreeSet<>();
+        for (String table : tables) {
+            List<String> existing = partitions(table);
+            for (int i = 0; i <= properties.getCreateAhead(); i++) {
+                YearMonth month = current.plusMonths(i);
+                if (!existing.contains(partitionName(table, month))) {
+                    createPartition(table, month);
+                }
+            }
+            for (String name : existing) {
+                YearMonth month = month(name);
+                if (month != null) {
+                    months.add(month);
+                }
+            }
+        }
+        if (properties.getRetentionMonths() > 0) {
+            YearMonth oldestKept = current.minusMonths(properties.getRetentionMonths());
+            for (YearMonth month : months) {
+                if (month.isBefore(oldestKept)) {
+                    dropMonth(month, linesPartitioned);
+                }
+            }
+            // Bölümü başka bir örnek silmiş olsa da bu örneğin önbellekleri temizlenmeli
+            eventPublisher.publishEvent(new InvoicesExpiredEvent(oldestKept.atDay(1)));
+        }
+    }
+
+    private void createPartition(String table, YearMonth month) {
+        String name = partitionName(table, month);
+        transactionTemplate.executeWithoutResult(status -> {
+            // Başka bir örnek aynı anda çalışıyorsa ya da bölümü az önce oluşturduysa atla
+            if (!locked() || partitions(table).contains(name)) {
+                return;
+            }
+            jdbcTemplate.execute(createTable(table, name));
+            int moved = jdbcTemplate.update(moveFromDefault(table, name), month.atDay(1), month.plusMonths(1).atDay(1));
+            jdbcTemplate.execute(attach(table, name, month));
+            log.info("Created partition {} ({} rows moved from {})", name, moved, defaultPartition(table));
+        });
+    }
+
+    /**
+     * Drops a month's lines, then its documents and keys, then its invoices, in one transaction.
+     */
+    private void dropMonth(YearMonth month, boolean linesPartitioned) {
+        String invoices = partitionName(INVOICES, month);
+        String lines = partitionName(LINES, month);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!locked()) {
+                return;
+            }
+            boolean hasInvoices = partitions(INVOICES).contains(invoices);
+            if (linesPartitioned && partitions(LINES).contains(lines)) {
+                jdbcTemplate.execute("ALTER TABLE " + LINES + " DETACH PARTITION " + lines);
+                jdbcTemplate.execute("DROP TABLE " + lines);
+            } else if (!linesPartitioned && hasInvoices) {
+                jdbcTemplate.update(deleteLines(invoices));
+            }
+            if (!hasInvoices) {
+                return;
+            }
+            int documents = jdbcTemplate.update(deleteDocuments(invoices));
+            jdbcTemplate.update(deleteKeys(invoices));
+            jdbcTemplate.execute("ALTER TABLE " + INVOICES + " DETACH PARTITION " + invoices);
+            jdbcTemplate.execute("DROP TABLE " + invoices);
+            log.info("Dropped invoice partition {}, its lines and {} stored documents", invoices, documents);
+        });
+    }
+
+    private boolean isPartitioned(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_PARTITIONED, Boolean.class, table));
+    }
+
+    private boolean locked() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(LOCK, Boolean.class));
+    }
+
+    private List<String> partitions(String table) {
+        return jdbcTemplate.queryForList(PARTITIONS, String.class, table);
+    }
+
+    static String defaultPartition(String table) {
+        return table + "_default";
+    }
+
+    static String partitionName(String table, YearMonth month) {
+        return table + "_" + SUFFIX.format(month);
+    }
+
+    /**
+     * @return The month of a monthly partition, or null for any other table such as the default partition
+     */
+    static YearMonth month(String partitionName) {
+        Matcher matcher = PARTITION_NAME.matcher(partitionName);
+        return matcher.matches()
+                ? YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)))
+                : null;
+    }
+
+    // Tablo adları sabitlerden ve YearMonth'tan üretilir ya da PARTITION_NAME ile eşleşir; SQL'e doğrudan yazılabilir
+    static String createTable(String table, String name) {
+        return "CREATE TABLE " + name + " (LIKE " + table + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)";
+    }
+
+    static String moveFromDefault(String table, String name) {
+        String columns = COLUMNS.get(table);
+        return "WITH moved AS (DELETE FROM " + defaultPartition(table) + " WHERE p1 >= ? AND p1 < ? "
+                + "RETURNING " + columns + ") "
+                + "INSERT INTO " + name + " (" + columns + ") SELECT " + columns + " FROM moved";
+    }
+
+    static String attach(String table, String name, YearMonth month) {
+        // İndeksler ve benzersiz kısıtlar ana tablodan bölüme bağlanırken oluşturulur
+        return "ALTER TABLE " + table + " ATTACH PARTITION " + name
+                + " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')";
+    }
+
+    static String deleteDocuments(String name) {
+        return "DELETE FROM invoice_documents d USING " + name + " p WHERE d.content_hash = p.content_hash";
+    }
+
+    // Anahtar yalnızca bu ayın faturasına aitse silinir
+    static String deleteKeys(String name) {
+        return "DELETE FROM invoice_keys k USING " + name + " p WHERE k.nip = p.nip AND k.p2 = p.p2 AND k.p1 = p.p1";
+    }
+
+    // invoice_lines bölümlenmemişse bir ayın satırları faturalarıyla eşleştirilerek silinir
+    static String deleteLines(String name) {
+        return "DELETE FROM " + LINES + " l USING " + name + " p WHERE l.invoice_id = p.id";
+    }
+}
@@ -1,9 +1,47 @@
 package com.example.invoiceapi.repository;
 
+import com.example.invoiceapi.dto.InvoiceSummary;
+import com.example.invoiceapi.model.InvoiceDocumentEntity;
 import com.example.invoiceapi.model.InvoiceEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
-public interface InvoiceRepository extends JpaRepository<InvoiceEntity, Long> {
+public interface InvoiceRepository extends JpaRepository<InvoiceEntity, Long>, InvoiceSearchRepository {
+
+    /**
+     * Finds an invoice with the same content, or with the same NIP and invoice number.
+     * Both lookups are served by the unique indexes on {@code content_hash} and {@code (nip, p2)}.
+     */
+    Optional<InvoiceEntity> findFirstByContentHashOrNipAndP2(String contentHash, String nip, String p2);
+
+    /**
+     * Batch variant of {@link #findFirstByContentHashOrNipAndP2}; may return rows whose NIP and
+     * invoice number only match different candidates, so callers match pairs themselves.
+     */
+    List<InvoiceEntity> findByContentHashInOrNipInAndP2In(Collection<String> contentHashes,
+                                                          Collection<String> nips,
+                                                          Collection<String> p2s);
+
+    @Query("select new com.example.invoiceapi.dto.InvoiceSummary(i.id, i.nip, i.p1, i.p2) from InvoiceEntity i where i.id = :id")
+    Optional<InvoiceSummary> findSummaryById(@Param("id") Long id);
+
+    /**
+     * Served by the unique index on {@code (nip, p2)}.
+     */
+    @Query("select new com.example.invoiceapi.dto.InvoiceSummary(i.id, i.nip, i.p1, i.p2) from InvoiceEntity i "
+            + "where i.nip = :nip and i.p2 = :p2")
+    Optional<InvoiceSummary> findSummaryByNipAndP2(@Param("nip") String nip, @Param("p2") String p2);
+
+    /**
+     * Loads the stored original XML of an invoice without loading the invoice itself.
+     */
+    @Query("select d from InvoiceEntity i join i.document d where i.id = :id")
+    Optional<InvoiceDocumentEntity> findDocumentByInvoiceId(@Param("id") Long id);
 }
@@ -0,0 +1,32 @@
+package com.example.invoiceapi.repository;
+
+import com.example.invoiceapi.dto.InvoiceFilter;
+import com.example.invoiceapi.dto.InvoiceSummary;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Filtered, keyset-paginated reads of stored invoices.
+ */
+public interface InvoiceSearchRepository {
+
+    /**
+     * Returns the invoices matching the filter whose id is greater than {@code afterId},
+     * in ascending id order.
+     *
+     * @param filter  The criteria to match; null fields are ignored
+     * @param afterId The last id of the previous page, or null for the first page
+     * @param limit   The maximum number of rows to return
+     */
+    List<InvoiceSummary> search(InvoiceFilter filter, Long afterId, int limit);
+
+    /**
+     * Streams every invoice matching the filter in ascending id order over a forward-only cursor.
+     * Must be called inside a transaction, and the stream must be closed to release the cursor.
+     *
+     * @param filter    The criteria to match; null fields are ignored
+     * @param fetchSize The number of rows the JDBC driver fetches per round trip
+     */
+    Stream<InvoiceSummary> stream(InvoiceFilter filter, int fetchSize);
+}
@@ -0,0 +1,75 @@
+package com.example.invoiceapi.repository;
+
+import com.example.invoiceapi.dto.InvoiceFilter;
+import com.example.invoiceapi.dto.InvoiceSummary;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Builds the query from the filters that are actually set, so every combination gets a plan
+ * that can use the matching index instead of {@code (:param IS NULL OR ...)} predicates.
+ * Pages are addressed by the last seen id ({@code id > :afterId}), never by OFFSET, so
+ * reading a late page costs the same as reading the first one.
+ */
+public class InvoiceSearchRepositoryImpl implements InvoiceSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<InvoiceSummary> search(InvoiceFilter filter, Long afterId, int limit) {
+        return query(filter, afterId).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public Stream<InvoiceSummary> stream(InvoiceFilter filter, int fetchSize) {
+        // İleri yönlü imleç: satırlar sürücüden fetchSize'lık gruplar halinde gelir, hiçbiri yönetilen varlık değildir
+        return query(filter, null)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    private TypedQuery<InvoiceSummary> query(InvoiceFilter filter, Long afterId) {
+        StringBuilder jpql = new StringBuilder(
+                "select new com.example.invoiceapi.dto.InvoiceSummary(e.id, e.nip, e.p1, e.p2) from InvoiceEntity e where 1 = 1");
+        Map<String, Object> parameters = new HashMap<>();
+        if (filter.nip() != null) {
+            jpql.append(" and e.nip = :nip");
+            parameters.put("nip", filter.nip());
+        }
+        // Tarih aralığı bölümlenmiş tabloda yalnızca ilgili aylara ait bölümlerin taranmasını sağlar
+        if (filter.p1From() != null) {
+            jpql.append(" and e.p1 >= :p1From");
+            parameters.put("p1From", filter.p1From());
+        }
+        if (filter.p1To() != null) {
+            jpql.append(" and e.p1 <= :p1To");
+            parameters.put("p1To", filter.p1To());
+        }
+        if (filter.p2Prefix() != null) {
+            jpql.append(" and e.p2 like :p2Prefix escape '\\'");
+            parameters.put("p2Prefix", escapeLike(filter.p2Prefix()) + "%");
+        }
+        if (afterId != null) {
+            jpql.append(" and e.id > :afterId");
+            parameters.put("afterId", afterId);
+        }
+        jpql.append(" order by e.id");
+
+        TypedQuery<InvoiceSummary> query = entityManager.createQuery(jpql.toString(), InvoiceSummary.class);
+        parameters.forEach(query::setParameter);
+        return query;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
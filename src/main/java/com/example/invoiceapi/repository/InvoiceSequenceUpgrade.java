@@ -0,0 +1,81 @@
+package com.example.invoiceapi.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves {@code invoices_seq} past the ids already stored in {@code invoices}, once at startup.
+ * <p>
+ * Invoice ids used to come from an identity column. On a table created then, Hibernate
+ * ({@code ddl-auto=update}) adds the sequence starting at 1 and would hand out ids that are
+ * already taken. The sequence is set to the largest id rounded up to the allocation size, so the
+ * next block Hibernate reserves starts above every stored id. It is never moved back, so running
+ * it again, or on several instances, is harmless. {@code db/postgresql/advance-invoices-seq.sql}
+ * does the same by hand.
+ */
+@Component
+@Slf4j
+public class InvoiceSequenceUpgrade implements ApplicationRunner {
+
+    // InvoiceEntity'deki @SequenceGenerator allocationSize ile aynı olmalı
+    static final int ALLOCATION_SIZE = 50;
+    static final String MAX_ID = "SELECT max(id) FROM invoices";
+    // setval sonrası nextval verilen değer + artış döner; dizi zaten ilerideyse olduğu yerde kalır
+    static final String ADVANCE = "SELECT setval('invoices_seq', GREATEST(?, (SELECT last_value FROM invoices_seq)))";
+    // setval olmayan veritabanları (H2) için standart SQL
+    static final String NEXT_VALUE = "SELECT NEXT VALUE FOR invoices_seq";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public InvoiceSequenceUpgrade(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            advance();
+        } catch (DataAccessException e) {
+            log.error("Could not move invoices_seq past the stored invoice ids", e);
+        }
+    }
+
+    /**
+     * Moves the sequence so that the next block of ids Hibernate reserves lies above the largest
+     * stored id. Does nothing on an empty table.
+     */
+    void advance() {
+        Long maxId = jdbcTemplate.queryForObject(MAX_ID, Long.class);
+        if (maxId == null || maxId <= 0) {
+            return;
+        }
+        long floor = roundUp(maxId);
+        if (isPostgres()) {
+            Long value = jdbcTemplate.queryForObject(ADVANCE, Long.class, floor);
+            log.info("invoices_seq is at {} (largest invoice id {})", value, maxId);
+            return;
+        }
+        // Hibernate bir değer için value - 49 .. value aralığını ayırır
+        Long next = jdbcTemplate.queryForObject(NEXT_VALUE, Long.class);
+        if (next != null && next - (ALLOCATION_SIZE - 1) > maxId) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER SEQUENCE invoices_seq RESTART WITH " + (floor + ALLOCATION_SIZE));
+        log.info("Restarted invoices_seq at {} (largest invoice id {})", floor + ALLOCATION_SIZE, maxId);
+    }
+
+    static long roundUp(long id) {
+        return (id + ALLOCATION_SIZE - 1) / ALLOCATION_SIZE * ALLOCATION_SIZE;
+    }
+
+    private boolean isPostgres() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute(
+                (ConnectionCallback<Boolean>) connection -> connection.isWrapperFor(PGConnection.class)));
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.invoiceapi.repository;
+
+import java.time.LocalDate;
+
+/**
+ * Published by {@link InvoicePartitionMaintenance} on every run with a retention set: invoices
+ * issued (P_1) before {@code issuedBefore} are, or are about to be, dropped with their monthly
+ * partitions. Every instance publishes it, including those that found the partitions already
+ * dropped by another instance, so each can forget the invoices it still holds in memory.
+ */
+public record InvoicesExpiredEvent(LocalDate issuedBefore) {
+}
@@ -0,0 +1,185 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.config.AuditProperties;
+import com.example.invoiceapi.dto.AuditRecord;
+import com.example.invoiceapi.util.MpscRingBuffer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only record of every submitted invoice and its outcome.
+ * <p>
+ * {@link #record(AuditRecord)} only puts the record into a {@link MpscRingBuffer}; a single
+ * writer thread drains it into memory-mapped segment files ({@link AuditSegmentWriter}) and forces
+ * them to disk every {@code invoice.audit.flush-interval}. A request thread therefore never waits
+ * for audit I/O or for another request thread: when the writer falls behind and the buffer is full,
+ * the record is dropped and counted in {@code invoice.audit.records{result="dropped"}}.
+ * When the buffer is empty the writer parks until a producer wakes it or the next flush is due,
+ * so an idle log costs no CPU. Records are read back with {@link #reader()}.
+ */
+@Component
+@Slf4j
+public class AuditLog {
+
+    private final AuditProperties properties;
+    private final InvoiceMetrics metrics;
+    private final MpscRingBuffer<AuditRecord> buffer;
+    private final AuditSegmentWriter segments;
+    private final Thread writer;
+    private volatile boolean running;
+    // Yazıcı park etmeden önce koyar; üretici yalnızca o zaman unpark çağırır
+    private volatile boolean waiting;
+
+    public AuditLog(AuditProperties properties, InvoiceMetrics metrics) throws IOException {
+        this.properties = properties;
+        this.metrics = metrics;
+        if (!properties.isEnabled()) {
+            this.buffer = null;
+            this.segments = null;
+            this.writer = null;
+            return;
+        }
+        if (properties.getDirectory() == null || properties.getDirectory().isBlank()) {
+            // Denetim kaydı sessizce geçici ya da çalışma dizinine yazılmaz
+            throw new IllegalStateException("invoice.audit.directory must be set when invoice.audit.enabled=true");
+        }
+        this.buffer = new MpscRingBuffer<>(properties.getBufferCapacity());
+        this.segments = new AuditSegmentWriter(directory(), properties.getSegmentSize().toBytes(), properties.getRetainedSegments());
+        this.running = true;
+        this.writer = new Thread(this::drain, "invoice-audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        log.info("Audit log: {} (segments of {}, buffer of {} records, payloads {})", directory().toAbsolutePath(),
+                properties.getSegmentSize(), buffer.capacity(), properties.isIncludePayload() ? "kept" : "not kept");
+    }
+
+    /**
+     * Hands the record to the writer thread without waiting; drops it if the buffer is full.
+     */
+    public void record(AuditRecord record) {
+        if (buffer == null) {
+            return;
+        }
+        if (!buffer.offer(record)) {
+            metrics.audit(InvoiceMetrics.Audit.DROPPED);
+        } else if (waiting) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * @return Whether records should carry the compressed XML; callers skip building it otherwise
+     */
+    public boolean capturesPayload() {
+        return buffer != null && properties.isIncludePayload();
+    }
+
+    /**
+     * @return The compressed XML if it may be kept with a record, otherwise null
+     */
+    public byte[] payload(byte[] compressed) {
+        return capturesPayload() && compressed != null && compressed.length <= properties.getMaxPayloadSize().toBytes()
+                ? compressed
+                : null;
+    }
+
+    public AuditReader reader() {
+        return new AuditReader(directory());
+    }
+
+    /**
+     * Stops the writer after it has written the records already in the buffer.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private Path directory() {
+        return Path.of(properties.getDirectory());
+    }
+
+    private void drain() {
+        long flushIntervalNanos = properties.getFlushInterval().toNanos();
+        long lastFlush = System.nanoTime();
+        boolean unflushed = false;
+        while (true) {
+            AuditRecord record = buffer.poll();
+            if (record != null) {
+                write(record);
+                unflushed = true;
+            } else if (buffer.size() > 0) {
+                // Üretici sırayı almış ama yuvayı henüz yazmamış; birkaç döngüde görünür
+                Thread.onSpinWait();
+            } else if (!running) {
+                // Kapanışta tampon boşalana kadar yazmaya devam edilir
+                break;
+            } else {
+                long untilFlush = flushIntervalNanos - (System.nanoTime() - lastFlush);
+                if (!unflushed) {
+                    awaitRecords(0);
+                } else if (untilFlush > 0) {
+                    awaitRecords(untilFlush);
+                }
+            }
+            if (unflushed && System.nanoTime() - lastFlush >= flushIntervalNanos) {
+                flush();
+                unflushed = false;
+                lastFlush = System.nanoTime();
+            }
+        }
+        try {
+            segments.close();
+        } catch (RuntimeException e) {
+            log.error("Failed to close audit segment: {}", e.toString());
+        }
+        log.info("Audit log writer stopped");
+    }
+
+    /**
+     * Parks the writer until a record arrives, the log is closed or the timeout elapses.
+     *
+     * @param timeoutNanos How long to wait at most; 0 waits without a timeout
+     */
+    private void awaitRecords(long timeoutNanos) {
+        waiting = true;
+        // Bayrak konduktan sonra yeniden bakılır: arada gelen kaydın unpark'ı kaçırılmaz
+        if (running && buffer.size() == 0) {
+            if (timeoutNanos > 0) {
+                LockSupport.parkNanos(this, timeoutNanos);
+            } else {
+                LockSupport.park(this);
+            }
+        }
+        waiting = false;
+    }
+
+    private void flush() {
+        try {
+            segments.flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to force audit segment to disk: {}", e.toString());
+        }
+    }
+
+    private void write(AuditRecord record) {
+        try {
+            segments.append(record);
+            metrics.audit(InvoiceMetrics.Audit.WRITTEN);
+        } catch (IOException | RuntimeException e) {
+            metrics.audit(InvoiceMetrics.Audit.FAILED);
+            log.error("Failed to write audit record for {}: {}", record.contentHash(), e.toString());
+        }
+    }
+}
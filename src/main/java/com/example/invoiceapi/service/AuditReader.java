@@ -0,0 +1,146 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.dto.AuditRecord;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the audit segments written by {@link AuditSegmentWriter}, oldest record first. Safe to
+ * use while the log is being written; records appended during a replay may or may not be seen.
+ * <p>
+ * Segments created before the one that covers {@code from} are skipped without being read. A
+ * record whose checksum does not match (one torn by a crash) ends its segment.
+ */
+@Slf4j
+public class AuditReader {
+
+    private final Path directory;
+
+    public AuditReader(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Passes every record with a timestamp at or after {@code from} to the consumer, in write
+     * order, until the consumer returns false.
+     *
+     * @return The number of records passed to the consumer
+     */
+    public long replay(Instant from, Predicate<AuditRecord> consumer) throws IOException {
+        long fromMillis = from.toEpochMilli();
+        List<Path> segments = AuditSegmentWriter.segments(directory);
+        long count = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            // Sonraki segment 'from' öncesinde açıldıysa bu segmentin tüm kayıtları daha eskidir
+            if (i + 1 < segments.size() && createdAt(segments.get(i + 1)) <= fromMillis) {
+                continue;
+            }
+            MappedByteBuffer segment = map(segments.get(i));
+            if (segment == null) {
+                continue;
+            }
+            AuditRecord record;
+            while ((record = next(segments.get(i), segment)) != null) {
+                if (record.timestamp().toEpochMilli() < fromMillis) {
+                    continue;
+                }
+                count++;
+                if (!consumer.test(record)) {
+                    return count;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return Up to {@code limit} records with a timestamp at or after {@code from}, in write order
+     */
+    public List<AuditRecord> read(Instant from, int limit) throws IOException {
+        List<AuditRecord> records = new ArrayList<>(Math.min(limit, 1024));
+        if (limit > 0) {
+            replay(from, record -> {
+                records.add(record);
+                return records.size() < limit;
+            });
+        }
+        return records;
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < AuditSegmentWriter.HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (segment.getInt() != AuditSegmentWriter.MAGIC || segment.getInt() != AuditSegmentWriter.VERSION) {
+                log.warn("Skipping audit segment {} with an unknown header", file);
+                return null;
+            }
+            segment.getLong();
+            return segment;
+        } catch (NoSuchFileException e) {
+            // Okurken saklama süresi dolup silindi
+            return null;
+        }
+    }
+
+    private static long createdAt(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(AuditSegmentWriter.HEADER_SIZE);
+            return channel.read(header) < AuditSegmentWriter.HEADER_SIZE ? Long.MAX_VALUE : header.getLong(8);
+        } catch (NoSuchFileException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static AuditRecord next(Path file, MappedByteBuffer segment) throws IOException {
+        if (segment.remaining() < AuditSegmentWriter.RECORD_HEADER_SIZE) {
+            return null;
+        }
+        int position = segment.position();
+        int length = segment.getInt(position);
+        if (length <= 0 || length > segment.remaining() - AuditSegmentWriter.RECORD_HEADER_SIZE) {
+            return null;
+        }
+        byte[] body = new byte[length];
+        segment.get(position + AuditSegmentWriter.RECORD_HEADER_SIZE, body);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != segment.getInt(position + 4)) {
+            log.warn("Audit segment {} has a damaged record at offset {}; the rest of the segment is skipped", file, position);
+            return null;
+        }
+        segment.position(position + AuditSegmentWriter.RECORD_HEADER_SIZE + length);
+        return decode(body);
+    }
+
+    private static AuditRecord decode(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        Instant timestamp = Instant.ofEpochMilli(in.readLong());
+        AuditRecord.Source source = AuditRecord.Source.valueOf(in.readUTF());
+        AuditRecord.Outcome outcome = AuditRecord.Outcome.valueOf(in.readUTF());
+        String contentHash = in.readUTF();
+        long size = in.readLong();
+        String stage = in.readUTF();
+        long invoiceId = in.readLong();
+        int payloadLength = in.readInt();
+        byte[] payload = payloadLength < 0 ? null : in.readNBytes(payloadLength);
+        return new AuditRecord(timestamp, source, outcome, contentHash.isEmpty() ? null : contentHash, size,
+                stage.isEmpty() ? null : stage, invoiceId < 0 ? null : invoiceId, payload);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.dto.AuditRecord;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Appends audit records to memory-mapped segment files of a fixed size, starting a new segment
+ * when the current one cannot fit the next record. Not thread-safe; {@link AuditLog} calls it from
+ * its writer thread only.
+ * <p>
+ * A segment starts with a {@value #HEADER_SIZE}-byte header (magic, format version, creation
+ * time in epoch milliseconds) followed by records, each a body length and CRC-32 followed by the
+ * body. The file is mapped at its full size up front, so the unused tail is zeros and a zero
+ * length marks the end. The length is written last, so a reader never takes a half-written record
+ * for a complete one. Segments are never appended to after a restart; a new one is started, and
+ * {@link #close()} cuts the current one down to the bytes it holds so the unused tail does not
+ * stay on disk. Beyond {@code retainedSegments}, the oldest segments are deleted at startup and
+ * on every rotation.
+ */
+@Slf4j
+class AuditSegmentWriter implements Closeable {
+
+    static final int MAGIC = 0x49415544;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 8;
+    static final String PREFIX = "audit-";
+    static final String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int retainedSegments;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+    private final DataOutputStream out = new DataOutputStream(body);
+    private final CRC32 crc = new CRC32();
+    private long index;
+    private Path file;
+    private MappedByteBuffer segment;
+    private boolean dirty;
+
+    AuditSegmentWriter(Path directory, long segmentSize, int retainedSegments) throws IOException {
+        if (segmentSize < HEADER_SIZE + RECORD_HEADER_SIZE + 1024 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Audit segment size must be between 1KB and 2GB: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = (int) segmentSize;
+        this.retainedSegments = retainedSegments;
+        Files.createDirectories(directory);
+        List<Path> existing = segments(directory);
+        this.index = existing.isEmpty() ? 0 : segmentIndex(existing.get(existing.size() - 1));
+        deleteOldSegments();
+    }
+
+    void append(AuditRecord record) throws IOException {
+        byte[] encoded = encode(record, true);
+        if (RECORD_HEADER_SIZE + encoded.length > segmentSize - HEADER_SIZE) {
+            // Tek bir segmente sığmayan içerik kaydı bölmez; kayıt içeriksiz yazılır
+            encoded = encode(record, false);
+        }
+        if (segment == null || segment.remaining() < RECORD_HEADER_SIZE + encoded.length) {
+            rotate();
+        }
+        int position = segment.position();
+        crc.reset();
+        crc.update(encoded);
+        segment.put(position + RECORD_HEADER_SIZE, encoded);
+        segment.putInt(position + 4, (int) crc.getValue());
+        segment.putInt(position, encoded.length);
+        segment.position(position + RECORD_HEADER_SIZE + encoded.length);
+        dirty = true;
+    }
+
+    /**
+     * Forces the records appended since the last flush to the file.
+     */
+    void flush() {
+        if (dirty) {
+            segment.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Forces the current segment to disk and cuts off its unused tail.
+     */
+    @Override
+    public void close() {
+        if (segment == null) {
+            return;
+        }
+        flush();
+        int used = segment.position();
+        segment = null;
+        if (used < segmentSize) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(used);
+            } catch (IOException e) {
+                // Eşlemesi açık dosyayı kısaltmaya izin vermeyen sistemlerde segment tam boyutunda kalır
+                log.debug("Could not trim audit segment {}: {}", file, e.toString());
+            }
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (segment != null) {
+            flush();
+            segment = null;
+        }
+        index++;
+        file = directory.resolve(segmentName(index));
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Eşleme kanal kapandıktan sonra da geçerlidir
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segment.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis());
+        dirty = true;
+        deleteOldSegments();
+    }
+
+    private void deleteOldSegments() throws IOException {
+        if (retainedSegments > 0) {
+            List<Path> all = segments(directory);
+            for (int i = 0; i < all.size() - retainedSegments; i++) {
+                Files.deleteIfExists(all.get(i));
+            }
+        }
+    }
+
+    private byte[] encode(AuditRecord record, boolean withPayload) throws IOException {
+        body.reset();
+        out.writeLong(record.timestamp().toEpochMilli());
+        out.writeUTF(record.source().name());
+        out.writeUTF(record.outcome().name());
+        out.writeUTF(record.contentHash() == null ? "" : record.contentHash());
+        out.writeLong(record.size());
+        out.writeUTF(record.stage() == null ? "" : record.stage());
+        out.writeLong(record.invoiceId() == null ? -1 : record.invoiceId());
+        byte[] payload = withPayload ? record.payload() : null;
+        out.writeInt(payload == null ? -1 : payload.length);
+        if (payload != null) {
+            out.write(payload);
+        }
+        return body.toByteArray();
+    }
+
+    static String segmentName(long index) {
+        return String.format("%s%020d%s", PREFIX, index, SUFFIX);
+    }
+
+    static long segmentIndex(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * @return The segment files in the directory, oldest first
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            // Sıfır dolgulu sıra numarası: ada göre sıralama yazılış sırasıdır
+            return files.filter(file -> file.getFileName().toString().matches("audit-\\d{20}\\.seg"))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.config.RateLimitProperties;
+import com.example.invoiceapi.exception.RateLimitExceededException;
+import com.example.invoiceapi.util.TokenBucketLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether a single invoice upload may be processed now. A client's upload is admitted
+ * when its client bucket has a token and fewer than {@code invoice.rate-limit.max-concurrent}
+ * uploads are in progress; the invoice itself is admitted when its taxpayer's (NIP) bucket has
+ * a token. Nothing waits: a refusal is a {@link RateLimitExceededException} that says when to retry.
+ * <p>
+ * The buckets are {@link TokenBucketLimiter}s and the concurrency cap is a non-blocking
+ * {@link Semaphore#tryAcquire()}, so admission takes no lock.
+ */
+@Component
+@Slf4j
+public class InvoiceAdmission {
+
+    private final RateLimitProperties properties;
+    private final InvoiceMetrics metrics;
+    private final Semaphore inProgress;
+    private final TokenBucketLimiter clients;
+    private final TokenBucketLimiter taxpayers;
+
+    public InvoiceAdmission(RateLimitProperties properties, InvoiceMetrics metrics) {
+        this.properties = properties;
+        this.metrics = metrics;
+        boolean enabled = properties.isEnabled();
+        int maxConcurrent = properties.getMaxConcurrent() > 0
+                ? properties.getMaxConcurrent()
+                : Runtime.getRuntime().availableProcessors() * 2;
+        this.inProgress = enabled ? new Semaphore(maxConcurrent) : null;
+        this.clients = enabled ? limiter(properties.getClient()) : null;
+        this.taxpayers = enabled ? limiter(properties.getNip()) : null;
+        if (enabled) {
+            log.info("Invoice admission: {} concurrent uploads, client {}/s (burst {}), NIP {}/s (burst {})",
+                    maxConcurrent, properties.getClient().getRate(), properties.getClient().getBurst(),
+                    properties.getNip().getRate(), properties.getNip().getBurst());
+        }
+    }
+
+
+    public String getClientHeader() {
+        return properties.getClientHeader();
+    }
+
+    /**
+     * Admits an upload of the given client and reserves a processing slot for it.
+     *
+     * @param client The client key, typically a header value or the remote address
+     * @return The slot, to be closed once the upload is processed
+     * @throws RateLimitExceededException if the client's bucket is empty or every slot is taken
+     */
+    public Permit admit(String client) {
+        if (clients != null) {
+            long wait = clients.tryAcquire(client);
+            if (wait > 0) {
+                metrics.rejection(InvoiceMetrics.Rejection.CLIENT);
+                throw new RateLimitExceededException("İstemci için fatura gönderim sınırı aşıldı", retryAfterSeconds(wait));
+            }
+        }
+        if (inProgress != null && !inProgress.tryAcquire()) {
+            metrics.rejection(InvoiceMetrics.Rejection.CONCURRENCY);
+            throw new RateLimitExceededException("Sunucu şu anda çok fazla fatura işliyor, lütfen daha sonra tekrar deneyin", 1);
+        }
+        return new Permit(inProgress);
+    }
+
+    /**
+     * @return Whether {@link #admitTaxpayer(String)} can refuse, i.e. whether the NIP is worth reading early
+     */
+    public boolean limitsTaxpayers() {
+        return taxpayers != null;
+    }
+
+    /**
+     * Takes a token from the taxpayer's bucket.
+     *
+     * @throws RateLimitExceededException if the bucket is empty
+     */
+    public void admitTaxpayer(String nip) {
+        if (taxpayers == null || nip == null) {
+            return;
+        }
+        long wait = taxpayers.tryAcquire(nip.strip());
+        if (wait > 0) {
+            metrics.rejection(InvoiceMetrics.Rejection.NIP);
+            throw new RateLimitExceededException("NIP " + nip.strip() + " için fatura gönderim sınırı aşıldı", retryAfterSeconds(wait));
+        }
+    }
+
+    private TokenBucketLimiter limiter(RateLimitProperties.Bucket bucket) {
+        if (bucket.getRate() <= 0) {
+            return null;
+        }
+        return new TokenBucketLimiter(bucket.getRate(), bucket.getBurst(), properties.getMaxKeys(),
+                properties.getEvictionInterval());
+    }
+
+    private static long retryAfterSeconds(long waitNanos) {
+        // Retry-After tam saniye alır; yukarı yuvarlanır ki istemci erken dönmesin
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * A reserved processing slot. Closing it more than once has no further effect.
+     */
+    public static final class Permit implements AutoCloseable {
+
+        private Semaphore slots;
+
+        private Permit(Semaphore slots) {
+            this.slots = slots;
+        }
+
+        @Override
+        public void close() {
+            Semaphore held = slots;
+            slots = null;
+            if (held != null) {
+                held.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.config.ArchiveProperties;
+import com.example.invoiceapi.dto.AuditRecord;
+import com.example.invoiceapi.dto.BatchItemResult;
+import com.example.invoiceapi.dto.BatchResult;
+import com.example.invoiceapi.exception.ArchiveProcessingException;
+import com.example.invoiceapi.exception.XmlProcessingException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Stores the XML invoices of a ZIP archive read straight from a stream, without extracting it
+ * to disk.
+ * <p>
+ * Entries are read one at a time and handed to the batch pool, which validates and unmarshals
+ * them with the same logic as single uploads. At most {@code invoice.archive.max-in-flight}
+ * entries wait to be parsed; the reader waits for a free slot before inflating the next one.
+ * Parsed entries, with their compressed documents, are kept until their group is stored through
+ * {@link InvoiceBatchService#store}, so every group is one {@code saveAll}. A group is stored
+ * once it holds {@code invoice.archive.write-batch-size} entries or its entries inflated to
+ * {@code invoice.archive.write-batch-bytes}, whichever comes first; that bounds the memory an
+ * upload holds, whatever the size of its entries.
+ * <p>
+ * The number of entries and their inflated sizes are counted while reading, since the sizes
+ * declared in the archive cannot be trusted. Exceeding a limit stops reading; the groups
+ * stored so far are kept.
+ */
+@Service
+@Slf4j
+public class InvoiceArchiveService {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final InvoiceService invoiceService;
+    private final InvoiceBatchService invoiceBatchService;
+    private final ExecutorService batchExecutor;
+    private final ArchiveProperties properties;
+
+    public InvoiceArchiveService(InvoiceService invoiceService,
+                                 InvoiceBatchService invoiceBatchService,
+                                 @Qualifier("batchExecutor") ExecutorService batchExecutor,
+                                 ArchiveProperties properties) {
+        this.invoiceService = invoiceService;
+        this.invoiceBatchService = invoiceBatchService;
+        this.batchExecutor = batchExecutor;
+        this.properties = properties;
+    }
+
+    /**
+     * Processes every {@code .xml} entry of the archive; other entries and directories are skipped.
+     * The input stream is read to the end of the archive but not closed.
+     *
+     * @param archive The ZIP archive bytes, typically the request body
+     * @return One result per XML entry, in archive order, with the entry name
+     * @throws ArchiveProcessingException if a limit is exceeded or the archive is corrupt
+     * @throws XmlProcessingException if the archive contains no XML entries
+     */
+    public BatchResult processArchive(InputStream archive) {
+        long start = System.nanoTime();
+        Reader reader = new Reader();
+        try {
+            reader.read(new ZipInputStream(new BufferedInputStream(archive, READ_BUFFER_SIZE)));
+        } catch (LimitExceededException e) {
+            throw reader.abort(e.getMessage(), null, true);
+        } catch (IOException e) {
+            throw reader.abort("Geçersiz ZIP arşivi: " + e.getMessage(), e, false);
+        }
+
+        if (reader.results.isEmpty()) {
+            throw new XmlProcessingException("Arşivde .xml uzantılı dosya bulunamadı");
+        }
+        BatchResult batch = BatchResult.of(reader.results);
+        log.info("Invoice archive completed in {} ms: {} entries, {} created, {} duplicates, {} rejected, {} failed",
+                (System.nanoTime() - start) / 1_000_000, reader.entries, batch.getCreated(), batch.getDuplicates(),
+                batch.getRejected(), batch.getFailed());
+        return batch;
+    }
+
+    /**
+     * State of one archive upload.
+     */
+    private final class Reader {
+
+        private final Semaphore inFlight = new Semaphore(properties.getMaxInFlight());
+        private final List<CompletableFuture<InvoiceBatchService.Parsed>> pending = new ArrayList<>();
+        private final List<String> pendingNames = new ArrayList<>();
+        private final List<BatchItemResult> results = new ArrayList<>();
+        private int entries;
+        private long inflated;
+        private long pendingBytes;
+
+        void read(ZipInputStream zip) throws IOException {
+            long maxEntrySize = properties.getMaxEntrySize().toBytes();
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (++entries > properties.getMaxEntries()) {
+                    throw new LimitExceededException("Arşivde en fazla " + properties.getMaxEntries() + " giriş olabilir");
+                }
+                if (entry.isDirectory() || !entry.getName().toLowerCase(Locale.ROOT).endsWith(".xml")) {
+                    // Atlanan girişler de açılır; toplam boyut sınırına onlar da sayılır
+                    inflated += skip(zip);
+                    log.debug("Skipping archive entry {}", entry.getName());
+                    continue;
+                }
+
+                long budget = Math.min(maxEntrySize, remainingBudget());
+                byte[] xml = zip.readNBytes((int) Math.min(budget + 1, Integer.MAX_VALUE - 8));
+                if (xml.length > budget) {
+                    throw new LimitExceededException(xml.length > maxEntrySize
+                            ? entry.getName() + " açıldığında " + describe(properties.getMaxEntrySize()) + " sınırını aşıyor"
+                            : "Arşivin açılmış toplam boyutu " + describe(properties.getMaxTotalSize()) + " sınırını aşıyor");
+                }
+                inflated += xml.length;
+                submit(entry.getName(), xml);
+            }
+            flush();
+        }
+
+        private void submit(String name, byte[] xml) {
+            inFlight.acquireUninterruptibly();
+            CompletableFuture<InvoiceBatchService.Parsed> parsed;
+            try {
+                parsed = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return InvoiceBatchService.Parsed.of(() -> invoiceService.prepareInvoice(xml));
+                    } finally {
+                        inFlight.release();
+                    }
+                }, batchExecutor);
+            } catch (RuntimeException e) {
+                inFlight.release();
+                throw e;
+            }
+            pending.add(parsed);
+            pendingNames.add(name);
+            // Ayrıştırılan faturalar kaydedilene dek bellekte kalır; grup sayıyla da boyutla da sınırlı
+            pendingBytes += xml.length;
+            if (pending.size() >= properties.getWriteBatchSize()
+                    || pendingBytes >= properties.getWriteBatchBytes().toBytes()) {
+                flush();
+            }
+        }
+
+        /**
+         * Waits for the pending entries in archive order and stores them as one group.
+         */
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<InvoiceBatchService.Parsed> parsed = new ArrayList<>(pending.size());
+            for (CompletableFuture<InvoiceBatchService.Parsed> future : pending) {
+                parsed.add(future.join());
+            }
+            int offset = results.size();
+            List<BatchItemResult> stored = invoiceBatchService.store(parsed, AuditRecord.Source.ARCHIVE);
+            for (int i = 0; i < stored.size(); i++) {
+                results.add(stored.get(i).at(offset + i, pendingNames.get(i)));
+            }
+            pending.clear();
+            pendingNames.clear();
+            pendingBytes = 0;
+        }
+
+        ArchiveProcessingException abort(String message, Throwable cause, boolean limitExceeded) {
+            log.warn("Invoice archive aborted after {} entries: {}", entries, message);
+            // Okunmuş girişler yine kaydedilir, yanıtta kısmi sonuç olarak döner
+            flush();
+            return new ArchiveProcessingException(message, cause, limitExceeded, BatchResult.of(results));
+        }
+
+        private long remainingBudget() {
+            return properties.getMaxTotalSize().toBytes() - inflated;
+        }
+
+        private long skip(InputStream in) throws IOException {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            long skipped = 0;
+            long budget = remainingBudget();
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                skipped += read;
+                if (skipped > budget) {
+                    throw new LimitExceededException("Arşivin açılmış toplam boyutu "
+                            + describe(properties.getMaxTotalSize()) + " sınırını aşıyor");
+                }
+            }
+            return skipped;
+        }
+    }
+
+    private static String describe(DataSize size) {
+        return size.toBytes() % DataSize.ofMegabytes(1).toBytes() == 0 ? size.toMegabytes() + " MB" : size.toBytes() + " bayt";
+    }
+
+    private static final class LimitExceededException extends RuntimeException {
+
+        LimitExceededException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.dto.AuditRecord;
+import com.example.invoiceapi.dto.BatchItemResult;
+import com.example.invoiceapi.dto.BatchResult;
+import com.example.invoiceapi.dto.InvoiceResult;
+import com.example.invoiceapi.exception.InvoiceConflictException;
+import com.example.invoiceapi.exception.XmlProcessingException;
+import com.example.invoiceapi.model.InvoiceEntity;
+import com.example.invoiceapi.repository.InvoiceCopyLoader;
+import com.example.invoiceapi.repository.InvoiceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * Validates a batch of Base64 encoded invoices in parallel and persists the valid ones
+ * with a single {@code saveAll}, so Hibernate can group the INSERTs into JDBC batches, or with
+ * one PostgreSQL COPY when {@code invoice.bulk-load.copy-enabled} is set.
+ * <p>
+ * Invoices that are already stored, or repeated within the batch, are reported as duplicates
+ * with the id of the stored row. Existing rows are looked up with one query per
+ * {@value #LOOKUP_CHUNK_SIZE} items instead of one per item.
+ */
+@Service
+@Slf4j
+public class InvoiceBatchService {
+
+    static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    private final InvoiceService invoiceService;
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceCopyLoader copyLoader;
+    private final ExecutorService batchExecutor;
+    private final InvoiceMetrics metrics;
+    private final AuditLog auditLog;
+    private final int maxSize;
+
+    public InvoiceBatchService(InvoiceService invoiceService,
+                               InvoiceRepository invoiceRepository,
+                               InvoiceCopyLoader copyLoader,
+                               @Qualifier("batchExecutor") ExecutorService batchExecutor,
+                               InvoiceMetrics metrics,
+                               AuditLog auditLog,
+                               @Value("${invoice.batch.max-size:5000}") int maxSize) {
+        this.invoiceService = invoiceService;
+        this.invoiceRepository = invoiceRepository;
+        this.copyLoader = copyLoader;
+        this.batchExecutor = batchExecutor;
+        this.metrics = metrics;
+        this.auditLog = auditLog;
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Processes every item independently; an invalid document only rejects its own item.
+     *
+     * @param base64Invoices The Base64 encoded invoices, in request order
+     * @return Per-item results in the same order as the input
+     */
+    public BatchResult processBatch(List<String> base64Invoices) {
+        if (base64Invoices.size() > maxSize) {
+            throw new XmlProcessingException("Batch size " + base64Invoices.size() + " exceeds the limit of " + maxSize);
+        }
+        log.info("Processing invoice batch of {} documents", base64Invoices.size());
+
+        List<CompletableFuture<Parsed>> futures = new ArrayList<>(base64Invoices.size());
+        for (String base64xml : base64Invoices) {
+            futures.add(CompletableFuture.supplyAsync(() -> Parsed.of(() -> invoiceService.prepareInvoice(base64xml)), batchExecutor));
+        }
+        List<Parsed> parsed = new ArrayList<>(futures.size());
+        for (CompletableFuture<Parsed> future : futures) {
+            parsed.add(future.join());
+        }
+
+        BatchResult batch = BatchResult.of(store(parsed, AuditRecord.Source.BATCH));
+        log.info("Invoice batch completed: {} created, {} duplicates, {} rejected, {} failed",
+                batch.getCreated(), batch.getDuplicates(), batch.getRejected(), batch.getFailed());
+        return batch;
+    }
+
+    /**
+     * Stores the valid documents among already parsed ones in a single write.
+     * Documents already stored, or repeated in the list, are reported as duplicates.
+     *
+     * @param parsed The parse outcomes, in input order
+     * @param source How the documents were submitted, for the audit log
+     * @return One result per outcome, in the same order; result indexes are list positions
+     */
+    public List<BatchItemResult> store(List<Parsed> parsed, AuditRecord.Source source) {
+        BatchItemResult[] results = new BatchItemResult[parsed.size()];
+        List<InvoiceEntity> candidates = new ArrayList<>();
+        List<Integer> candidateIndexes = new ArrayList<>();
+        // Aynı istekte tekrar eden belgeler: ilk geçtiği sıra numarasına bağlanır
+        Map<String, Integer> firstIndexByHash = new HashMap<>();
+        Map<String, Integer> firstIndexByKey = new HashMap<>();
+        Map<Integer, Integer> repeatOf = new HashMap<>();
+        for (int i = 0; i < parsed.size(); i++) {
+            Parsed outcome = parsed.get(i);
+            if (outcome.duplicateOf() != null) {
+                results[i] = BatchItemResult.duplicate(i, outcome.duplicateOf());
+            } else if (outcome.entity() == null) {
+                results[i] = BatchItemResult.rejected(i, outcome.error());
+            } else {
+                InvoiceEntity entity = outcome.entity();
+                Integer first = firstIndexByHash.putIfAbsent(entity.getContentHash(), i);
+                Integer firstWithKey = firstIndexByKey.putIfAbsent(businessKey(entity), i);
+                if (first != null) {
+                    repeatOf.put(i, first);
+                } else if (firstWithKey != null) {
+                    results[i] = BatchItemResult.rejected(i, "Aynı istekte NIP " + entity.getNip() + " ve fatura numarası "
+                            + entity.getP2() + " ile farklı içerikte bir fatura var (sıra: " + firstWithKey + ")");
+                } else {
+                    candidates.add(entity);
+                    candidateIndexes.add(i);
+                }
+            }
+        }
+
+        List<InvoiceEntity> entities = new ArrayList<>();
+        List<Integer> entityIndexes = new ArrayList<>();
+        try {
+            Map<String, InvoiceEntity> existing = findExisting(candidates);
+            for (int j = 0; j < candidates.size(); j++) {
+                InvoiceEntity entity = candidates.get(j);
+                int index = candidateIndexes.get(j);
+                InvoiceEntity stored = existing.getOrDefault(entity.getContentHash(), existing.get(businessKey(entity)));
+                if (stored == null) {
+                    entities.add(entity);
+                    entityIndexes.add(index);
+                    continue;
+                }
+                try {
+                    results[index] = BatchItemResult.duplicate(index, invoiceService.resolveDuplicate(entity, stored).id());
+                } catch (InvoiceConflictException e) {
+                    results[index] = BatchItemResult.rejected(index, e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to look up stored invoices", e);
+            metrics.failure(InvoiceMetrics.Failure.DATABASE);
+            for (int index : candidateIndexes) {
+                results[index] = BatchItemResult.failed(index, "Veritabanı hatası: " + e.getMessage());
+            }
+            entities.clear();
+        }
+
+        if (!entities.isEmpty()) {
+            long start = metrics.start();
+            try {
+                List<InvoiceEntity> skipped = invoiceService.writeWithLines(entities, () -> write(entities));
+                metrics.record(InvoiceMetrics.Stage.PERSIST, start);
+                Map<String, InvoiceEntity> existing = skipped.isEmpty() ? Map.of() : findExisting(skipped);
+                List<InvoiceEntity> inserted = new ArrayList<>(entities.size());
+                for (int j = 0; j < entities.size(); j++) {
+                    InvoiceEntity entity = entities.get(j);
+                    int index = entityIndexes.get(j);
+                    if (entity.getId() != null) {
+                        inserted.add(entity);
+                        results[index] = BatchItemResult.created(index, entity.getId());
+                    } else {
+                        // Arama ile yazma arasında başka bir yükleme aynı faturayı kaydetmiş
+                        results[index] = resolveSkipped(index, entity, existing);
+                    }
+                }
+                invoiceService.rememberStored(inserted);
+            } catch (Exception e) {
+                log.error("Failed to persist invoice batch", e);
+                metrics.failure(InvoiceMetrics.Failure.DATABASE);
+                for (int index : entityIndexes) {
+                    results[index] = BatchItemResult.failed(index, "Veritabanı hatası: " + e.getMessage());
+                }
+            }
+        }
+
+        // Tekrarlar ilk geçtikleri belgenin sonucunu alır
+        repeatOf.forEach((index, first) -> {
+            BatchItemResult original = results[first];
+            results[index] = original.getId() != null
+                    ? BatchItemResult.duplicate(index, original.getId())
+                    : original.at(index, null);
+        });
+        audit(parsed, results, source);
+        return List.of(results);
+    }
+
+    private void audit(List<Parsed> parsed, BatchItemResult[] results, AuditRecord.Source source) {
+        for (int i = 0; i < results.length; i++) {
+            InvoiceEntity entity = parsed.get(i).entity();
+            String contentHash = entity == null ? null : entity.getContentHash();
+            long size = entity == null ? -1 : entity.getDocument().getSize();
+            BatchItemResult result = results[i];
+            AuditRecord record = switch (result.getStatus()) {
+                case CREATED -> AuditRecord.completed(source, contentHash, size, InvoiceResult.created(result.getId()),
+                        auditLog.payload(entity.getDocument().getContent()));
+                case DUPLICATE -> AuditRecord.completed(source, contentHash, size, InvoiceResult.duplicate(result.getId()), null);
+                case REJECTED -> AuditRecord.rejected(source, contentHash, size, parsed.get(i).stage());
+                case FAILED -> AuditRecord.error(source, contentHash, size, InvoiceMetrics.Failure.DATABASE.tag());
+            };
+            auditLog.record(record);
+        }
+    }
+
+    /**
+     * Inserts the entities, through COPY when the bulk loader is enabled and through a single
+     * {@code saveAll} otherwise.
+     *
+     * @return The entities skipped because a matching invoice was stored in the meantime
+     */
+    private List<InvoiceEntity> write(List<InvoiceEntity> entities) {
+        if (copyLoader.isEnabled()) {
+            return copyLoader.insert(entities);
+        }
+        invoiceRepository.saveAll(entities);
+        return List.of();
+    }
+
+    private BatchItemResult resolveSkipped(int index, InvoiceEntity entity, Map<String, InvoiceEntity> existing) {
+        InvoiceEntity stored = existing.getOrDefault(entity.getContentHash(), existing.get(businessKey(entity)));
+        if (stored == null) {
+            return BatchItemResult.failed(index, "Veritabanı hatası: fatura kaydedilemedi");
+        }
+        try {
+            return BatchItemResult.duplicate(index, invoiceService.resolveDuplicate(entity, stored).id());
+        } catch (InvoiceConflictException e) {
+            return BatchItemResult.rejected(index, e.getMessage());
+        }
+    }
+
+    /**
+     * Looks up stored invoices matching the candidates' content hashes or business keys.
+     *
+     * @return The stored invoices, keyed both by content hash and by business key
+     */
+    private Map<String, InvoiceEntity> findExisting(List<InvoiceEntity> candidates) {
+        Map<String, InvoiceEntity> existing = new HashMap<>();
+        for (int from = 0; from < candidates.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<InvoiceEntity> chunk = candidates.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, candidates.size()));
+            Set<String> hashes = new HashSet<>();
+            Set<String> nips = new HashSet<>();
+            Set<String> p2s = new HashSet<>();
+            for (InvoiceEntity entity : chunk) {
+                hashes.add(entity.getContentHash());
+                nips.add(entity.getNip());
+                p2s.add(entity.getP2());
+            }
+            for (InvoiceEntity stored : invoiceRepository.findByContentHashInOrNipInAndP2In(hashes, nips, p2s)) {
+                if (stored.getContentHash() != null) {
+                    existing.put(stored.getContentHash(), stored);
+                }
+                existing.put(businessKey(stored), stored);
+            }
+        }
+        return existing;
+    }
+
+    private static String businessKey(InvoiceEntity entity) {
+        // Özetlerle çakışmaması için ayraç olarak hex'te olmayan bir karakter
+        return entity.getNip() + '\u0000' + entity.getP2();
+    }
+
+    /**
+     * The entity built from a valid document, the id of the stored invoice it duplicates,
+     * or the reason it was rejected and the stage that rejected it.
+     */
+    public record Parsed(InvoiceEntity entity, Long duplicateOf, String error, String stage) {
+
+        /**
+         * Runs the preparation and captures its failure as a rejection reason instead of throwing.
+         */
+        public static Parsed of(Supplier<InvoiceService.PreparedInvoice> preparation) {
+            try {
+                InvoiceService.PreparedInvoice prepared = preparation.get();
+                return new Parsed(prepared.entity(), prepared.duplicateOf(), null, null);
+            } catch (XmlProcessingException e) {
+                return new Parsed(null, null, e.getMessage(), e.getStage());
+            } catch (Exception e) {
+                return new Parsed(null, null, "Beklenmedik bir hata oluştu: " + e.getMessage(), null);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.dto.InvoiceFilter;
+import com.example.invoiceapi.dto.InvoiceSummary;
+import com.example.invoiceapi.repository.InvoiceRepository;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes stored invoices to an output stream as NDJSON or CSV while they are read from the
+ * database, so memory use does not depend on the number of exported rows.
+ * <p>
+ * Rows are read over a forward-only cursor as {@link InvoiceSummary} projections, which are
+ * never attached to the persistence context, and written one at a time through a buffered
+ * writer; nothing is collected in between.
+ */
+@Service
+@Slf4j
+public class InvoiceExportService {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final String CSV_HEADER = "id,nip,p1,p2\r\n";
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final InvoiceRepository invoiceRepository;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final int fetchSize;
+
+    public InvoiceExportService(InvoiceRepository invoiceRepository,
+                                @Value("${invoice.export.fetch-size:1000}") int fetchSize) {
+        this.invoiceRepository = invoiceRepository;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Exports the invoices matching the filter in ascending id order. The output stream is
+     * finished (and the gzip trailer written) but not closed.
+     *
+     * @param filter The criteria to match; null fields are ignored
+     * @param format The output format
+     * @param gzip   Whether to gzip the output
+     * @param out    The stream to write to, typically the HTTP response body
+     * @return The number of exported invoices
+     * @throws IOException if writing to the output fails
+     */
+    @Transactional(readOnly = true)
+    public long export(InvoiceFilter filter, Format format, boolean gzip, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, WRITE_BUFFER_SIZE) : null;
+        OutputStream target = gzip ? gzipOut : out;
+
+        long count;
+        try (Stream<InvoiceSummary> rows = invoiceRepository.stream(filter, fetchSize)) {
+            count = format == Format.CSV ? writeCsv(rows.iterator(), target) : writeNdjson(rows.iterator(), target);
+        }
+        if (gzipOut != null) {
+            gzipOut.finish();
+        }
+        out.flush();
+
+        log.info("Exported {} invoices as {} in {} ms", count, format, (System.nanoTime() - start) / 1_000_000);
+        return count;
+    }
+
+    private long writeNdjson(Iterator<InvoiceSummary> rows, OutputStream out) throws IOException {
+        long count = 0;
+        JsonGenerator json = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+        // Çıktı akışını biz yönetiyoruz; generator kapanınca response kapanmasın
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.setRootValueSeparator(null);
+        while (rows.hasNext()) {
+            InvoiceSummary row = rows.next();
+            json.writeStartObject();
+            json.writeNumberField("id", row.id());
+            json.writeStringField("nip", row.nip());
+            json.writeStringField("p1", row.p1().toString());
+            json.writeStringField("p2", row.p2());
+            json.writeEndObject();
+            json.writeRaw('\n');
+            count++;
+        }
+        json.close();
+        return count;
+    }
+
+    private long writeCsv(Iterator<InvoiceSummary> rows, OutputStream out) throws IOException {
+        long count = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        writer.write(CSV_HEADER);
+        while (rows.hasNext()) {
+            InvoiceSummary row = rows.next();
+            writer.write(String.valueOf(row.id()));
+            writer.write(',');
+            writeCsvField(writer, row.nip());
+            writer.write(',');
+            writeCsvField(writer, row.p1().toString());
+            writer.write(',');
+            writeCsvField(writer, row.p2());
+            writer.write("\r\n");
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * Writes a field as RFC 4180 requires: quoted, with quotes doubled, if it contains a comma,
+     * quote or line break.
+     */
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.dto.InvoiceFields;
+import com.example.invoiceapi.exception.XmlProcessingException;
+import com.example.invoiceapi.xml.Faktura;
+import jakarta.xml.bind.annotation.XmlSchema;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stream.StreamSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the persisted invoice fields with a StAX cursor, without building the JAXB object graph.
+ * Reading stops as soon as NIP, P_1 and P_2 have been found, so the rest of the document is never parsed.
+ */
+@Component
+@Slf4j
+public class InvoiceFieldExtractor {
+
+    /** Namespace declared on the {@code xml} package, shared with the JAXB model. */
+    public static final String NAMESPACE = Faktura.class.getPackage().getAnnotation(XmlSchema.class).namespace();
+
+    private static final int MAX_TRACKED_DEPTH = 8;
+
+    private final XMLInputFactory inputFactory;
+
+    public InvoiceFieldExtractor() {
+        this.inputFactory = XMLInputFactory.newFactory();
+        this.inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        this.inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    /**
+     * Extracts NIP, P_1 and P_2 from an FA(2) document.
+     *
+     * @param source A stream source backed by a Reader or an InputStream
+     * @return The extracted fields
+     * @throws XmlProcessingException if the document is malformed, has an unexpected root or lacks a field
+     */
+    public InvoiceFields extract(StreamSource source) {
+        return extract(source, SchemaVersion.FA_2.root());
+    }
+
+    /**
+     * Extracts NIP, P_1 and P_2 from a document of the schema version with the given root.
+     * The versions share the element layout, so only the root and the namespace differ.
+     *
+     * @param source A stream source backed by a Reader or an InputStream
+     * @param root   The expected root element; its namespace is the namespace of every field
+     * @return The extracted fields
+     * @throws XmlProcessingException if the document is malformed, has an unexpected root or lacks a field
+     */
+    public InvoiceFields extract(StreamSource source, QName root) {
+        XMLStreamReader reader = null;
+        try {
+            reader = open(source);
+            InvoiceFields fields = scan(reader, root, false);
+            if (fields.nip() == null || fields.p1() == null || fields.p2() == null) {
+                List<String> missing = new ArrayList<>();
+                if (fields.nip() == null) missing.add("NIP");
+                if (fields.p1() == null) missing.add("P_1");
+                if (fields.p2() == null) missing.add("P_2");
+                throw new XmlProcessingException("Zorunlu alanlar eksik: " + String.join(", ", missing));
+            }
+            return fields;
+        } catch (XMLStreamException e) {
+            log.error("StAX field extraction failed", e);
+            XmlProcessingException error = new XmlProcessingException("XML okunamadı: " + e.getMessage(), e);
+            if (e.getLocation() != null) {
+                error.withLocation(e.getLocation().getLineNumber(), e.getLocation().getColumnNumber());
+            }
+            throw error;
+        } finally {
+            close(reader);
+        }
+    }
+
+    /**
+     * Reads only the seller's NIP, stopping at it, so a document can be attributed to its
+     * taxpayer before it is validated. The source may be a prefix of the document.
+     *
+     * @return The NIP, or null if the source ends, or stops being well-formed, before it
+     */
+    public String findNip(StreamSource source, QName root) {
+        XMLStreamReader reader = null;
+        try {
+            reader = open(source);
+            return scan(reader, root, true).nip();
+        } catch (XMLStreamException | XmlProcessingException e) {
+            // Belgenin kendisi doğrulamada ayrıntılı hatayla reddedilir
+            return null;
+        } finally {
+            close(reader);
+        }
+    }
+
+    private XMLStreamReader open(StreamSource source) throws XMLStreamException {
+        return source.getReader() != null
+                ? inputFactory.createXMLStreamReader(source.getReader())
+                : inputFactory.createXMLStreamReader(source.getInputStream());
+    }
+
+    private static void close(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                log.debug("Failed to close XML stream reader", e);
+            }
+        }
+    }
+
+    private InvoiceFields scan(XMLStreamReader reader, QName root, boolean nipOnly) throws XMLStreamException {
+        String namespace = root.getNamespaceURI();
+        String[] path = new String[MAX_TRACKED_DEPTH];
+        int depth = 0;
+        String nip = null;
+        String p1 = null;
+        String p2 = null;
+
+        while (reader.hasNext() && (nip == null || (!nipOnly && (p1 == null || p2 == null)))) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+
+            String name = namespace.equals(reader.getNamespaceURI()) ? reader.getLocalName() : null;
+            if (depth == 0 && !root.getLocalPart().equals(name)) {
+                throw new XmlProcessingException("Beklenmeyen kök eleman: {" + reader.getNamespaceURI() + "}"
+                        + reader.getLocalName() + " (beklenen: " + root + ")");
+            }
+
+            if (depth == 3 && "NIP".equals(name) && "Podmiot1".equals(path[1]) && "DaneIdentyfikacyjne".equals(path[2])) {
+                nip = reader.getElementText();
+            } else if (depth == 2 && "P_1".equals(name) && "Fa".equals(path[1])) {
+                p1 = reader.getElementText();
+            } else if (depth == 2 && "P_2".equals(name) && "Fa".equals(path[1])) {
+                p2 = reader.getElementText();
+            } else {
+                // getElementText okuyucuyu END_ELEMENT'e taşır, bu yüzden yalnızca diğer elemanlar yığına eklenir
+                if (depth < MAX_TRACKED_DEPTH) {
+                    path[depth] = name;
+                }
+                depth++;
+            }
+        }
+
+        return new InvoiceFields(nip, p1, p2);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.dto.InvoiceJob;
+import com.example.invoiceapi.dto.InvoiceResult;
+import com.example.invoiceapi.exception.RateLimitExceededException;
+import com.example.invoiceapi.exception.XmlProcessingException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Accepts invoices for background processing on a bounded worker pool and keeps track of
+ * their outcome, so HTTP latency does not depend on database latency.
+ * <p>
+ * Only the most recent {@code invoice.async.max-tracked-jobs} jobs are kept; older finished
+ * jobs are forgotten and their status can no longer be queried.
+ */
+@Service
+@Slf4j
+public class InvoiceJobService {
+
+    private final InvoiceService invoiceService;
+    private final ExecutorService asyncInvoiceExecutor;
+    private final int maxTrackedJobs;
+
+    private final ConcurrentHashMap<String, InvoiceJob> jobs = new ConcurrentHashMap<>();
+    private final Queue<String> jobOrder = new ConcurrentLinkedQueue<>();
+
+    public InvoiceJobService(InvoiceService invoiceService,
+                             @Qualifier("asyncInvoiceExecutor") ExecutorService asyncInvoiceExecutor,
+                             @Value("${invoice.async.max-tracked-jobs:100000}") int maxTrackedJobs) {
+        this.invoiceService = invoiceService;
+        this.asyncInvoiceExecutor = asyncInvoiceExecutor;
+        this.maxTrackedJobs = maxTrackedJobs;
+    }
+
+    /**
+     * Enqueues the invoice for background processing. The NIP's rate limit is charged here,
+     * before the job is accepted, so a queued job never fails on it.
+     *
+     * @param base64xml The Base64 encoded invoice XML
+     * @return The tracking record of the queued job
+     * @throws RateLimitExceededException if the invoice's NIP sent too many invoices recently
+     * @throws RejectedExecutionException if the work queue is full
+     */
+    public InvoiceJob submit(String base64xml) {
+        invoiceService.admitTaxpayer(base64xml);
+        InvoiceJob job = new InvoiceJob(UUID.randomUUID().toString(), Instant.now());
+        jobs.put(job.getId(), job);
+        try {
+            asyncInvoiceExecutor.execute(() -> run(job, base64xml));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            log.warn("Async invoice queue is full, rejecting submission");
+            throw e;
+        }
+        jobOrder.add(job.getId());
+        evictFinishedJobs();
+        log.info("Invoice job {} queued", job.getId());
+        return job;
+    }
+
+    public Optional<InvoiceJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    private void run(InvoiceJob job, String base64xml) {
+        job.setStatus(InvoiceJob.Status.PROCESSING);
+        try {
+            InvoiceResult result = invoiceService.processAdmittedInvoice(base64xml);
+            job.setInvoiceId(result.id());
+            job.setDuplicate(result.duplicate());
+            job.setStatus(InvoiceJob.Status.COMPLETED);
+        } catch (XmlProcessingException e) {
+            job.setError(e.getMessage());
+            job.setStatus(InvoiceJob.Status.FAILED);
+        } catch (Exception e) {
+            log.error("Invoice job {} failed unexpectedly", job.getId(), e);
+            job.setError("Beklenmedik bir hata oluştu: " + e.getMessage());
+            job.setStatus(InvoiceJob.Status.FAILED);
+        } finally {
+            job.setCompletedAt(Instant.now());
+        }
+    }
+
+    private void evictFinishedJobs() {
+        // En eski işler kuyruğun başında; bitmemiş bir işe gelince dur
+        while (jobs.size() > maxTrackedJobs) {
+            String oldest = jobOrder.peek();
+            if (oldest == null) {
+                return;
+            }
+            InvoiceJob job = jobs.get(oldest);
+            if (job != null && !job.isFinished()) {
+                return;
+            }
+            if (jobOrder.remove(oldest)) {
+                jobs.remove(oldest);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.exception.XmlProcessingException;
+import com.example.invoiceapi.xml.FaWiersz;
+import jakarta.xml.bind.JAXBException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.function.Consumer;
+
+/**
+ * Reads the line items ({@code Fa/FaWiersz}) of an invoice with a StAX cursor, binding one
+ * {@code FaWiersz} element at a time with JAXB. Each line is checked and added to the running
+ * {@link InvoiceTotals}, handed to the caller and then dropped, so the memory used does not grow
+ * with the number of lines. The totals declared in {@code Fa} are read on the way and compared
+ * with the sums once {@code Fa} ends; the rest of the document is not read.
+ */
+@Component
+@Slf4j
+public class InvoiceLineReader {
+
+    private final SchemaRegistry schemaRegistry;
+    private final XMLInputFactory inputFactory;
+
+    public InvoiceLineReader(SchemaRegistry schemaRegistry) {
+        this.schemaRegistry = schemaRegistry;
+        this.inputFactory = XMLInputFactory.newFactory();
+        this.inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        this.inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    /**
+     * Reads, checks and totals the line items of a document.
+     *
+     * @param xml  The invoice XML; not closed
+     * @param sink Receives every line in document order, after it has been checked
+     * @return The totals of the lines, already verified against the declared totals
+     * @throws XmlProcessingException if the document cannot be read, or a line or a total is invalid
+     */
+    public InvoiceTotals read(InputStream xml, Consumer<FaWiersz> sink) {
+        XMLStreamReader reader = null;
+        // Okunmakta olan satırın ya da toplamın başladığı yer; hata yanıtında gösterilir
+        int line = -1;
+        int column = -1;
+        try {
+            reader = inputFactory.createXMLStreamReader(xml);
+            reader.nextTag();
+            QName root = reader.getName();
+            SchemaVersion version = schemaRegistry.find(root).orElseThrow(() ->
+                    new XmlProcessingException("Desteklenmeyen kök eleman: " + root));
+            XmlEngine engine = schemaRegistry.engine(version);
+            String namespace = version.root().getNamespaceURI();
+
+            InvoiceTotals totals = new InvoiceTotals();
+            int depth = 1;
+            boolean inFa = false;
+            int event = reader.next();
+            while (event != XMLStreamConstants.END_DOCUMENT) {
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = namespace.equals(reader.getNamespaceURI()) ? reader.getLocalName() : null;
+                    if (depth == 1 && "Fa".equals(name)) {
+                        inFa = true;
+                        depth++;
+                    } else if (inFa && depth == 2 && "FaWiersz".equals(name)) {
+                        line = reader.getLocation().getLineNumber();
+                        column = reader.getLocation().getColumnNumber();
+                        FaWiersz item = engine.unmarshal(reader, FaWiersz.class);
+                        totals.add(item);
+                        sink.accept(item);
+                        // JAXB okuyucuyu bitiş etiketinden sonraki olayda bırakır
+                        event = reader.getEventType();
+                        continue;
+                    } else if (inFa && depth == 2 && InvoiceTotals.isDeclaredTotal(name)) {
+                        line = reader.getLocation().getLineNumber();
+                        column = reader.getLocation().getColumnNumber();
+                        totals.declare(name, amount(name, reader.getElementText()));
+                    } else {
+                        depth++;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                    if (inFa && depth == 1) {
+                        // Fa bitti; belgenin geri kalanında satır yok
+                        break;
+                    }
+                }
+                event = reader.next();
+            }
+            // Toplam uyuşmazlığı tek bir yere ait değildir
+            line = -1;
+            totals.verify();
+            return totals;
+        } catch (XMLStreamException e) {
+            log.error("StAX line item reading failed", e);
+            XmlProcessingException error = new XmlProcessingException("XML okunamadı: " + e.getMessage(), e);
+            if (e.getLocation() != null) {
+                error.withLocation(e.getLocation().getLineNumber(), e.getLocation().getColumnNumber());
+            }
+            throw error;
+        } catch (JAXBException e) {
+            log.error("Failed to unmarshal invoice line", e);
+            throw located(new XmlProcessingException("Fatura satırı okunamadı: " + e.getMessage(), e), line, column);
+        } catch (XmlProcessingException e) {
+            throw located(e, line, column);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    log.debug("Failed to close XML stream reader", e);
+                }
+            }
+        }
+    }
+
+    private static BigDecimal amount(String element, String text) {
+        try {
+            return new BigDecimal(text.strip());
+        } catch (NumberFormatException e) {
+            throw new XmlProcessingException(element + " geçerli bir tutar değil: " + text, e);
+        }
+    }
+
+    private static XmlProcessingException located(XmlProcessingException error, int line, int column) {
+        if (line > 0) {
+            error.withLocation(line, column);
+        }
+        return error;
+    }
+}
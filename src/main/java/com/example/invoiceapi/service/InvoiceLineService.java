@@ -0,0 +1,132 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.config.LineItemProperties;
+import com.example.invoiceapi.model.InvoiceEntity;
+import com.example.invoiceapi.model.InvoiceLineEntity;
+import com.example.invoiceapi.repository.InvoiceLineWriter;
+import com.example.invoiceapi.util.DocumentCompression;
+import com.example.invoiceapi.xml.FaWiersz;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Checks and stores the line items ({@code FaWiersz}) of invoices.
+ * <p>
+ * Lines are read twice, both times one at a time with {@link InvoiceLineReader}: while an
+ * invoice is prepared, to reject it before any write if a line or a total is wrong and to keep
+ * its totals on the entity, and again from the stored compressed document once the invoice has
+ * its id, to insert the rows in batches of {@code invoice.lines.batch-size}. Neither pass keeps
+ * more than one batch of lines, so a long invoice costs no more memory than a short one beyond
+ * its compressed document. The invoices and their lines are written in one transaction.
+ */
+@Service
+public class InvoiceLineService {
+
+    private final LineItemProperties properties;
+    private final InvoiceLineReader reader;
+    private final InvoiceLineWriter writer;
+    private final TransactionTemplate transactionTemplate;
+
+    public InvoiceLineService(LineItemProperties properties, InvoiceLineReader reader, InvoiceLineWriter writer,
+                              PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.reader = reader;
+        this.writer = writer;
+        this.transactionTemplate = transactionManager == null ? null : new TransactionTemplate(transactionManager);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Reads the invoice's lines, checks them against its declared totals and records the line
+     * count and the totals on the entity.
+     *
+     * @param entity The invoice being prepared
+     * @param xml    The invoice's XML
+     * @throws com.example.invoiceapi.exception.XmlProcessingException if a line or a total is invalid
+     */
+    public void aggregate(InvoiceEntity entity, InputStream xml) {
+        InvoiceTotals totals = reader.read(xml, line -> {
+        });
+        entity.setLineCount(totals.lineCount());
+        entity.setNetTotal(totals.netTotal());
+        entity.setVatTotal(totals.vatTotal());
+        entity.setGrossTotal(totals.grossTotal());
+    }
+
+    /**
+     * Inserts the lines of the stored invoices, read again from their compressed documents.
+     * Invoices without an id (not inserted) or without lines are skipped.
+     */
+    private void store(Collection<InvoiceEntity> entities) {
+        if (!isEnabled()) {
+            return;
+        }
+        // Tampon faturalar arasında paylaşılır: kısa faturalar da dolu batch'lerle yazılır
+        List<InvoiceLineEntity> rows = new ArrayList<>(properties.getBatchSize());
+        for (InvoiceEntity entity : entities) {
+            if (entity.getId() == null || entity.getLineCount() == null || entity.getLineCount() == 0) {
+                continue;
+            }
+            try (InputStream xml = DocumentCompression.inflating(entity.getDocument().getContent())) {
+                reader.read(xml, line -> {
+                    rows.add(row(entity, line));
+                    if (rows.size() >= properties.getBatchSize()) {
+                        writer.insert(rows);
+                        rows.clear();
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (!rows.isEmpty()) {
+            writer.insert(rows);
+        }
+    }
+
+    /**
+     * Runs a write of new invoices and inserts the lines of those that were stored, in one
+     * transaction, so an invoice is never stored without its lines. Without line items the
+     * write runs as it is.
+     *
+     * @param entities The invoices being written
+     * @param write    Inserts the invoices, assigning ids to the stored ones
+     * @return What the write returned: the entities it skipped
+     */
+    public List<InvoiceEntity> writeWithLines(List<InvoiceEntity> entities, Supplier<List<InvoiceEntity>> write) {
+        if (!isEnabled() || transactionTemplate == null) {
+            return write.get();
+        }
+        return transactionTemplate.execute(status -> {
+            List<InvoiceEntity> skipped = write.get();
+            store(entities);
+            return skipped;
+        });
+    }
+
+    private static InvoiceLineEntity row(InvoiceEntity invoice, FaWiersz line) {
+        InvoiceLineEntity row = new InvoiceLineEntity();
+        row.setInvoiceId(invoice.getId());
+        row.setLineNo(line.getNrWierszaFa());
+        row.setP1(invoice.getP1());
+        row.setName(line.getP7());
+        row.setUnit(line.getP8A());
+        row.setQuantity(line.getP8B());
+        row.setUnitNetPrice(line.getP9A());
+        row.setNetValue(line.getP11());
+        row.setVatRate(line.getP12().strip());
+        return row;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.config.LookupCacheProperties;
+import com.example.invoiceapi.dto.InvoiceSummary;
+import com.example.invoiceapi.model.InvoiceEntity;
+import com.example.invoiceapi.repository.InvoicesExpiredEvent;
+import com.example.invoiceapi.util.ExpiringCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Read-through cache of stored invoices, looked up by id or by NIP and invoice number (P_2).
+ * <p>
+ * Stored invoices are never changed, so a cached invoice stays valid for as long as it is held;
+ * its time to live only bounds memory held by invoices nobody asks for any more. Lookups that
+ * find nothing are cached for {@code invoice.lookup-cache.negative-ttl}. Every invoice stored by
+ * this instance is put into both caches as it is written ({@link #stored}), which replaces such
+ * misses at once. Invoices dropped with their monthly partition are removed
+ * ({@link InvoicesExpiredEvent}).
+ * <p>
+ * Lookups are counted in {@code invoice.lookup.cache.gets} by cache and result (hit,
+ * negative_hit, miss); {@code invoice.lookup.cache.hit.ratio} is the share answered from memory.
+ */
+@Component
+public class InvoiceLookupCache {
+
+    private final ExpiringCache<Long, InvoiceSummary> byId;
+    private final ExpiringCache<BusinessKey, InvoiceSummary> byBusinessKey;
+
+    public InvoiceLookupCache(LookupCacheProperties properties, MeterRegistry registry) {
+        if (!properties.isEnabled()) {
+            this.byId = null;
+            this.byBusinessKey = null;
+            return;
+        }
+        this.byId = new ExpiringCache<>(properties.getMaxSize(), properties.getTtl(), properties.getNegativeTtl());
+        this.byBusinessKey = new ExpiringCache<>(properties.getMaxSize(), properties.getTtl(), properties.getNegativeTtl());
+        bind(registry, "id", byId);
+        bind(registry, "nip_p2", byBusinessKey);
+    }
+
+    public Optional<InvoiceSummary> findById(Long id, Function<Long, Optional<InvoiceSummary>> loader) {
+        return byId == null ? loader.apply(id) : byId.get(id, loader);
+    }
+
+    public Optional<InvoiceSummary> findByNipAndP2(String nip, String p2,
+                                                   Function<BusinessKey, Optional<InvoiceSummary>> loader) {
+        BusinessKey key = new BusinessKey(nip, p2);
+        return byBusinessKey == null ? loader.apply(key) : byBusinessKey.get(key, loader);
+    }
+
+    /**
+     * Caches an invoice that was just written, replacing a cached miss for its id or business key.
+     */
+    public void stored(InvoiceEntity entity) {
+        if (byId == null || entity.getId() == null) {
+            return;
+        }
+        InvoiceSummary summary = new InvoiceSummary(entity.getId(), entity.getNip(), entity.getP1(), entity.getP2());
+        byId.put(summary.id(), summary);
+        byBusinessKey.put(new BusinessKey(summary.nip(), summary.p2()), summary);
+    }
+
+    /**
+     * Forgets the cached invoices whose month was dropped.
+     */
+    @EventListener
+    public void expired(InvoicesExpiredEvent event) {
+        if (byId == null) {
+            return;
+        }
+        byId.removeValues(summary -> summary.p1().isBefore(event.issuedBefore()));
+        byBusinessKey.removeValues(summary -> summary.p1().isBefore(event.issuedBefore()));
+    }
+
+    private static void bind(MeterRegistry registry, String cache, ExpiringCache<?, ?> entries) {
+        counter(registry, cache, "hit", entries, stats -> stats.hits());
+        counter(registry, cache, "negative_hit", entries, stats -> stats.negativeHits());
+        counter(registry, cache, "miss", entries, stats -> stats.misses());
+        Gauge.builder("invoice.lookup.cache.hit.ratio", entries, e -> e.stats().hitRatio())
+                .description("Share of invoice lookups answered from the cache, cached misses included")
+                .tag("cache", cache)
+                .register(registry);
+        Gauge.builder("invoice.lookup.cache.size", entries, ExpiringCache::size)
+                .description("Keys held by the invoice lookup cache")
+                .tag("cache", cache)
+                .register(registry);
+    }
+
+    private static void counter(MeterRegistry registry, String cache, String result, ExpiringCache<?, ?> entries,
+                                ToDoubleFunction<ExpiringCache.Stats> count) {
+        FunctionCounter.builder("invoice.lookup.cache.gets", entries, e -> count.applyAsDouble(e.stats()))
+                .description("Invoice lookups by cache and result")
+                .tag("cache", cache)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * The unique business key of an invoice: the seller's NIP and the invoice number.
+     */
+    public record BusinessKey(String nip, String p2) {
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.invoiceapi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage latency timers, failure counters and payload size summaries of the invoice pipeline.
+ * <p>
+ * All meters are registered up front, so recording on the hot path is a map lookup on an enum
+ * plus the meter update itself, without any registry lookups or tag allocation.
+ */
+@Component
+public class InvoiceMetrics {
+
+    public enum Stage {
+        DECODE("decode"),
+        VALIDATE("validate"),
+        UNMARSHAL("unmarshal"),
+        VALIDATE_UNMARSHAL("validate_unmarshal"),
+        EXTRACT("extract"),
+        COMPRESS("compress"),
+        LINES("lines"),
+        PERSIST("persist");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    public enum Failure {
+        BASE64("base64"),
+        SPECIFICATION_ROOT("specification_root"),
+        UNSUPPORTED_SCHEMA("unsupported_schema"),
+        XSD("xsd"),
+        UNMARSHAL("unmarshal"),
+        LINES("lines"),
+        DATABASE("database"),
+        CONFLICT("conflict");
+
+        private final String tag;
+
+        Failure(String tag) {
+            this.tag = tag;
+        }
+
+        public String tag() {
+            return tag;
+        }
+    }
+
+    /**
+     * Where a resubmitted invoice was recognised.
+     */
+    public enum Duplicate {
+        CACHE("cache"),
+        DATABASE("database");
+
+        private final String tag;
+
+        Duplicate(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * The limit an upload was not admitted by.
+     */
+    public enum Rejection {
+        CLIENT("client"),
+        NIP("nip"),
+        CONCURRENCY("concurrency");
+
+        private final String tag;
+
+        Rejection(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * What became of a record handed to the audit log.
+     */
+    public enum Audit {
+        WRITTEN("written"),
+        DROPPED("dropped"),
+        FAILED("failed");
+
+        private final String tag;
+
+        Audit(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<Failure, Counter> failureCounters = new EnumMap<>(Failure.class);
+    private final Map<Duplicate, Counter> duplicateCounters = new EnumMap<>(Duplicate.class);
+    private final Map<Rejection, Counter> rejectionCounters = new EnumMap<>(Rejection.class);
+    private final Map<Audit, Counter> auditCounters = new EnumMap<>(Audit.class);
+    private final DistributionSummary base64Size;
+    private final DistributionSummary xmlSize;
+
+    public InvoiceMetrics(MeterRegistry registry) {
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("invoice.stage.duration")
+                    .description("Time spent in one stage of the invoice pipeline")
+                    .tag("stage", stage.tag)
+                    .publishPercentiles(0.5, 0.99)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        for (Failure failure : Failure.values()) {
+            failureCounters.put(failure, Counter.builder("invoice.failures")
+                    .description("Rejected or failed invoices by failure type")
+                    .tag("type", failure.tag)
+                    .register(registry));
+        }
+        for (Duplicate duplicate : Duplicate.values()) {
+            duplicateCounters.put(duplicate, Counter.builder("invoice.duplicates")
+                    .description("Resubmitted invoices answered with the stored result")
+                    .tag("source", duplicate.tag)
+                    .register(registry));
+        }
+        for (Rejection rejection : Rejection.values()) {
+            rejectionCounters.put(rejection, Counter.builder("invoice.admission.rejections")
+                    .description("Uploads answered with 429 by the rate and concurrency limits")
+                    .tag("limit", rejection.tag)
+                    .register(registry));
+        }
+        for (Audit audit : Audit.values()) {
+            auditCounters.put(audit, Counter.builder("invoice.audit.records")
+                    .description("Audit records written, dropped because the buffer was full, or lost to I/O errors")
+                    .tag("result", audit.tag)
+                    .register(registry));
+        }
+        this.base64Size = payloadSummary(registry, "base64");
+        this.xmlSize = payloadSummary(registry, "xml");
+    }
+
+    /**
+     * @return A start timestamp to pass to {@link #record(Stage, long)}
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    public void record(Stage stage, long startNanos) {
+        stageTimers.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void failure(Failure failure) {
+        failureCounters.get(failure).increment();
+    }
+
+    public void duplicate(Duplicate source) {
+        duplicateCounters.get(source).increment();
+    }
+
+    public void rejection(Rejection limit) {
+        rejectionCounters.get(limit).increment();
+    }
+
+    public void audit(Audit result) {
+        auditCounters.get(result).increment();
+    }
+
+    public void base64Size(long bytes) {
+        base64Size.record(bytes);
+    }
+
+    public void xmlSize(long bytes) {
+        xmlSize.record(bytes);
+    }
+
+    private static DistributionSummary payloadSummary(MeterRegistry registry, String kind) {
+        return DistributionSummary.builder("invoice.payload.size")
+                .description("Size of submitted invoice payloads")
+                .baseUnit("bytes")
+                .tag("kind", kind)
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
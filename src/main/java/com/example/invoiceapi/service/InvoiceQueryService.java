@@ -0,0 +1,84 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.dto.InvoiceFilter;
+import com.example.invoiceapi.dto.InvoicePage;
+import com.example.invoiceapi.dto.InvoiceSummary;
+import com.example.invoiceapi.model.InvoiceDocumentEntity;
+import com.example.invoiceapi.repository.InvoiceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Lists stored invoices page by page. Each page is fetched with one extra row to find out
+ * whether another page follows, without a COUNT query. Single invoices are looked up through
+ * the {@link InvoiceLookupCache}.
+ */
+@Service
+@Slf4j
+public class InvoiceQueryService {
+
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceLookupCache lookupCache;
+    private final int defaultLimit;
+    private final int maxLimit;
+
+    public InvoiceQueryService(InvoiceRepository invoiceRepository,
+                               InvoiceLookupCache lookupCache,
+                               @Value("${invoice.query.default-limit:50}") int defaultLimit,
+                               @Value("${invoice.query.max-limit:500}") int maxLimit) {
+        this.invoiceRepository = invoiceRepository;
+        this.lookupCache = lookupCache;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * @param filter  The criteria to match; null fields are ignored
+     * @param afterId The {@code nextCursor} of the previous page, or null for the first page
+     * @param limit   The page size, or null for the default; capped at {@code invoice.query.max-limit}
+     * @return The page and the cursor of the next one
+     */
+    @Transactional(readOnly = true)
+    public InvoicePage find(InvoiceFilter filter, Long afterId, Integer limit) {
+        int pageSize = limit == null ? defaultLimit : Math.min(limit, maxLimit);
+        List<InvoiceSummary> rows = invoiceRepository.search(filter, afterId, pageSize + 1);
+        if (rows.size() <= pageSize) {
+            return new InvoicePage(rows, null);
+        }
+        List<InvoiceSummary> items = rows.subList(0, pageSize);
+        return new InvoicePage(List.copyOf(items), items.get(pageSize - 1).id());
+    }
+
+    /**
+     * @return The invoice with the given id, or empty if there is none
+     */
+    public Optional<InvoiceSummary> findById(Long id) {
+        return lookupCache.findById(id, invoiceRepository::findSummaryById);
+    }
+
+    /**
+     * @return The invoice with the given NIP and invoice number, or empty if there is none
+     */
+    public Optional<InvoiceSummary> findByNipAndP2(String nip, String p2) {
+        return lookupCache.findByNipAndP2(nip, p2, key -> invoiceRepository.findSummaryByNipAndP2(key.nip(), key.p2()));
+    }
+
+    /**
+     * @param invoiceId The id of a stored invoice
+     * @return The compressed original XML, or empty if the invoice does not exist or was stored
+     * before originals were kept
+     */
+    @Transactional(readOnly = true)
+    public Optional<InvoiceDocumentEntity> findDocument(Long invoiceId) {
+        return invoiceRepository.findDocumentByInvoiceId(invoiceId);
+    }
+}
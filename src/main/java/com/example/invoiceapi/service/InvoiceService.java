@@ -1,169 +1,902 @@
 package com.example.invoiceapi.service;
 
+import com.example.invoiceapi.config.AuditProperties;
+import com.example.invoiceapi.config.LineItemProperties;
+import com.example.invoiceapi.config.LookupCacheProperties;
+import com.example.invoiceapi.config.RateLimitProperties;
+import com.example.invoiceapi.config.XmlProperties;
+import com.example.invoiceapi.dto.AuditRecord;
+import com.example.invoiceapi.dto.InvoiceFields;
+import com.example.invoiceapi.dto.InvoiceResult;
+import com.example.invoiceapi.exception.InvoiceConflictException;
+import com.example.invoiceapi.exception.RateLimitExceededException;
 import com.example.invoiceapi.exception.XmlProcessingException;
+import com.example.invoiceapi.model.InvoiceDocumentEntity;
 import com.example.invoiceapi.model.InvoiceEntity;
 import com.example.invoiceapi.repository.InvoiceRepository;
 import com.example.invoiceapi.util.Base64Helper;
+import com.example.invoiceapi.util.Base64Sanitizer;
+import com.example.invoiceapi.util.ContentHash;
+import com.example.invoiceapi.util.DocumentCompression;
 import com.example.invoiceapi.xml.Faktura;
-import jakarta.xml.bind.JAXBContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.xml.bind.JAXBException;
-import jakarta.xml.bind.Unmarshaller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
-import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
-import javax.xml.validation.Validator;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
-import java.nio.charset.StandardCharsets;
-import java.util.Base64;
+import java.io.UncheckedIOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class InvoiceService {
 
-    private final InvoiceRepository invoiceRepository;
+    private static final int STREAM_BUFFER_SIZE = 8192;
+    // Akış yolunda NIP bu kadar baytlık önekte aranır; Podmiot1 belgenin başındadır
+    private static final int NIP_PEEK_LIMIT = 16 * 1024;
+    private static final String EXAMPLE_BASE64_PREFIX = Base64Helper.generateExample().get("base64").substring(0, 30);
 
-    public void processInvoice(String base64xml) {
-        try {
-            log.info("Starting to process invoice XML");
-
-            if (base64xml == null || base64xml.trim().isEmpty()) {
-                throw new XmlProcessingException("Base64 XML string is empty or null");
-            }
+    private final InvoiceStore store;
+    private final SchemaRegistry schemaRegistry;
+    private final XmlProperties xmlProperties;
+    private final InvoiceFieldExtractor invoiceFieldExtractor;
+    private final InvoiceMetrics metrics;
+    private final RecentInvoiceCache recentInvoices;
+    private final InvoiceAdmission admission;
+    private final AuditLog auditLog;
+    private final InvoiceLookupCache lookupCache;
+    private final InvoiceLineService lines;
 
-            // Base64 stringin ilk 20 karakterini loglayalım 
-            log.debug("Base64 input starts with: {}...", 
-                     base64xml.length() > 20 ? base64xml.substring(0, 20) : base64xml);
+    /**
+     * Assembles a service outside the application context, such as the warm-up's, a benchmark's
+     * or a test's. Whatever is not set is switched off: no rate limits, audit records, caches or
+     * line items, and metrics in a meter registry of its own.
+     */
+    public static Builder builder(SchemaRegistry schemaRegistry) {
+        return new Builder(schemaRegistry);
+    }
 
-            // Bazı yaygın base64 sorunlarını düzeltelim
-            String cleanBase64 = base64xml.trim();
+    /**
+     * Decodes, validates and stores a Base64 encoded invoice. A document that was already
+     * stored is not stored again; the id of the existing row is returned instead.
+     *
+     * @param base64xml The Base64 encoded invoice XML
+     * @return The id of the stored invoice and whether it was a resubmission
+     * @throws InvoiceConflictException if another invoice with the same NIP and P_2 is stored
+     * @throws RateLimitExceededException if the invoice's NIP sent too many invoices recently
+     * @throws XmlProcessingException if the input cannot be decoded, validated or read
+     */
+    public InvoiceResult processInvoice(String base64xml) {
+        return process(base64xml, true);
+    }
 
-            // Yeni satır ve boşlukları temizle
-            cleanBase64 = cleanBase64.replaceAll("[\\s\\r\\n\\t]", "");
+    /**
+     * Same as {@link #processInvoice(String)} for an invoice whose NIP was already charged with
+     * {@link #admitTaxpayer(String)}, such as a queued async job.
+     */
+    public InvoiceResult processAdmittedInvoice(String base64xml) {
+        return process(base64xml, false);
+    }
 
-            // ... karakterini kontrol et ve temizle (genelde kırpılmış metinler için kullanılır)
-            if (cleanBase64.contains("...")) {
-                log.warn("Base64 input contains ellipsis (...), removing it for decoding");
-                cleanBase64 = cleanBase64.replace("...", "");
+    /**
+     * Takes a token from the bucket of the invoice's NIP, reading the document only up to it.
+     * Used before an invoice is queued, so an over-limit taxpayer is refused while the client
+     * is still waiting for the answer. A document whose NIP cannot be found is let through; the
+     * job rejects it when it is processed.
+     *
+     * @param base64xml The Base64 encoded invoice XML
+     * @throws RateLimitExceededException if the invoice's NIP sent too many invoices recently
+     */
+    public void admitTaxpayer(String base64xml) {
+        if (!admission.limitsTaxpayers() || base64xml == null) {
+            return;
+        }
+        Base64Sanitizer.Result decoded = Base64Sanitizer.decode(base64xml);
+        if (!decoded.isSuccess()) {
+            return;
+        }
+        String nip;
+        try {
+            // Yalnızca kök eleman ve NIP'e kadar okunur; tam doğrulama işte yapılır
+            QName root = schemaRegistry.sniff(new StreamSource(new ByteArrayInputStream(decoded.buffer(), 0, decoded.length())));
+            if (schemaRegistry.find(root).isEmpty()) {
+                return;
             }
+            nip = invoiceFieldExtractor.findNip(new StreamSource(new ByteArrayInputStream(decoded.buffer(), 0, decoded.length())), root);
+        } catch (XmlProcessingException e) {
+            return;
+        }
+        admission.admitTaxpayer(nip);
+    }
 
-            // Tırnak işaretlerini kaldır (bazen JSON kopyala-yapıştır işlemlerinde kalabilir)
-            if (cleanBase64.startsWith("\"") && cleanBase64.endsWith("\"")) {
-                cleanBase64 = cleanBase64.substring(1, cleanBase64.length() - 1);
-                log.debug("Removed surrounding quotes from base64 string");
+    private InvoiceResult process(String base64xml, boolean admitTaxpayer) {
+        DecodedXml decoded = null;
+        try {
+            decoded = decodeXml(base64xml);
+            PreparedInvoice prepared = prepare(decoded, admitTaxpayer);
+            InvoiceResult result;
+            if (prepared.isDuplicate()) {
+                log.info("Invoice was already stored with id {}, skipping", prepared.duplicateOf());
+                result = InvoiceResult.duplicate(prepared.duplicateOf());
+            } else {
+                result = saveInvoice(prepared.entity());
+                log.info("Invoice processing completed successfully");
             }
+            auditLog.record(AuditRecord.completed(AuditRecord.Source.UPLOAD, decoded.contentHash(), decoded.length(),
+                    result, auditedPayload(prepared.entity(), result)));
+            return result;
 
-            // Örnek XML'i Base64'e kodlayıp test edelim
-            String exampleXml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Faktura xmlns=\"http://crd.gov.pl/wzor/2023/06/29/12648/\">\n  <Podmiot1>\n    <DaneIdentyfikacyjne>\n      <NIP>1234567890</NIP>\n    </DaneIdentyfikacyjne>\n  </Podmiot1>\n  <Fa>\n    <P_1>2023-08-31</P_1>\n    <P_2>FK2023/08/31</P_2>\n  </Fa>\n</Faktura>";
-            String exampleBase64 = Base64.getEncoder().encodeToString(exampleXml.getBytes(StandardCharsets.UTF_8));
-            log.debug("Example valid base64: {}...", exampleBase64.substring(0, Math.min(20, exampleBase64.length())));
+        } catch (XmlProcessingException e) {
+            auditLog.record(decoded == null
+                    ? AuditRecord.failed(AuditRecord.Source.UPLOAD, null, base64xml == null ? 0 : base64xml.length(), e, null)
+                    : AuditRecord.failed(AuditRecord.Source.UPLOAD, decoded.contentHash(), decoded.length(), e, auditedPayload(decoded)));
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error during invoice processing", e);
+            auditLog.record(AuditRecord.error(AuditRecord.Source.UPLOAD, decoded == null ? null : decoded.contentHash(),
+                    decoded == null ? -1 : decoded.length(), errorStage(e)));
+            throw new XmlProcessingException("Unexpected error during invoice processing: " + e.getMessage(), e);
+        }
+    }
 
-            byte[] decoded;
+    /**
+     * Decodes, validates and unmarshals a Base64 encoded invoice into the full JAXB model
+     * without persisting it.
+     *
+     * @param base64xml The Base64 encoded invoice XML
+     * @return The unmarshalled invoice
+     * @throws XmlProcessingException if the input cannot be decoded, validated or unmarshalled
+     */
+    public Faktura parseInvoice(String base64xml) {
+        try {
+            DecodedXml decoded = decodeXml(base64xml);
+            Object invoice;
             try {
-                // Önce klasik Base64 decoder deneyelim
-                decoded = Base64.getDecoder().decode(cleanBase64);
-                log.debug("Standard Base64 decoder successfully decoded the input");
-            } catch (IllegalArgumentException e1) {
-                log.warn("Standard Base64 decode failed: {}", e1.getMessage());
-                try {
-                    // Fallback: URL-safe decoder deneyelim
-                    decoded = Base64.getUrlDecoder().decode(cleanBase64);
-                    log.debug("URL-safe Base64 decoder successfully decoded the input");
-                } catch (IllegalArgumentException e2) {
-                    log.error("Both Base64 decoders failed.");
-
-                    // Örnek olarak doğru bir Base64 stringini gösterelim
-                    throw new XmlProcessingException(
-                        String.format("Base64 çözümleme hatası: %s. Doğru Base64 örneği: %s...", 
-                        e1.getMessage(), exampleBase64.substring(0, Math.min(30, exampleBase64.length()))), e1);
-                }
+                invoice = unmarshal(decoded.version(), decoded::source);
+            } catch (XmlProcessingException e) {
+                throw e.withDecodedXml(decoded.xml());
             }
+            if (!(invoice instanceof Faktura faktura)) {
+                throw new XmlProcessingException(decoded.version().name() + " belgeleri için ayrıntılı model sunulmuyor");
+            }
+            return faktura;
+        } catch (XmlProcessingException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error during invoice processing", e);
+            throw new XmlProcessingException("Unexpected error during invoice processing: " + e.getMessage(), e);
+        }
+    }
 
-            String xml = new String(decoded, StandardCharsets.UTF_8);
-            log.debug("XML decoded successfully. Length: {}", xml.length());
+    /**
+     * Decodes and validates a Base64 encoded invoice and returns the fields that are persisted,
+     * using the configured extraction mode ({@code xml.extraction.mode}).
+     *
+     * @param base64xml The Base64 encoded invoice XML
+     * @return The persisted invoice fields
+     * @throws XmlProcessingException if the input cannot be decoded, validated or read
+     */
+    public InvoiceFields readInvoice(String base64xml) {
+        try {
+            return readFields(decodeXml(base64xml));
+        } catch (XmlProcessingException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error during invoice processing", e);
+            throw new XmlProcessingException("Unexpected error during invoice processing: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes a Base64 encoded invoice and, unless its content hash is among the recently stored
+     * invoices, validates it and builds the entity to store.
+     *
+     * @param base64xml The Base64 encoded invoice XML
+     * @return Either the id of the recently stored identical invoice, or a transient entity
+     * @throws XmlProcessingException if the input cannot be decoded, validated or read
+     */
+    public PreparedInvoice prepareInvoice(String base64xml) {
+        try {
+            return prepare(decodeXml(base64xml), false);
+        } catch (XmlProcessingException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error during invoice processing", e);
+            throw new XmlProcessingException("Unexpected error during invoice processing: " + e.getMessage(), e);
+        }
+    }
 
-            // Debug - XML içeriğini göster
-            log.debug("Decoded XML content: \n{}\n", xml);
+    /**
+     * Same as {@link #prepareInvoice(String)} for raw XML bytes, for example an entry read from
+     * an uploaded archive. The bytes are parsed in place; no String copy of the document is made.
+     *
+     * @param xml The raw invoice XML
+     * @return Either the id of the recently stored identical invoice, or a transient entity
+     * @throws XmlProcessingException if the document is empty, or cannot be validated or read
+     */
+    public PreparedInvoice prepareInvoice(byte[] xml) {
+        try {
+            metrics.xmlSize(xml.length);
+            String contentHash = ContentHash.sha256(xml, 0, xml.length);
 
-            // XML içeriği <specification> etiketiyle başlıyorsa uyarı ver
-            if (xml.trim().startsWith("<specification")) {
-                log.warn("XML starts with <specification> tag instead of <Faktura>. This may be a different format.");
-                throw new XmlProcessingException("XML içeriği <Faktura> etiketi yerine <specification> ile başlıyor. Gönderdiğiniz XML, beklenen formatta değil.");
+            Long existingId = recentInvoices.find(contentHash);
+            if (existingId != null) {
+                metrics.duplicate(InvoiceMetrics.Duplicate.CACHE);
+                return new PreparedInvoice(null, existingId);
             }
 
-            // XSD doğrulama
-            try {
-                log.info("Validating XML against XSD schema");
-                SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-                schemaFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
-                schemaFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
-
-                // Şema dosyasının varlığını kontrol et
-                var schemaResource = getClass().getClassLoader().getResource("schemat.xsd");
-                if (schemaResource == null) {
-                    throw new XmlProcessingException("Schema file 'schemat.xsd' not found in classpath");
-                }
+            SchemaVersion version = resolveVersion(new StreamSource(new ByteArrayInputStream(xml)));
+            InvoiceEntity entity = toEntity(readFields(version, () -> new StreamSource(new ByteArrayInputStream(xml))));
+            entity.setContentHash(contentHash);
+            entity.setDocument(compress(contentHash, xml, xml.length));
+            readLines(entity, new ByteArrayInputStream(xml));
+            return new PreparedInvoice(entity, null);
+        } catch (XmlProcessingException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Unexpected error during invoice processing", e);
+            throw new XmlProcessingException("Unexpected error during invoice processing: " + e.getMessage(), e);
+        }
+    }
 
-                log.debug("Schema location: {}", schemaResource.getPath());
-                Schema schema = schemaFactory.newSchema(schemaResource);
+    /**
+     * @param admitTaxpayer Whether the NIP's rate limit applies; batch items are bounded by the batch size instead
+     */
+    private PreparedInvoice prepare(DecodedXml decoded, boolean admitTaxpayer) {
+        // Yakın zamanda kaydedilmiş aynı içerik: XSD ve veritabanına hiç gitmeden yanıtla
+        Long existingId = recentInvoices.find(decoded.contentHash());
+        if (existingId != null) {
+            metrics.duplicate(InvoiceMetrics.Duplicate.CACHE);
+            return new PreparedInvoice(null, existingId);
+        }
 
-                Validator validator = schema.newValidator();
-                validator.validate(new StreamSource(new StringReader(xml)));
-                log.info("XML validation successful");
-            } catch (XmlProcessingException e) {
-                throw e;
-            } catch (Exception e) {
-                log.error("XML validation failed", e);
-
-                // Daha detaylı hata mesajı oluştur
-                StringBuilder errorMsg = new StringBuilder("XML doğrulama hatası: ");
-                errorMsg.append(e.getMessage()).append("\n");
-                errorMsg.append("Olası nedenler:\n");
-                errorMsg.append("1. XML root element ismi veya namespace hatalı (beklenen: <Faktura xmlns=\"http://crd.gov.pl/wzor/2023/06/29/12648/\">)\n");
-                errorMsg.append("2. Zorunlu alanlar eksik (Podmiot1, DaneIdentyfikacyjne, NIP, Fa, P_1, P_2)\n");
-                errorMsg.append("3. XML encoding formatı hatalı\n");
-
-                throw new XmlProcessingException(errorMsg.toString(), e);
-            }
+        if (admitTaxpayer && admission.limitsTaxpayers()) {
+            // Doğrulamadan önce: yalnızca NIP'e kadar okunur
+            admission.admitTaxpayer(invoiceFieldExtractor.findNip(decoded.source(), decoded.version().root()));
+        }
+        InvoiceEntity entity = toEntity(readFields(decoded));
+        entity.setContentHash(decoded.contentHash());
+        entity.setDocument(compress(decoded.contentHash(), decoded.bytes(), decoded.length()));
+        try {
+            readLines(entity, new ByteArrayInputStream(decoded.bytes(), 0, decoded.length()));
+        } catch (XmlProcessingException e) {
+            throw e.withDecodedXml(decoded.xml());
+        }
+        return new PreparedInvoice(entity, null);
+    }
 
-            // XML to Java (unmarshal)
-            Faktura faktura;
-            try {
-                log.info("Unmarshalling XML to Java objects");
-                JAXBContext context = JAXBContext.newInstance(Faktura.class);
-                Unmarshaller unmarshaller = context.createUnmarshaller();
-                faktura = (Faktura) unmarshaller.unmarshal(new StringReader(xml));
-                log.debug("XML unmarshalled successfully");
-            } catch (JAXBException e) {
-                log.error("Failed to unmarshal XML", e);
-                throw new XmlProcessingException("Failed to unmarshal XML: " + e.getMessage(), e);
-            }
+    private DecodedXml decodeXml(String base64xml) {
+        log.info("Starting to process invoice XML");
+
+        if (base64xml == null || base64xml.trim().isEmpty()) {
+            throw new XmlProcessingException("Base64 XML string is empty or null").withStage(InvoiceMetrics.Failure.BASE64.tag());
+        }
+
+        // Base64 stringin ilk 20 karakterini loglayalım 
+        log.debug("Base64 input starts with: {}...", 
+                 base64xml.length() > 20 ? base64xml.substring(0, 20) : base64xml);
+
+        metrics.base64Size(base64xml.length());
+
+        // Temizleme (boşluk, "...", tırnak) ve çözümleme tek geçişte, ara String üretmeden
+        long decodeStart = metrics.start();
+        Base64Sanitizer.Result decoded = Base64Sanitizer.decode(base64xml);
+        if (decoded.ellipsisRemoved()) {
+            log.warn("Base64 input contains ellipsis (...), removing it for decoding");
+        }
+        if (decoded.quotesRemoved()) {
+            log.debug("Removed surrounding quotes from base64 string");
+        }
+        if (!decoded.isSuccess()) {
+            log.warn("Standard Base64 decode failed: {}", decoded.standardError());
+            log.error("Both Base64 decoders failed.");
 
-            // Veri çıkarımı ve kayıt
-            log.info("Extracting required data from XML");
-            String nip = faktura.getPodmiot1().getDaneIdentyfikacyjne().getNIP();
-            String p1 = faktura.getFa().getP1();
-            String p2 = faktura.getFa().getP2();
+            // Örnek olarak doğru bir Base64 stringini gösterelim
+            throw failed(InvoiceMetrics.Failure.BASE64, new XmlProcessingException(
+                String.format("Base64 çözümleme hatası: %s. Doğru Base64 örneği: %s...",
+                decoded.standardError(), EXAMPLE_BASE64_PREFIX))
+                .withBase64Error(decoded.urlSafeError()));
+        }
+        log.debug("{} Base64 decoder successfully decoded the input", decoded.alphabet());
+
+        String xml = decoded.toString();
+        String contentHash = ContentHash.sha256(decoded.buffer(), 0, decoded.length());
+        metrics.record(InvoiceMetrics.Stage.DECODE, decodeStart);
+        metrics.xmlSize(decoded.length());
+        log.debug("XML decoded successfully. Length: {}", xml.length());
 
-            log.info("Creating and saving invoice entity to database");
-            InvoiceEntity entity = new InvoiceEntity();
-            entity.setNip(nip);
-            entity.setP1(p1);
-            entity.setP2(p2);
-            invoiceRepository.save(entity);
+        // Kök eleman desteklenen bir şema sürümüne ait değilse belge hiç ayrıştırılmaz
+        SchemaVersion version;
+        try {
+            version = resolveVersion(new StreamSource(new StringReader(xml)));
+        } catch (XmlProcessingException e) {
+            throw e.withDecodedXml(xml);
+        }
 
-            log.info("Invoice processing completed successfully");
+        return new DecodedXml(xml, contentHash, decoded.buffer(), decoded.length(), version);
+    }
 
+    private InvoiceFields readFields(DecodedXml decoded) {
+        try {
+            return readFields(decoded.version(), decoded::source);
         } catch (XmlProcessingException e) {
+            // Hata yanıtı XML'i yeniden çözümlemeden gösterebilsin
+            throw e.withDecodedXml(decoded.xml());
+        }
+    }
+
+    /**
+     * Reads the persisted fields with the configured extraction mode. The supplier is called
+     * once per parsing pass, so two-pass modes read the document twice.
+     */
+    private InvoiceFields readFields(SchemaVersion version, Supplier<StreamSource> xml) {
+        if (xmlProperties.getExtraction().getMode() == XmlProperties.ExtractionMode.STAX) {
+            return extractFields(version, xml);
+        }
+        return version.fields().apply(unmarshal(version, xml));
+    }
+
+    private Object unmarshal(SchemaVersion version, Supplier<StreamSource> xml) {
+        // XSD doğrulama ve XML to Java (unmarshal)
+        return xmlProperties.getValidation().isSinglePass()
+                ? parseSinglePass(version, xml.get())
+                : parseTwoPass(version, xml);
+    }
+
+    private InvoiceFields extractFields(SchemaVersion version, Supplier<StreamSource> xml) {
+        // Hızlı yol: strict modda şema doğrulaması ayrı yapılır, alanlar StAX ile okunur
+        if (xmlProperties.getValidation().isStrict()) {
+            validate(version, xml.get());
+        }
+        return extract(version, xml.get());
+    }
+
+    private InvoiceFields extract(SchemaVersion version, StreamSource source) {
+        long start = metrics.start();
+        InvoiceFields fields;
+        try {
+            fields = invoiceFieldExtractor.extract(source, version.root());
+        } catch (XmlProcessingException e) {
+            throw failed(InvoiceMetrics.Failure.UNMARSHAL, e);
+        }
+        metrics.record(InvoiceMetrics.Stage.EXTRACT, start);
+        return fields;
+    }
+
+    /**
+     * Processes an invoice whose XML is read straight from the given stream.
+     * The document is never materialized as a String or byte array (only the compressed copy
+     * that is stored with the invoice is kept), so it is always validated and unmarshalled in a
+     * single pass. The StAX extraction mode is used
+     * only when strict validation is disabled, as validating would need a second pass.
+     * <p>
+     * The content hash is only known once the whole stream has been read, so resubmissions
+     * are recognised after parsing; they are still answered without a database write.
+     *
+     * @param xmlStream The raw XML bytes (for example the request body, or a Base64 decoding stream)
+     * @return The id of the stored invoice and whether it was a resubmission
+     */
+    public InvoiceResult processInvoice(InputStream xmlStream) {
+        log.info("Starting to process streamed invoice XML");
+
+        MessageDigest digest = ContentHash.newDigest();
+        // Özgün belge okunurken sıkıştırılır; sıkıştırılmamış bir kopya tutulmaz
+        DocumentCompression.Capture original = new DocumentCompression.Capture(new DigestInputStream(xmlStream, digest));
+        String contentHash = null;
+        try {
+            BufferedInputStream in = new BufferedInputStream(original, STREAM_BUFFER_SIZE);
+            SchemaVersion version = resolveVersion(in);
+            String nip = admission.limitsTaxpayers() ? peekNip(in, version) : null;
+            admission.admitTaxpayer(nip);
+
+            // Ayrıştırıcı akışı kapatabilir; özet için kalan byte'ları sonradan okuyacağız
+            InputStream parserInput = new FilterInputStream(in) {
+                @Override
+                public void close() {
+                }
+            };
+            InvoiceFields fields;
+            if (xmlProperties.getExtraction().getMode() == XmlProperties.ExtractionMode.STAX
+                    && !xmlProperties.getValidation().isStrict()) {
+                fields = extract(version, new StreamSource(parserInput));
+            } else {
+                fields = version.fields().apply(parseSinglePass(version, new StreamSource(parserInput)));
+            }
+            if (nip == null) {
+                // NIP önekte değildi; sınır yine de veritabanına yazmadan önce uygulanır
+                admission.admitTaxpayer(fields.nip());
+            }
+            in.transferTo(OutputStream.nullOutputStream());
+            contentHash = ContentHash.toHex(digest.digest());
+
+            Long existingId = recentInvoices.find(contentHash);
+            InvoiceEntity entity = null;
+            InvoiceResult result;
+            if (existingId != null) {
+                metrics.duplicate(InvoiceMetrics.Duplicate.CACHE);
+                log.info("Invoice was already stored with id {}, skipping", existingId);
+                result = InvoiceResult.duplicate(existingId);
+            } else {
+                entity = toEntity(fields);
+                entity.setContentHash(contentHash);
+                entity.setDocument(document(contentHash, original.toByteArray(), original.size()));
+                // Sıkıştırılmamış kopya tutulmadığı için satırlar saklanacak belgeden okunur;
+                // close() Inflater'ın yerel belleğini GC'yi beklemeden bırakır
+                if (lines.isEnabled()) {
+                    try (InputStream stored = DocumentCompression.inflating(entity.getDocument().getContent())) {
+                        readLines(entity, stored);
+                    }
+                }
+                result = saveInvoice(entity);
+                log.info("Invoice processing completed successfully");
+            }
+            auditLog.record(AuditRecord.completed(AuditRecord.Source.STREAM, contentHash, original.size(), result,
+                    auditedPayload(entity, result)));
+            return result;
+
+        } catch (XmlProcessingException e) {
+            // Yarıda kalan akışın içeriği kayda eklenmez
+            auditLog.record(AuditRecord.failed(AuditRecord.Source.STREAM, contentHash, original.size(), e, null));
             throw e;
         } catch (Exception e) {
             log.error("Unexpected error during invoice processing", e);
+            auditLog.record(AuditRecord.error(AuditRecord.Source.STREAM, contentHash, original.size(), errorStage(e)));
             throw new XmlProcessingException("Unexpected error during invoice processing: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * @return The stored document's compressed XML to keep with the audit record of a newly
+     * created invoice; resubmissions are identified by their content hash alone
+     */
+    private byte[] auditedPayload(InvoiceEntity entity, InvoiceResult result) {
+        if (entity == null || result.duplicate() || !auditLog.capturesPayload()) {
+            return null;
+        }
+        return auditLog.payload(entity.getDocument().getContent());
+    }
+
+    private byte[] auditedPayload(DecodedXml decoded) {
+        // Reddedilen belge için sıkıştırma yalnızca içerik tutuluyorsa yapılır
+        return auditLog.capturesPayload() ? auditLog.payload(DocumentCompression.deflate(decoded.bytes(), 0, decoded.length())) : null;
+    }
+
+    private static String errorStage(Exception e) {
+        return e instanceof DataAccessException ? InvoiceMetrics.Failure.DATABASE.tag() : null;
+    }
+
+    /**
+     * Maps the persisted fields of an invoice onto a new entity.
+     *
+     * @param fields The fields read from the invoice XML
+     * @return A transient entity ready to be saved
+     * @throws XmlProcessingException if P_1 is not an ISO-8601 date
+     */
+    public InvoiceEntity toEntity(InvoiceFields fields) {
+        InvoiceEntity entity = new InvoiceEntity();
+        entity.setNip(fields.nip());
+        entity.setP1(issueDate(fields.p1()));
+        entity.setP2(fields.p2());
+        return entity;
+    }
+
+    private LocalDate issueDate(String p1) {
+        // Şema P_1'i metin olarak tanımlıyor; xs:date gibi saat dilimi ekine izin verilir, tarih olduğu gibi alınır
+        try {
+            return LocalDate.from(DateTimeFormatter.ISO_DATE.parse(p1.strip()));
+        } catch (DateTimeParseException e) {
+            throw failed(InvoiceMetrics.Failure.UNMARSHAL,
+                    new XmlProcessingException("P_1 geçerli bir tarih değil (yyyy-MM-dd): " + p1, e));
+        }
+    }
+
+    /**
+     * Decides whether an entity that is about to be stored duplicates the stored one with the
+     * same content hash or the same NIP and P_2, and remembers the stored id if so.
+     *
+     * @param candidate The entity about to be stored
+     * @param existing A stored entity matching the candidate's content hash or business key
+     * @return The result to answer the candidate's submission with
+     * @throws InvoiceConflictException if the stored invoice has the same NIP and P_2 but different content
+     */
+    public InvoiceResult resolveDuplicate(InvoiceEntity candidate, InvoiceEntity existing) {
+        // content_hash sütunundan önceki satırlarda özet yok; iş anahtarı eşleşmesi yeterli
+        if (existing.getContentHash() != null && !existing.getContentHash().equals(candidate.getContentHash())) {
+            throw failed(InvoiceMetrics.Failure.CONFLICT, new InvoiceConflictException(String.format(
+                    "NIP %s ve fatura numarası %s ile farklı içerikte bir fatura zaten kayıtlı (id: %d)",
+                    candidate.getNip(), candidate.getP2(), existing.getId()), existing.getId()));
+        }
+        metrics.duplicate(InvoiceMetrics.Duplicate.DATABASE);
+        recentInvoices.put(candidate.getContentHash(), existing.getId(), existing.getP1());
+        log.info("Invoice was already stored with id {}, skipping", existing.getId());
+        return InvoiceResult.duplicate(existing.getId());
+    }
+
+    /**
+     * Remembers the content hashes of freshly stored entities, so their resubmissions are
+     * answered from memory, and puts them into the lookup cache.
+     */
+    public void rememberStored(Iterable<InvoiceEntity> entities) {
+        for (InvoiceEntity entity : entities) {
+            recentInvoices.put(entity.getContentHash(), entity.getId(), entity.getP1());
+            lookupCache.stored(entity);
+        }
+    }
+
+    /**
+     * Reads the invoice's line items, rejecting it if a line or a declared total is invalid.
+     */
+    private void readLines(InvoiceEntity entity, InputStream xml) {
+        if (!lines.isEnabled()) {
+            return;
+        }
+        long start = metrics.start();
+        try {
+            lines.aggregate(entity, xml);
+        } catch (XmlProcessingException e) {
+            throw failed(InvoiceMetrics.Failure.LINES, e);
+        }
+        metrics.record(InvoiceMetrics.Stage.LINES, start);
+    }
+
+    /**
+     * Runs a write of new invoices and inserts the line items of those that were stored, in
+     * one transaction.
+     *
+     * @param entities The invoices being written
+     * @param write    Inserts the invoices, assigning ids to the stored ones
+     * @return What the write returned: the entities it skipped
+     */
+    public List<InvoiceEntity> writeWithLines(List<InvoiceEntity> entities, Supplier<List<InvoiceEntity>> write) {
+        return lines.writeWithLines(entities, write);
+    }
+
+    private InvoiceResult saveInvoice(InvoiceEntity entity) {
+        // Aynı içerik ya da aynı (NIP, P_2) zaten kayıtlıysa yazma yapılmaz
+        Optional<InvoiceEntity> existing = findExisting(entity);
+        if (existing.isPresent()) {
+            return resolveDuplicate(entity, existing.get());
+        }
+
+        log.info("Creating and saving invoice entity to database");
+        long start = metrics.start();
+        try {
+            store.insert(entity);
+        } catch (DataIntegrityViolationException e) {
+            // Aynı fatura eşzamanlı gönderildi: benzersiz indeks ikinci kaydı reddetti
+            Optional<InvoiceEntity> winner = findExisting(entity);
+            if (winner.isPresent()) {
+                return resolveDuplicate(entity, winner.get());
+            }
+            metrics.failure(InvoiceMetrics.Failure.DATABASE);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.failure(InvoiceMetrics.Failure.DATABASE);
+            throw e;
+        }
+        metrics.record(InvoiceMetrics.Stage.PERSIST, start);
+        recentInvoices.put(entity.getContentHash(), entity.getId(), entity.getP1());
+        lookupCache.stored(entity);
+        return InvoiceResult.created(entity.getId());
+    }
+
+    private Optional<InvoiceEntity> findExisting(InvoiceEntity entity) {
+        return store.findExisting(entity);
+    }
+
+    private InvoiceDocumentEntity compress(String contentHash, byte[] xml, int length) {
+        long start = metrics.start();
+        byte[] compressed = DocumentCompression.deflate(xml, 0, length);
+        metrics.record(InvoiceMetrics.Stage.COMPRESS, start);
+        return document(contentHash, compressed, length);
+    }
+
+    private static InvoiceDocumentEntity document(String contentHash, byte[] compressed, long size) {
+        InvoiceDocumentEntity document = new InvoiceDocumentEntity();
+        document.setContentHash(contentHash);
+        document.setContent(compressed);
+        document.setSize(size);
+        return document;
+    }
+
+    /**
+     * Finds the schema version of a document from its root element, reading the source only up
+     * to the root.
+     */
+    private SchemaVersion resolveVersion(StreamSource source) {
+        QName root;
+        try {
+            root = schemaRegistry.sniff(source);
+        } catch (XmlProcessingException e) {
+            // Kök elemanı okunamayan belge iyi biçimli değildir; şema doğrulaması da reddederdi
+            throw failed(InvoiceMetrics.Failure.XSD, e);
+        }
+        return resolveVersion(root);
+    }
+
+    /**
+     * Same as {@link #resolveVersion(StreamSource)} for a stream that is parsed afterwards; the
+     * stream is reset to its start.
+     */
+    private SchemaVersion resolveVersion(BufferedInputStream in) throws IOException {
+        QName root;
+        try {
+            root = schemaRegistry.sniff(in);
+        } catch (XmlProcessingException e) {
+            throw failed(InvoiceMetrics.Failure.XSD, e);
+        }
+        return resolveVersion(root);
+    }
+
+    /**
+     * Looks for the NIP in the first {@value #NIP_PEEK_LIMIT} bytes of the stream and resets it.
+     */
+    private String peekNip(BufferedInputStream in, SchemaVersion version) throws IOException {
+        in.mark(NIP_PEEK_LIMIT);
+        byte[] prefix;
+        try {
+            prefix = in.readNBytes(NIP_PEEK_LIMIT);
+        } finally {
+            in.reset();
+        }
+        return invoiceFieldExtractor.findNip(new StreamSource(new ByteArrayInputStream(prefix)), version.root());
+    }
+
+    private SchemaVersion resolveVersion(QName root) {
+        Optional<SchemaVersion> version = schemaRegistry.find(root);
+        if (version.isPresent()) {
+            return version.get();
+        }
+        if ("specification".equals(root.getLocalPart())) {
+            throw specificationRootError();
+        }
+        log.warn("Rejecting document with unsupported root element {}", root);
+        throw failed(InvoiceMetrics.Failure.UNSUPPORTED_SCHEMA, new XmlProcessingException("Desteklenmeyen kök eleman: " + root
+                + ". Desteklenen şema sürümleri: "
+                + schemaRegistry.versions().stream().map(SchemaVersion::toString).collect(Collectors.joining(", "))));
+    }
+
+    private XmlProcessingException specificationRootError() {
+        log.warn("XML starts with <specification> tag instead of <Faktura>. This may be a different format.");
+        return failed(InvoiceMetrics.Failure.SPECIFICATION_ROOT,
+                new XmlProcessingException("XML içeriği <Faktura> etiketi yerine <specification> ile başlıyor. Gönderdiğiniz XML, beklenen formatta değil."));
+    }
+
+    private Object parseSinglePass(SchemaVersion version, Source source) {
+        try {
+            log.info("Validating and unmarshalling {} XML in a single pass", version.name());
+            long start = metrics.start();
+            Object invoice = schemaRegistry.engine(version).unmarshalValidated(source);
+            metrics.record(InvoiceMetrics.Stage.VALIDATE_UNMARSHAL, start);
+            log.info("XML validation successful");
+            return invoice;
+        } catch (JAXBException e) {
+            // Şema ihlalleri ve bozuk XML, SAXException olarak linkedException içinde gelir
+            Throwable cause = e.getLinkedException() != null ? e.getLinkedException() : e.getCause();
+            if (cause instanceof SAXException) {
+                log.error("XML validation failed", cause);
+                throw validationError(version, cause);
+            }
+            log.error("Failed to unmarshal XML", e);
+            throw failed(InvoiceMetrics.Failure.UNMARSHAL, new XmlProcessingException("Failed to unmarshal XML: " + e.getMessage(), e));
+        }
+    }
+
+    private Object parseTwoPass(SchemaVersion version, Supplier<StreamSource> xml) {
+        // XSD doğrulama
+        validate(version, xml.get());
+
+        // XML to Java (unmarshal)
+        try {
+            log.info("Unmarshalling XML to Java objects");
+            long start = metrics.start();
+            Object invoice = schemaRegistry.engine(version).unmarshal(xml.get());
+            metrics.record(InvoiceMetrics.Stage.UNMARSHAL, start);
+            log.debug("XML unmarshalled successfully");
+            return invoice;
+        } catch (JAXBException e) {
+            log.error("Failed to unmarshal XML", e);
+            throw failed(InvoiceMetrics.Failure.UNMARSHAL, new XmlProcessingException("Failed to unmarshal XML: " + e.getMessage(), e));
+        }
+    }
+
+    private void validate(SchemaVersion version, Source source) {
+        try {
+            log.info("Validating XML against {} XSD schema", version.name());
+            long start = metrics.start();
+            schemaRegistry.engine(version).validate(source);
+            metrics.record(InvoiceMetrics.Stage.VALIDATE, start);
+            log.info("XML validation successful");
+        } catch (Exception e) {
+            log.error("XML validation failed", e);
+            throw validationError(version, e);
+        }
+    }
+
+    private XmlProcessingException validationError(SchemaVersion version, Throwable e) {
+        // Daha detaylı hata mesajı oluştur
+        StringBuilder errorMsg = new StringBuilder("XML doğrulama hatası: ");
+        errorMsg.append(e.getMessage()).append("\n");
+        errorMsg.append("Olası nedenler:\n");
+        errorMsg.append("1. XML root element ismi veya namespace hatalı (beklenen: <").append(version.root().getLocalPart())
+                .append(" xmlns=\"").append(version.root().getNamespaceURI()).append("\">)\n");
+        errorMsg.append("2. Zorunlu alanlar eksik (Podmiot1, DaneIdentyfikacyjne, NIP, Fa, P_1, P_2)\n");
+        errorMsg.append("3. XML encoding formatı hatalı\n");
+
+        XmlProcessingException error = new XmlProcessingException(errorMsg.toString(), e);
+        if (e instanceof SAXParseException parseError) {
+            error.withLocation(parseError.getLineNumber(), parseError.getColumnNumber());
+        }
+        return failed(InvoiceMetrics.Failure.XSD, error);
+    }
+
+    /**
+     * Counts the failure and records its type on the exception, for the audit log.
+     */
+    private <E extends XmlProcessingException> E failed(InvoiceMetrics.Failure failure, E error) {
+        metrics.failure(failure);
+        error.withStage(failure.tag());
+        return error;
+    }
+
+    /**
+     * A decoded invoice that either duplicates a recently stored one ({@code duplicateOf} is its id)
+     * or is ready to be stored ({@code entity}, with its content hash set).
+     */
+    public record PreparedInvoice(InvoiceEntity entity, Long duplicateOf) {
+
+        public boolean isDuplicate() {
+            return duplicateOf != null;
+        }
+    }
+
+    /**
+     * @param bytes   A view of the decoder's reused buffer, valid until the next decode on this thread
+     * @param version The schema version identified by the root element
+     */
+    private record DecodedXml(String xml, String contentHash, byte[] bytes, int length, SchemaVersion version) {
+
+        StreamSource source() {
+            return new StreamSource(new StringReader(xml));
+        }
+    }
+
+    public static final class Builder {
+
+        private final SchemaRegistry schemaRegistry;
+        private InvoiceStore store;
+        private InvoiceRepository repository;
+        private XmlProperties xmlProperties = new XmlProperties();
+        private InvoiceFieldExtractor invoiceFieldExtractor = new InvoiceFieldExtractor();
+        private InvoiceMetrics metrics;
+        private RecentInvoiceCache recentInvoices = new RecentInvoiceCache(0);
+        private InvoiceAdmission admission;
+        private AuditLog auditLog;
+        private InvoiceLookupCache lookupCache;
+        private InvoiceLineService lines;
+
+        private Builder(SchemaRegistry schemaRegistry) {
+            this.schemaRegistry = schemaRegistry;
+        }
+
+        public Builder store(InvoiceStore store) {
+            this.store = store;
+            return this;
+        }
+
+        /**
+         * Stores through the repository, with the builder's line items, unless a store is set.
+         */
+        public Builder repository(InvoiceRepository repository) {
+            this.repository = repository;
+            return this;
+        }
+
+        public Builder xmlProperties(XmlProperties xmlProperties) {
+            this.xmlProperties = xmlProperties;
+            return this;
+        }
+
+        public Builder fieldExtractor(InvoiceFieldExtractor invoiceFieldExtractor) {
+            this.invoiceFieldExtractor = invoiceFieldExtractor;
+            return this;
+        }
+
+        public Builder metrics(InvoiceMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder recentInvoices(RecentInvoiceCache recentInvoices) {
+            this.recentInvoices = recentInvoices;
+            return this;
+        }
+
+        public Builder admission(InvoiceAdmission admission) {
+            this.admission = admission;
+            return this;
+        }
+
+        public Builder auditLog(AuditLog auditLog) {
+            this.auditLog = auditLog;
+            return this;
+        }
+
+        public Builder lookupCache(InvoiceLookupCache lookupCache) {
+            this.lookupCache = lookupCache;
+            return this;
+        }
+
+        public Builder lines(InvoiceLineService lines) {
+            this.lines = lines;
+            return this;
+        }
+
+        public InvoiceService build() {
+            if (store == null && repository == null) {
+                throw new IllegalStateException("An invoice store or repository is required");
+            }
+            InvoiceMetrics metrics = this.metrics != null ? this.metrics : new InvoiceMetrics(new SimpleMeterRegistry());
+            InvoiceLineService lines = this.lines != null ? this.lines : disabledLines();
+            return new InvoiceService(store != null ? store : new RepositoryInvoiceStore(repository, lines),
+                    schemaRegistry, xmlProperties, invoiceFieldExtractor, metrics, recentInvoices,
+                    admission != null ? admission : disabledAdmission(metrics),
+                    auditLog != null ? auditLog : disabledAuditLog(metrics),
+                    lookupCache != null ? lookupCache : disabledLookupCache(),
+                    lines);
+        }
+
+        private static InvoiceAdmission disabledAdmission(InvoiceMetrics metrics) {
+            RateLimitProperties properties = new RateLimitProperties();
+            properties.setEnabled(false);
+            return new InvoiceAdmission(properties, metrics);
+        }
+
+        private static AuditLog disabledAuditLog(InvoiceMetrics metrics) {
+            AuditProperties properties = new AuditProperties();
+            properties.setEnabled(false);
+            try {
+                return new AuditLog(properties, metrics);
+            } catch (IOException e) {
+                // Kapalıyken dosya açılmaz
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static InvoiceLookupCache disabledLookupCache() {
+            LookupCacheProperties properties = new LookupCacheProperties();
+            properties.setEnabled(false);
+            return new InvoiceLookupCache(properties, new SimpleMeterRegistry());
+        }
+
+        private static InvoiceLineService disabledLines() {
+            LineItemProperties properties = new LineItemProperties();
+            properties.setEnabled(false);
+            return new InvoiceLineService(properties, null, null, null);
+        }
+    }
 }
@@ -0,0 +1,25 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.model.InvoiceEntity;
+
+import java.util.Optional;
+
+/**
+ * Where {@link InvoiceService} looks for stored invoices and writes new ones. The application
+ * stores them in the database ({@link RepositoryInvoiceStore}); the warm-up keeps nothing.
+ */
+public interface InvoiceStore {
+
+    /**
+     * @param candidate An invoice about to be stored
+     * @return A stored invoice with the candidate's content hash, or with its NIP and P_2
+     */
+    Optional<InvoiceEntity> findExisting(InvoiceEntity candidate);
+
+    /**
+     * Writes a new invoice with its line items and assigns its id.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException if a matching invoice was stored in the meantime
+     */
+    void insert(InvoiceEntity entity);
+}
@@ -0,0 +1,242 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.exception.XmlProcessingException;
+import com.example.invoiceapi.xml.FaWiersz;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+
+/**
+ * Running totals of the line items ({@code FaWiersz}) of one invoice, fed one line at a time.
+ * <p>
+ * Each line is checked as it arrives for its required fields and a known VAT rate; quantity and
+ * unit price are not checked against the net value, which may include a discount. The line
+ * number is the key of the stored line, so it must grow from line to line, but it may start
+ * anywhere and leave gaps. The net values are
+ * summed per VAT rate group, which is all that is kept, so the size of this object does not
+ * depend on the number of lines. {@link #verify()} then compares the totals declared in
+ * {@code Fa} ({@code P_13_x}, {@code P_14_x}, {@code P_15}) with the sums.
+ * <p>
+ * VAT may be rounded per line or once per rate group, so a declared VAT amount is accepted within
+ * one grosz per line of its group. Not thread-safe.
+ */
+public final class InvoiceTotals {
+
+    static final int MAX_NAME_LENGTH = 512;
+    static final int MAX_UNIT_LENGTH = 256;
+    private static final BigDecimal GROSZ = new BigDecimal("0.01");
+
+    /**
+     * The VAT rate groups of {@code Fa}, with the elements that declare their net and VAT totals.
+     */
+    enum RateGroup {
+        BASIC("P_13_1", "P_14_1"),
+        REDUCED("P_13_2", "P_14_2"),
+        SECOND_REDUCED("P_13_3", "P_14_3"),
+        ZERO("P_13_6_1", null),
+        EXEMPT("P_13_7", null);
+
+        private final String netElement;
+        private final String vatElement;
+
+        RateGroup(String netElement, String vatElement) {
+            this.netElement = netElement;
+            this.vatElement = vatElement;
+        }
+    }
+
+    private record Rate(RateGroup group, BigDecimal value) {
+    }
+
+    private static final Map<String, Rate> RATES = Map.of(
+            "23", new Rate(RateGroup.BASIC, new BigDecimal("0.23")),
+            "22", new Rate(RateGroup.BASIC, new BigDecimal("0.22")),
+            "8", new Rate(RateGroup.REDUCED, new BigDecimal("0.08")),
+            "7", new Rate(RateGroup.REDUCED, new BigDecimal("0.07")),
+            "5", new Rate(RateGroup.SECOND_REDUCED, new BigDecimal("0.05")),
+            "0", new Rate(RateGroup.ZERO, BigDecimal.ZERO),
+            "zw", new Rate(RateGroup.EXEMPT, BigDecimal.ZERO));
+
+    private static final int GROUPS = RateGroup.values().length;
+
+    private final BigDecimal[] net = new BigDecimal[GROUPS];
+    // Yuvarlanmamış KDV; grup toplamı sonunda bir kez yuvarlanır
+    private final BigDecimal[] vat = new BigDecimal[GROUPS];
+    private final int[] groupLines = new int[GROUPS];
+    private final BigDecimal[] declaredNet = new BigDecimal[GROUPS];
+    private final BigDecimal[] declaredVat = new BigDecimal[GROUPS];
+    private BigDecimal declaredGross;
+    private int lines;
+    private int lastNumber;
+
+    /**
+     * @return Whether the element of {@code Fa} declares one of the totals
+     */
+    static boolean isDeclaredTotal(String element) {
+        if ("P_15".equals(element)) {
+            return true;
+        }
+        for (RateGroup group : RateGroup.values()) {
+            if (group.netElement.equals(element) || group.vatElement != null && group.vatElement.equals(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records a total declared in {@code Fa}.
+     *
+     * @param element One of the elements accepted by {@link #isDeclaredTotal(String)}
+     */
+    void declare(String element, BigDecimal amount) {
+        if ("P_15".equals(element)) {
+            declaredGross = amount;
+            return;
+        }
+        for (RateGroup group : RateGroup.values()) {
+            if (group.netElement.equals(element)) {
+                declaredNet[group.ordinal()] = amount;
+            } else if (element.equals(group.vatElement)) {
+                declaredVat[group.ordinal()] = amount;
+            }
+        }
+    }
+
+    /**
+     * Checks the line and adds it to the totals.
+     *
+     * @throws XmlProcessingException if the line is incomplete, has an unknown VAT rate or repeats an earlier number
+     */
+    public void add(FaWiersz line) {
+        int position = lines + 1;
+        if (line.getNrWierszaFa() == null || line.getNrWierszaFa() <= lastNumber) {
+            // Satır numarası kayıtlı satırın anahtarıdır; yalnızca bir önceki tutulduğundan artan olmalı
+            throw lineError(position, String.format("NrWierszaFa eksik ya da önceki satırdan (%d) büyük değil: %s",
+                    lastNumber, line.getNrWierszaFa()));
+        }
+        if (line.getP7() == null || line.getP7().isBlank() || line.getP7().length() > MAX_NAME_LENGTH) {
+            throw lineError(position, "P_7 (ad) boş ya da " + MAX_NAME_LENGTH + " karakterden uzun");
+        }
+        if (line.getP8A() != null && line.getP8A().length() > MAX_UNIT_LENGTH) {
+            throw lineError(position, "P_8A (birim) " + MAX_UNIT_LENGTH + " karakterden uzun");
+        }
+        if (line.getP11() == null) {
+            throw lineError(position, "P_11 (net tutar) eksik ya da geçersiz");
+        }
+        Rate rate = line.getP12() == null ? null : RATES.get(line.getP12().strip());
+        if (rate == null) {
+            throw lineError(position, "bilinmeyen KDV oranı P_12: " + line.getP12());
+        }
+
+        int group = rate.group().ordinal();
+        net[group] = add(net[group], line.getP11());
+        vat[group] = add(vat[group], line.getP11().multiply(rate.value()));
+        groupLines[group]++;
+        lines++;
+        lastNumber = line.getNrWierszaFa();
+    }
+
+    /**
+     * Compares the declared totals with the sums of the lines. An invoice without lines is not checked.
+     *
+     * @throws XmlProcessingException if a declared total does not match
+     */
+    public void verify() {
+        if (lines == 0) {
+            return;
+        }
+        for (RateGroup group : RateGroup.values()) {
+            int g = group.ordinal();
+            BigDecimal lineNet = zeroIfNull(net[g]);
+            if (declaredNet[g] != null && declaredNet[g].compareTo(lineNet) != 0) {
+                throw totalError(group.netElement, declaredNet[g], lineNet);
+            }
+            BigDecimal lineVat = roundedVat(g);
+            if (declaredVat[g] != null && !withinRounding(declaredVat[g], lineVat, groupLines[g])) {
+                throw totalError(group.vatElement, declaredVat[g], lineVat);
+            }
+        }
+        BigDecimal gross = netTotal().add(vatTotal());
+        if (declaredGross != null && !withinRounding(declaredGross, gross, lines)) {
+            throw totalError("P_15", declaredGross, gross);
+        }
+    }
+
+    public int lineCount() {
+        return lines;
+    }
+
+    /**
+     * @return The sum of the lines' net values; without lines, the sum of the declared net totals, or null if none
+     */
+    public BigDecimal netTotal() {
+        return lines > 0 ? sum(net) : sum(declaredNet);
+    }
+
+    /**
+     * @return The VAT per rate group as declared, or as computed from the lines where not declared;
+     * without lines, the sum of the declared VAT totals, or null if none
+     */
+    public BigDecimal vatTotal() {
+        if (lines == 0) {
+            return sum(declaredVat);
+        }
+        BigDecimal total = BigDecimal.ZERO;
+        for (int g = 0; g < GROUPS; g++) {
+            total = total.add(declaredVat[g] != null ? declaredVat[g] : roundedVat(g));
+        }
+        return total;
+    }
+
+    /**
+     * @return The declared P_15, or net plus VAT when it is not declared; null if neither is known
+     */
+    public BigDecimal grossTotal() {
+        if (declaredGross != null) {
+            return declaredGross;
+        }
+        BigDecimal netTotal = netTotal();
+        BigDecimal vatTotal = vatTotal();
+        if (netTotal == null) {
+            return vatTotal;
+        }
+        return vatTotal == null ? netTotal : netTotal.add(vatTotal);
+    }
+
+    private BigDecimal roundedVat(int group) {
+        return zeroIfNull(vat[group]).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static boolean withinRounding(BigDecimal declared, BigDecimal computed, int lineCount) {
+        return declared.subtract(computed).abs().compareTo(GROSZ.multiply(BigDecimal.valueOf(Math.max(1, lineCount)))) <= 0;
+    }
+
+    private static BigDecimal add(BigDecimal sum, BigDecimal value) {
+        return sum == null ? value : sum.add(value);
+    }
+
+    private static BigDecimal zeroIfNull(BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+
+    private static BigDecimal sum(BigDecimal[] values) {
+        BigDecimal total = null;
+        for (BigDecimal value : values) {
+            if (value != null) {
+                total = add(total, value);
+            }
+        }
+        return total;
+    }
+
+    private static XmlProcessingException lineError(int number, String message) {
+        return new XmlProcessingException("FaWiersz " + number + ": " + message);
+    }
+
+    private static XmlProcessingException totalError(String element, BigDecimal declared, BigDecimal computed) {
+        return new XmlProcessingException(String.format("%s (%s) fatura satırlarının toplamıyla (%s) uyuşmuyor",
+                element, declared.toPlainString(), computed.toPlainString()));
+    }
+}
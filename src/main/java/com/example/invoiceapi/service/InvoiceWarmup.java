@@ -0,0 +1,203 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.config.ExecutorConfig;
+import com.example.invoiceapi.config.WarmupProperties;
+import com.example.invoiceapi.config.XmlProperties;
+import com.example.invoiceapi.exception.XmlProcessingException;
+import com.example.invoiceapi.model.InvoiceEntity;
+import com.example.invoiceapi.repository.InvoiceRepository;
+import com.example.invoiceapi.util.Base64Helper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs synthetic invoices through the whole decode, validate and unmarshal pipeline before the
+ * application reports itself ready, so the first real requests do not pay for class loading,
+ * JIT compilation and filling the validator and unmarshaller pools.
+ * <p>
+ * The documents are built from {@link Base64Helper#generateExample()}: valid ones, with and
+ * without line items, and ones that fail at each stage (Base64, well-formedness, root element,
+ * XSD, line totals). They go through both the Base64 and the streaming path of an
+ * {@link InvoiceService} that shares the {@link SchemaRegistry} and the line reader with the
+ * application but hands invoices to a {@link DiscardingStore}, counts into its own meter
+ * registry and keeps no audit records. The database is only touched by one read-only lookup.
+ * <p>
+ * Spring Boot runs application runners before it moves the readiness state to
+ * {@code ACCEPTING_TRAFFIC}, so {@code /actuator/health/readiness} answers
+ * {@code OUT_OF_SERVICE} until the warm-up is over or has timed out.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InvoiceWarmup implements ApplicationRunner {
+
+    private static final String EXAMPLE = Base64Helper.generateExample().get("xml");
+    // Üç satır, her biri 2 x 50.00 net, %23 KDV
+    private static final String LINES_EXAMPLE = EXAMPLE.replace("</P_2>\n", "</P_2>\n"
+            + "    <P_13_1>300.00</P_13_1>\n    <P_14_1>69.00</P_14_1>\n    <P_15>369.00</P_15>\n"
+            + line(1) + line(2) + line(3));
+
+    private final WarmupProperties properties;
+    private final InvoiceRepository invoiceRepository;
+    private final SchemaRegistry schemaRegistry;
+    private final XmlProperties xmlProperties;
+    private final InvoiceFieldExtractor invoiceFieldExtractor;
+    private final InvoiceLineService lines;
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        if (!properties.isEnabled() || properties.getIterations() <= 0) {
+            log.info("Warm-up disabled");
+            return;
+        }
+        log.info("Warming up with {} synthetic invoices; the rejections logged until it finishes are expected",
+                properties.getIterations());
+        long start = System.nanoTime();
+        // İlk kullanımda derlenen sürümlerin şeması ve JAXB bağlamı da şimdi hazırlanır
+        for (SchemaVersion version : schemaRegistry.versions()) {
+            schemaRegistry.engine(version);
+        }
+        Result result = process(sinkService(), properties.getIterations());
+        warmDatabase();
+        log.info("Warm-up finished in {} ms: {} documents, {} rejected as expected{}",
+                (System.nanoTime() - start) / 1_000_000, result.processed(), result.rejected(),
+                result.completed() ? "" : " (timed out after " + properties.getTimeout() + ")");
+        if (result.unexpected() > 0) {
+            log.warn("{} warm-up documents were not handled as expected; check the schema and settings", result.unexpected());
+        }
+    }
+
+    /**
+     * Runs the given number of documents on {@code invoice.warmup.threads} threads.
+     */
+    Result process(InvoiceService service, int iterations) throws InterruptedException {
+        List<Sample> samples = samples();
+        int threads = properties.getThreads() > 0 ? properties.getThreads() : Runtime.getRuntime().availableProcessors();
+        AtomicInteger next = new AtomicInteger();
+        AtomicLong processed = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong unexpected = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, ExecutorConfig.namedThreads("invoice-warmup-"));
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < iterations && !Thread.currentThread().isInterrupted()) {
+                    Sample sample = samples.get(i % samples.size());
+                    boolean accepted;
+                    try {
+                        sample.call().accept(service);
+                        accepted = true;
+                    } catch (XmlProcessingException e) {
+                        accepted = false;
+                        rejected.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        accepted = false;
+                        log.debug("Warm-up document {} failed: {}", sample.name(), e.toString());
+                    }
+                    if (accepted != sample.valid()) {
+                        unexpected.incrementAndGet();
+                    }
+                    processed.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        boolean completed = executor.awaitTermination(properties.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        if (!completed) {
+            executor.shutdownNow();
+        }
+        return new Result(processed.get(), rejected.get(), unexpected.get(), completed);
+    }
+
+    /**
+     * A service with the application's schemas, settings and line reader that stores nothing.
+     */
+    InvoiceService sinkService() {
+        return InvoiceService.builder(schemaRegistry)
+                .store(new DiscardingStore())
+                .xmlProperties(xmlProperties)
+                .fieldExtractor(invoiceFieldExtractor)
+                .lines(lines)
+                .build();
+    }
+
+    private void warmDatabase() {
+        // Bağlantı havuzu ve sorgu planı için salt okunur tek bir sorgu; hiçbir faturayla eşleşmez
+        try {
+            invoiceRepository.findFirstByContentHashOrNipAndP2("", "", "");
+        } catch (DataAccessException e) {
+            log.warn("Warm-up query failed: {}", e.getMessage());
+        }
+    }
+
+    static List<Sample> samples() {
+        String schemaViolation = EXAMPLE.replaceFirst("\\s*<P_2>[^<]*</P_2>", "");
+        String malformed = EXAMPLE.substring(0, EXAMPLE.indexOf("<P_1>") + 7);
+        String unsupported = EXAMPLE.replace(SchemaVersion.FA_2.root().getNamespaceURI(), "urn:invoice-warmup:unsupported");
+        String wrongTotal = LINES_EXAMPLE.replace("<P_15>369.00</P_15>", "<P_15>370.00</P_15>");
+        return List.of(
+                new Sample("valid", true, service -> service.processInvoice(base64(EXAMPLE))),
+                new Sample("valid-stream", true, service -> service.processInvoice(stream(EXAMPLE))),
+                new Sample("valid-lines", true, service -> service.processInvoice(base64(LINES_EXAMPLE))),
+                new Sample("valid-lines-stream", true, service -> service.processInvoice(stream(LINES_EXAMPLE))),
+                new Sample("wrong-total", false, service -> service.processInvoice(base64(wrongTotal))),
+                new Sample("schema-violation", false, service -> service.processInvoice(base64(schemaViolation))),
+                new Sample("schema-violation-stream", false, service -> service.processInvoice(stream(schemaViolation))),
+                new Sample("malformed", false, service -> service.processInvoice(base64(malformed))),
+                new Sample("unsupported-schema-stream", false, service -> service.processInvoice(stream(unsupported))),
+                new Sample("bad-base64", false, service -> service.processInvoice("*** not base64 ***")));
+    }
+
+    private static String line(int number) {
+        return "    <FaWiersz><NrWierszaFa>" + number + "</NrWierszaFa><P_7>Ürün " + number + "</P_7><P_8A>szt</P_8A>"
+                + "<P_8B>2</P_8B><P_9A>50.00</P_9A><P_11>100.00</P_11><P_12>23</P_12></FaWiersz>\n";
+    }
+
+    private static String base64(String xml) {
+        return Base64.getEncoder().encodeToString(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ByteArrayInputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Keeps nothing: assigns ids in memory and never finds a stored invoice.
+     */
+    static final class DiscardingStore implements InvoiceStore {
+
+        private final AtomicLong ids = new AtomicLong();
+
+        @Override
+        public Optional<InvoiceEntity> findExisting(InvoiceEntity candidate) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void insert(InvoiceEntity entity) {
+            entity.setId(ids.incrementAndGet());
+        }
+    }
+
+    record Sample(String name, boolean valid, Consumer<InvoiceService> call) {
+    }
+
+    record Result(long processed, long rejected, long unexpected, boolean completed) {
+    }
+}
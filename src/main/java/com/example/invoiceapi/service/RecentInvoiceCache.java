@@ -0,0 +1,78 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.repository.InvoicesExpiredEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Remembers the content hashes of recently stored invoices and their ids, so a retried
+ * submission is answered without validating the XML again or querying the database.
+ * <p>
+ * Holds at most {@code invoice.dedup.cache-size} entries; the oldest are evicted first.
+ * A size of 0 disables the cache. The database unique indexes remain the source of truth.
+ * Invoices dropped with their monthly partition are forgotten ({@link InvoicesExpiredEvent}).
+ */
+@Component
+public class RecentInvoiceCache {
+
+    private final int maxSize;
+    private final ConcurrentHashMap<String, Stored> byHash = new ConcurrentHashMap<>();
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    public RecentInvoiceCache(@Value("${invoice.dedup.cache-size:10000}") int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param contentHash The SHA-256 of the decoded invoice XML
+     * @return The id of the stored invoice with this content, or null if it is not cached
+     */
+    public Long find(String contentHash) {
+        Stored stored = contentHash == null ? null : byHash.get(contentHash);
+        return stored == null ? null : stored.id();
+    }
+
+    /**
+     * @param p1 The issue date of the stored invoice, to forget it once its month is dropped
+     */
+    public void put(String contentHash, Long id, LocalDate p1) {
+        if (maxSize <= 0 || contentHash == null || id == null) {
+            return;
+        }
+        if (byHash.putIfAbsent(contentHash, new Stored(id, p1)) == null) {
+            insertionOrder.add(contentHash);
+            evict();
+        }
+    }
+
+    @EventListener
+    public void expired(InvoicesExpiredEvent event) {
+        if (byHash.values().removeIf(stored -> stored.p1() != null && stored.p1().isBefore(event.issuedBefore()))) {
+            insertionOrder.removeIf(hash -> !byHash.containsKey(hash));
+        }
+    }
+
+    public int size() {
+        return byHash.size();
+    }
+
+    private void evict() {
+        // En eski özetler kuyruğun başında
+        while (byHash.size() > maxSize) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            byHash.remove(oldest);
+        }
+    }
+
+    private record Stored(Long id, LocalDate p1) {
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.model.InvoiceEntity;
+import com.example.invoiceapi.repository.InvoiceRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stores invoices through {@link InvoiceRepository}, with their line items in the same transaction.
+ */
+@Component
+@RequiredArgsConstructor
+public class RepositoryInvoiceStore implements InvoiceStore {
+
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceLineService lines;
+
+    @Override
+    public Optional<InvoiceEntity> findExisting(InvoiceEntity candidate) {
+        return invoiceRepository.findFirstByContentHashOrNipAndP2(candidate.getContentHash(), candidate.getNip(), candidate.getP2());
+    }
+
+    @Override
+    public void insert(InvoiceEntity entity) {
+        lines.writeWithLines(List.of(entity), () -> {
+            invoiceRepository.save(entity);
+            return List.of();
+        });
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.exception.XmlProcessingException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stream.StreamSource;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The supported invoice schema versions, looked up by the namespace and local name of a
+ * document's root element.
+ * <p>
+ * The root is read with a StAX cursor that stops at the first start element, so a document of
+ * an unknown version is rejected before it is validated or unmarshalled. Each version's
+ * {@link XmlEngine} (compiled XSD and JAXB context) is built the first time one of its
+ * documents arrives and reused afterwards; the {@link SchemaVersion#FA_2} engine is the
+ * {@code XmlEngine} bean, compiled at startup as before. Looking up a version is a map read, so
+ * registering more versions does not slow down documents of the existing ones.
+ */
+@Component
+@Slf4j
+public class SchemaRegistry {
+
+    /** The versions accepted by the service. A new version is added here with its XSD and JAXB package. */
+    static final List<SchemaVersion> VERSIONS = List.of(SchemaVersion.FA_2);
+
+    /** Bytes of a stream read to find the root element: the XML declaration, comments and the root tag. */
+    static final int SNIFF_LIMIT = 4096;
+
+    private final Map<QName, SchemaVersion> versionsByRoot = new LinkedHashMap<>();
+    private final Map<SchemaVersion, XmlEngine> engines = new ConcurrentHashMap<>();
+    private final List<Consumer<XmlEngine>> engineListeners = new CopyOnWriteArrayList<>();
+    private final int poolSize;
+    private final XMLInputFactory inputFactory;
+
+    @Autowired
+    public SchemaRegistry(XmlEngine defaultEngine, @Value("${xml.engine.pool-size:0}") int poolSize) {
+        this(VERSIONS, defaultEngine, poolSize);
+    }
+
+    /**
+     * @param versions  The accepted versions; their root elements must be distinct
+     * @param preloaded An engine that is already built, for one of the versions
+     * @param poolSize  Pool size of the engines built on demand ({@code xml.engine.pool-size})
+     */
+    SchemaRegistry(List<SchemaVersion> versions, XmlEngine preloaded, int poolSize) {
+        for (SchemaVersion version : versions) {
+            if (versionsByRoot.putIfAbsent(version.root(), version) != null) {
+                throw new IllegalArgumentException("Schema versions share the root element " + version.root());
+            }
+        }
+        engines.put(preloaded.getVersion(), preloaded);
+        this.poolSize = poolSize;
+        this.inputFactory = XMLInputFactory.newFactory();
+        this.inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    public Collection<SchemaVersion> versions() {
+        return versionsByRoot.values();
+    }
+
+    /**
+     * @return The version whose documents start with the given root element, if any
+     */
+    public Optional<SchemaVersion> find(QName root) {
+        return Optional.ofNullable(versionsByRoot.get(root));
+    }
+
+    /**
+     * Returns the version's engine, compiling its schema and JAXB context on first use.
+     */
+    public XmlEngine engine(SchemaVersion version) {
+        XmlEngine engine = engines.get(version);
+        if (engine != null) {
+            return engine;
+        }
+        // Aynı sürüm için eşzamanlı ilk istekler tek bir derlemeyi bekler
+        XmlEngine[] built = new XmlEngine[1];
+        engine = engines.computeIfAbsent(version, v -> {
+            log.info("Compiling schema {} on first use", v);
+            return built[0] = new XmlEngine(v, poolSize);
+        });
+        if (built[0] != null) {
+            engineListeners.forEach(listener -> listener.accept(built[0]));
+        }
+        return engine;
+    }
+
+    /**
+     * Calls the listener with every engine built so far and with each engine built later, once
+     * it is in use. An engine built while the listener is being added may be passed twice.
+     */
+    public void onEngine(Consumer<XmlEngine> listener) {
+        // Önce kaydedilir, sonra mevcutlar gezilir: arada derlenen motor kaçmaz
+        engineListeners.add(listener);
+        engines.values().forEach(listener);
+    }
+
+    /**
+     * Reads the root element of a document, consuming the source only up to it.
+     *
+     * @param source A stream source backed by a Reader or an InputStream
+     * @return The namespace and local name of the root element
+     * @throws XmlProcessingException if no root element can be read
+     */
+    public QName sniff(StreamSource source) {
+        XMLStreamReader reader = null;
+        try {
+            reader = source.getReader() != null
+                    ? inputFactory.createXMLStreamReader(source.getReader())
+                    : inputFactory.createXMLStreamReader(source.getInputStream());
+            // Bildirim, yorum ve işleme talimatları atlanır; ilk START_ELEMENT kök elemandır
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    return reader.getName();
+                }
+            }
+            throw new XmlProcessingException("XML içeriğinde kök eleman yok");
+        } catch (XMLStreamException e) {
+            XmlProcessingException error = new XmlProcessingException("XML kök elemanı okunamadı: " + e.getMessage(), e);
+            if (e.getLocation() != null) {
+                error.withLocation(e.getLocation().getLineNumber(), e.getLocation().getColumnNumber());
+            }
+            throw error;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    log.debug("Failed to close XML stream reader", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the root element from the first {@value #SNIFF_LIMIT} bytes of the stream and
+     * resets it, so the parser still sees the whole document.
+     *
+     * @throws XmlProcessingException if the stream is empty or the root element does not start
+     *                                within the first {@value #SNIFF_LIMIT} bytes
+     */
+    public QName sniff(BufferedInputStream in) throws IOException {
+        in.mark(SNIFF_LIMIT);
+        byte[] prefix;
+        try {
+            prefix = in.readNBytes(SNIFF_LIMIT);
+        } finally {
+            in.reset();
+        }
+        if (prefix.length == 0) {
+            throw new XmlProcessingException("XML body is empty");
+        }
+        return sniff(new StreamSource(new ByteArrayInputStream(prefix)));
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.dto.InvoiceFields;
+import com.example.invoiceapi.xml.Faktura;
+
+import javax.xml.namespace.QName;
+import java.util.function.Function;
+
+/**
+ * One supported invoice schema version: the root element that identifies its documents, the
+ * XSD they are validated against, the JAXB class they are bound to, and how the persisted
+ * fields are read from that class.
+ *
+ * @param name           Display name, for example {@code FA(2)}
+ * @param root           Namespace and local name of the document's root element
+ * @param schemaLocation Classpath location of the XSD
+ * @param binding        JAXB class of the root element
+ * @param fields         Reads the persisted fields from an unmarshalled {@code binding} instance
+ */
+public record SchemaVersion(String name, QName root, String schemaLocation, Class<?> binding,
+                            Function<Object, InvoiceFields> fields) {
+
+    public static final SchemaVersion FA_2 = new SchemaVersion("FA(2)",
+            new QName(InvoiceFieldExtractor.NAMESPACE, "Faktura"), XmlEngine.SCHEMA_LOCATION, Faktura.class,
+            invoice -> InvoiceFields.from((Faktura) invoice));
+
+    @Override
+    public String toString() {
+        return name + " " + root;
+    }
+}
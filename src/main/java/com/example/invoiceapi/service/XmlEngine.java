@@ -0,0 +1,250 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.exception.XmlProcessingException;
+import com.example.invoiceapi.xml.Faktura;
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Unmarshaller;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Compiles the XSD schema and builds the JAXB context of one {@link SchemaVersion} once, then
+ * hands out pooled {@link Validator} and {@link Unmarshaller} instances to concurrent requests.
+ * The bean is the {@link SchemaVersion#FA_2} engine; engines of other versions are built on
+ * demand by {@link SchemaRegistry}.
+ * <p>
+ * Neither {@code Validator} nor {@code Unmarshaller} is thread-safe, so each call borrows
+ * an instance exclusively and returns it afterwards. When the pool is empty a new instance
+ * is created (a miss); when it is full the returned instance is dropped.
+ */
+@Component
+@Slf4j
+public class XmlEngine {
+
+    public static final String SCHEMA_LOCATION = "schemat.xsd";
+
+    private final SchemaVersion version;
+    private final Schema schema;
+    private final JAXBContext jaxbContext;
+    private final Pool<Validator> validators;
+    private final Pool<Unmarshaller> unmarshallers;
+    private final Pool<Unmarshaller> validatingUnmarshallers;
+
+    @Autowired
+    public XmlEngine(@Value("${xml.engine.pool-size:0}") int poolSize) {
+        this(SchemaVersion.FA_2, poolSize);
+    }
+
+    public XmlEngine(SchemaVersion version, int poolSize) {
+        this.version = version;
+        int size = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors() * 2;
+        long start = System.nanoTime();
+        this.schema = compileSchema();
+        this.jaxbContext = createContext();
+        this.validators = new Pool<>("validator", size, schema::newValidator);
+        this.unmarshallers = new Pool<>("unmarshaller", size, this::newUnmarshaller);
+        this.validatingUnmarshallers = new Pool<>("validating-unmarshaller", size, this::newValidatingUnmarshaller);
+        log.info("XML engine for {} ready in {} ms (pool size: {})", version.name(), (System.nanoTime() - start) / 1_000_000, size);
+    }
+
+    /**
+     * Validates the given source against the precompiled schema.
+     *
+     * @param source The XML source to validate
+     * @throws SAXException if the document is not valid
+     * @throws IOException if the source cannot be read
+     */
+    public void validate(Source source) throws SAXException, IOException {
+        Validator validator = validators.borrow();
+        try {
+            validator.validate(source);
+        } finally {
+            validator.reset();
+            validators.release(validator);
+        }
+    }
+
+    /**
+     * Unmarshals the given source into the version's binding class (a {@link Faktura} for
+     * FA(2)) without schema validation.
+     *
+     * @param source The XML source to unmarshal
+     * @return The unmarshalled invoice
+     * @throws JAXBException if the document cannot be bound
+     */
+    public <T> T unmarshal(Source source) throws JAXBException {
+        Unmarshaller unmarshaller = unmarshallers.borrow();
+        try {
+            return bind(unmarshaller, source);
+        } finally {
+            unmarshallers.release(unmarshaller);
+        }
+    }
+
+    /**
+     * Unmarshals the element the reader is positioned at into the given class, without schema
+     * validation, and leaves the reader at the event after its end tag. Used to bind a repeated
+     * element of a document that is read with StAX one element at a time.
+     *
+     * @param reader A reader positioned at a start element
+     * @param type   A class known to this engine's JAXB context
+     * @return The unmarshalled element
+     * @throws JAXBException if the element cannot be bound
+     */
+    public <T> T unmarshal(XMLStreamReader reader, Class<T> type) throws JAXBException {
+        Unmarshaller unmarshaller = unmarshallers.borrow();
+        try {
+            return unmarshaller.unmarshal(reader, type).getValue();
+        } finally {
+            unmarshallers.release(unmarshaller);
+        }
+    }
+
+    /**
+     * Validates and unmarshals the given source in a single parse: the schema is attached to
+     * the unmarshaller, so validation runs on the same SAX events that build the object graph.
+     *
+     * @param source The XML source to validate and unmarshal
+     * @return The unmarshalled invoice
+     * @throws JAXBException if the document is invalid or cannot be bound; schema violations
+     *                       carry the underlying {@link SAXException} as linked exception
+     */
+    public <T> T unmarshalValidated(Source source) throws JAXBException {
+        Unmarshaller unmarshaller = validatingUnmarshallers.borrow();
+        try {
+            return bind(unmarshaller, source);
+        } finally {
+            validatingUnmarshallers.release(unmarshaller);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T bind(Unmarshaller unmarshaller, Source source) throws JAXBException {
+        // Dönüş tipini çağıran belirler; sürümün bağlama sınıfıyla uyuşması onun sorumluluğunda
+        return (T) unmarshaller.unmarshal(source, version.binding()).getValue();
+    }
+
+    public SchemaVersion getVersion() {
+        return version;
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    public JAXBContext getJaxbContext() {
+        return jaxbContext;
+    }
+
+    public PoolStats validatorStats() {
+        return validators.stats();
+    }
+
+    public PoolStats unmarshallerStats() {
+        return unmarshallers.stats();
+    }
+
+    public PoolStats validatingUnmarshallerStats() {
+        return validatingUnmarshallers.stats();
+    }
+
+    private Schema compileSchema() {
+        String location = version.schemaLocation();
+        URL schemaResource = getClass().getClassLoader().getResource(location);
+        if (schemaResource == null) {
+            throw new XmlProcessingException("Schema file '" + location + "' not found in classpath");
+        }
+        try {
+            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            schemaFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            schemaFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+            log.debug("Compiling schema from {}", schemaResource.getPath());
+            return schemaFactory.newSchema(schemaResource);
+        } catch (SAXException e) {
+            throw new XmlProcessingException("Schema file '" + location + "' could not be compiled: " + e.getMessage(), e);
+        }
+    }
+
+    private JAXBContext createContext() {
+        try {
+            return JAXBContext.newInstance(version.binding());
+        } catch (JAXBException e) {
+            throw new XmlProcessingException("JAXB context could not be created: " + e.getMessage(), e);
+        }
+    }
+
+    private Unmarshaller newUnmarshaller() {
+        try {
+            return jaxbContext.createUnmarshaller();
+        } catch (JAXBException e) {
+            throw new XmlProcessingException("Unmarshaller could not be created: " + e.getMessage(), e);
+        }
+    }
+
+    private Unmarshaller newValidatingUnmarshaller() {
+        Unmarshaller unmarshaller = newUnmarshaller();
+        unmarshaller.setSchema(schema);
+        return unmarshaller;
+    }
+
+    /**
+     * Snapshot of a pool's size and usage counters.
+     */
+    public record PoolStats(String name, int capacity, int idle, long hits, long misses) {
+    }
+
+    /**
+     * Bounded pool of non thread-safe objects.
+     */
+    static final class Pool<T> {
+
+        private final String name;
+        private final int capacity;
+        private final ArrayBlockingQueue<T> idle;
+        private final Supplier<T> factory;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        Pool(String name, int capacity, Supplier<T> factory) {
+            this.name = name;
+            this.capacity = capacity;
+            this.idle = new ArrayBlockingQueue<>(capacity);
+            this.factory = factory;
+        }
+
+        T borrow() {
+            T instance = idle.poll();
+            if (instance != null) {
+                hits.incrementAndGet();
+                return instance;
+            }
+            misses.incrementAndGet();
+            return factory.get();
+        }
+
+        void release(T instance) {
+            // Havuz doluysa nesneyi bırakıyoruz, GC toplar
+            idle.offer(instance);
+        }
+
+        PoolStats stats() {
+            return new PoolStats(name, capacity, idle.size(), hits.get(), misses.get());
+        }
+    }
+}
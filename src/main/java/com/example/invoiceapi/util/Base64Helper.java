@@ -3,8 +3,8 @@ package com.example.invoiceapi.util;
 import lombok.extern.slf4j.Slf4j;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.HashMap;
 import java.util.Map;
 
 @Slf4j
@@ -22,68 +22,23 @@ public class Base64Helper {
             throw new IllegalArgumentException("Base64 input is null or empty");
         }
 
-        // Temizleme işlemleri
-        String cleanInput = input.trim();
-
-        // Yeni satır, tab ve boşlukları kaldır
-        cleanInput = cleanInput.replaceAll("[\\s\\r\\n\\t]", "");
-
-        // Elipsis işaretini kaldır
-        cleanInput = cleanInput.replace("...", "");
-
-        // Tırnak işaretlerini kaldır
-        if (cleanInput.startsWith("\"") && cleanInput.endsWith("\"")) {
-            cleanInput = cleanInput.substring(1, cleanInput.length() - 1);
-        }
-
-        // Üç nokta işaretini kaldır
-        if (cleanInput.endsWith("…")) {
-            cleanInput = cleanInput.substring(0, cleanInput.length() - 1);
-        }
-
-        // Eğer base64 uzunluğu 4'ün katı değilse, = ekleyerek düzelt
-        int remainder = cleanInput.length() % 4;
-        if (remainder > 0) {
-            cleanInput = cleanInput + "=".repeat(4 - remainder);
-            log.debug("Added {} padding characters to make Base64 length a multiple of 4", 4 - remainder);
+        // Temizleme, padding düzeltme ve çözümleme tek geçişte
+        Base64Sanitizer.Result decoded = Base64Sanitizer.decodeLenient(input);
+        if (decoded.paddingAdded() > 0) {
+            log.debug("Added {} padding characters to make Base64 length a multiple of 4", decoded.paddingAdded());
         }
+        log.debug("Base64 after cleaning: length {}", decoded.cleanedLength());
 
-        // İlk 20 karakteri ve son 20 karakteri loglayalım
-        if (cleanInput.length() > 40) {
-            log.debug("Base64 after cleaning: {}...{} (length: {})", 
-                    cleanInput.substring(0, 20), 
-                    cleanInput.substring(cleanInput.length() - 20), 
-                    cleanInput.length());
-        } else {
-            log.debug("Base64 after cleaning: {} (length: {})", cleanInput, cleanInput.length());
+        if (decoded.isSuccess()) {
+            return decoded.toString();
         }
 
-        // Base64 alfabesinde olmayan karakterleri kontrol et
-        StringBuilder invalidChars = new StringBuilder();
-        for (int i = 0; i < cleanInput.length(); i++) {
-            char c = cleanInput.charAt(i);
-            if (c != '=' && c != '+' && c != '/' && c != '-' && c != '_' && !Character.isLetterOrDigit(c)) {
-                invalidChars.append("Pos ").append(i).append(": '").append(c)
-                           .append("' (hex: ").append(Integer.toHexString((int)c))
-                           .append("), ");
-            }
-        }
-
-        if (invalidChars.length() > 0) {
-            log.warn("Found invalid Base64 characters: {}", invalidChars);
-        }
-
-        try {
-            byte[] decoded = Base64.getDecoder().decode(cleanInput);
-            return new String(decoded, StandardCharsets.UTF_8);
-        } catch (IllegalArgumentException e) {
-            try {
-                byte[] decoded = Base64.getUrlDecoder().decode(cleanInput);
-                return new String(decoded, StandardCharsets.UTF_8);
-            } catch (IllegalArgumentException e2) {
-                throw new IllegalArgumentException("Base64 input could not be decoded with either standard or URL-safe decoder", e);
-            }
+        // Base64 alfabesinde olmayan karakterlerin konumlarını loglayalım
+        if (decoded.invalidPositions().length > 0) {
+            log.warn("Found invalid Base64 characters at positions: {}", Arrays.toString(decoded.invalidPositions()));
         }
+        throw new IllegalArgumentException("Base64 input could not be decoded with either standard or URL-safe decoder",
+                new IllegalArgumentException(decoded.standardError()));
     }
 
     /**
@@ -99,12 +54,18 @@ public class Base64Helper {
         return Base64.getEncoder().encodeToString(input.getBytes(StandardCharsets.UTF_8));
     }
 
+    private static final Map<String, String> EXAMPLE = buildExample();
+
     /**
-     * Generate a valid example XML and its Base64 encoded form.
+     * Returns a valid example XML and its Base64 encoded form. The map is built once and is unmodifiable.
      * 
-     * @return A map containing the XML and its Base64 encoded form
+     * @return A map containing the XML ("xml") and its Base64 encoded form ("base64")
      */
     public static Map<String, String> generateExample() {
+        return EXAMPLE;
+    }
+
+    private static Map<String, String> buildExample() {
         String exampleXml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
                 + "<Faktura xmlns=\"http://crd.gov.pl/wzor/2023/06/29/12648/\">\n"
                 + "  <Podmiot1>\n"
@@ -120,10 +81,6 @@ public class Base64Helper {
 
         String base64Encoded = encode(exampleXml);
 
-        Map<String, String> result = new java.util.HashMap<>();
-        result.put("xml", exampleXml);
-        result.put("base64", base64Encoded);
-
-        return result;
+        return Map.of("xml", exampleXml, "base64", base64Encoded);
     }
 }
@@ -0,0 +1,374 @@
+package com.example.invoiceapi.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Cleans and decodes the Base64 payloads clients send us, in one pass over the input.
+ * <p>
+ * Produces the same result as the original cleanup chain ({@code trim}, removing whitespace,
+ * removing {@code "..."}, stripping surrounding quotes, then trying the standard and the URL-safe
+ * decoder) without allocating intermediate Strings, compiling regexes or throwing exceptions.
+ * The alphabet is detected while decoding; error messages are identical to the ones
+ * {@link java.util.Base64.Decoder} would have thrown.
+ * <p>
+ * Cleaned characters and decoded bytes are written into per-thread buffers that are reused by
+ * the next call on the same thread, so a {@link Result} must be consumed (for example with
+ * {@link Result#toString()}) before decoding again. A thread keeps at most 64 KB of cleaned
+ * characters and 48 KB of decoded bytes; a larger payload gets buffers of its own that are left
+ * to GC once the call returns, so idle worker threads do not pin memory sized for the largest
+ * request they ever saw.
+ */
+public final class Base64Sanitizer {
+
+    public enum Alphabet { STANDARD, URL_SAFE }
+
+    // Tipik bir fatura yükü sığar; iş parçacığı başına tutulan bellek ~112 KB ile sınırlı
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    private static final int MAX_REPORTED_INVALID = 32;
+
+    private static final byte INVALID = -1;
+    private static final byte PADDING = -2;
+
+    private static final byte[] STANDARD_TABLE = table("+/");
+    private static final byte[] URL_SAFE_TABLE = table("-_");
+    private static final byte[] COMBINED_TABLE = combinedTable();
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private Base64Sanitizer() {
+    }
+
+    /**
+     * Cleans and decodes the input the way InvoiceService and InvoiceController always have.
+     *
+     * @param input The Base64 payload as received
+     * @return The decoding result; never null
+     */
+    public static Result decode(String input) {
+        return decode(input, false);
+    }
+
+    /**
+     * Like {@link #decode(String)}, and additionally drops a trailing {@code '…'} and completes
+     * missing {@code '='} padding, as {@link Base64Helper#safeBase64Decode(String)} does.
+     *
+     * @param input The Base64 payload as received
+     * @return The decoding result; never null
+     */
+    public static Result decodeLenient(String input) {
+        return decode(input, true);
+    }
+
+    private static Result decode(String input, boolean lenient) {
+        Buffers buffers = BUFFERS.get();
+
+        // trim() sınırları: baştaki ve sondaki <= ' ' karakterler
+        int start = 0;
+        int end = input.length();
+        while (start < end && input.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && input.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        // Tek geçiş: boşlukları atla, "..." gruplarını sil. Temizlenen karakterler byte olarak
+        // yazılır; 0xFF üstü karakterler JDK decoder'ında olduğu gibi '?' olur.
+        byte[] chars = buffers.chars(end - start + 3);
+        int length = 0;
+        int dots = 0;
+        boolean ellipsisRemoved = false;
+        char last = 0;
+        char beforeLast = 0;
+        for (int i = start; i < end; i++) {
+            char c = input.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B') {
+                continue;
+            }
+            if (c == '.') {
+                dots++;
+                continue;
+            }
+            if (dots > 0) {
+                ellipsisRemoved |= dots >= 3;
+                for (int k = dots % 3; k > 0; k--) {
+                    chars[length++] = '.';
+                    beforeLast = last;
+                    last = '.';
+                }
+                dots = 0;
+            }
+            chars[length++] = (byte) (c < 256 ? c : '?');
+            beforeLast = last;
+            last = c;
+        }
+        if (dots > 0) {
+            ellipsisRemoved |= dots >= 3;
+            for (int k = dots % 3; k > 0; k--) {
+                chars[length++] = '.';
+                beforeLast = last;
+                last = '.';
+            }
+        }
+
+        // Çevreleyen tırnakları kaldır
+        int offset = 0;
+        boolean quotesRemoved = false;
+        if (length > 0 && chars[0] == '"' && chars[length - 1] == '"') {
+            offset = 1;
+            length = Math.max(0, length - 2);
+            quotesRemoved = true;
+            last = beforeLast;
+        }
+
+        int paddingAdded = 0;
+        if (lenient) {
+            if (length > 0 && last == '…') {
+                length--;
+            }
+            int remainder = length % 4;
+            if (remainder > 0) {
+                paddingAdded = 4 - remainder;
+                Arrays.fill(chars, offset + length, offset + length + paddingAdded, (byte) '=');
+                length += paddingAdded;
+            }
+        }
+
+        byte[] bytes = buffers.bytes(3 * ((length + 3) / 4));
+        Decoding decoding = new Decoding();
+        decode(chars, offset, offset + length, COMBINED_TABLE, bytes, decoding);
+        boolean mixed = decoding.sawStandard && decoding.sawUrlSafe;
+        if (decoding.error == null && !mixed) {
+            Alphabet alphabet = decoding.sawUrlSafe ? Alphabet.URL_SAFE : Alphabet.STANDARD;
+            return new Result(bytes, decoding.length, length, alphabet, ellipsisRemoved, quotesRemoved,
+                    paddingAdded, null, null, new int[0]);
+        }
+
+        // Hata yolu: her iki decoder'ın mesajını üret ve geçersiz karakter konumlarını topla
+        Decoding standard = new Decoding();
+        decode(chars, offset, offset + length, STANDARD_TABLE, bytes, standard);
+        Decoding urlSafe = new Decoding();
+        decode(chars, offset, offset + length, URL_SAFE_TABLE, bytes, urlSafe);
+        return new Result(null, 0, length, null, ellipsisRemoved, quotesRemoved, paddingAdded,
+                standard.error, urlSafe.error, invalidPositions(chars, offset, length));
+    }
+
+    /**
+     * Mirrors the non-MIME decode loop of {@link java.util.Base64.Decoder}, including its error messages,
+     * but reports failures through {@code out} instead of throwing.
+     */
+    private static void decode(byte[] src, int start, int end, byte[] table, byte[] dst, Decoding out) {
+        int length = end - start;
+        if (length == 0) {
+            return;
+        }
+        if (length < 2) {
+            out.error = "Input byte[] should at least have 2 bytes for base64 bytes";
+            return;
+        }
+        int sp = start;
+        int dp = 0;
+        int bits = 0;
+        int shiftto = 18;
+        while (sp < end) {
+            int c = src[sp++] & 0xff;
+            int b = table[c];
+            if (b < 0) {
+                if (b == PADDING) {
+                    if (shiftto == 6 && (sp == end || src[sp++] != '=') || shiftto == 18) {
+                        out.error = "Input byte array has wrong 4-byte ending unit";
+                        return;
+                    }
+                    break;
+                }
+                // JDK mesajındaki değer işaretli byte'tır
+                out.error = "Illegal base64 character " + Integer.toString(src[sp - 1], 16);
+                return;
+            }
+            if (c == '+' || c == '/') {
+                out.sawStandard = true;
+            } else if (c == '-' || c == '_') {
+                out.sawUrlSafe = true;
+            }
+            bits |= b << shiftto;
+            shiftto -= 6;
+            if (shiftto < 0) {
+                dst[dp++] = (byte) (bits >> 16);
+                dst[dp++] = (byte) (bits >> 8);
+                dst[dp++] = (byte) bits;
+                shiftto = 18;
+                bits = 0;
+            }
+        }
+        if (shiftto == 6) {
+            dst[dp++] = (byte) (bits >> 16);
+        } else if (shiftto == 0) {
+            dst[dp++] = (byte) (bits >> 16);
+            dst[dp++] = (byte) (bits >> 8);
+        } else if (shiftto == 12) {
+            out.error = "Last unit does not have enough valid bits";
+            return;
+        }
+        if (sp < end) {
+            out.error = "Input byte array has incorrect ending byte at " + (sp - start);
+            return;
+        }
+        out.length = dp;
+    }
+
+    private static int[] invalidPositions(byte[] chars, int offset, int length) {
+        int[] positions = new int[Math.min(length, MAX_REPORTED_INVALID)];
+        int count = 0;
+        for (int i = 0; i < length && count < positions.length; i++) {
+            if (COMBINED_TABLE[chars[offset + i] & 0xff] == INVALID) {
+                positions[count++] = i;
+            }
+        }
+        return Arrays.copyOf(positions, count);
+    }
+
+    private static byte[] table(String lastTwo) {
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789" + lastTwo;
+        byte[] table = new byte[256];
+        Arrays.fill(table, INVALID);
+        for (int i = 0; i < alphabet.length(); i++) {
+            table[alphabet.charAt(i)] = (byte) i;
+        }
+        table['='] = PADDING;
+        return table;
+    }
+
+    private static byte[] combinedTable() {
+        byte[] table = table("+/");
+        table['-'] = 62;
+        table['_'] = 63;
+        return table;
+    }
+
+    private static final class Decoding {
+        private int length;
+        private String error;
+        private boolean sawStandard;
+        private boolean sawUrlSafe;
+    }
+
+    private static final class Buffers {
+        private byte[] chars = new byte[1024];
+        private byte[] bytes = new byte[768];
+
+        byte[] chars(int size) {
+            if (size <= chars.length) {
+                return chars;
+            }
+            byte[] grown = new byte[size];
+            if (size <= MAX_RETAINED_BUFFER) {
+                chars = grown;
+            }
+            return grown;
+        }
+
+        byte[] bytes(int size) {
+            if (size <= bytes.length) {
+                return bytes;
+            }
+            byte[] grown = new byte[size];
+            if (size <= MAX_RETAINED_BUFFER) {
+                bytes = grown;
+            }
+            return grown;
+        }
+    }
+
+    /**
+     * Outcome of a decode. On success the decoded bytes are a view of a reused buffer.
+     */
+    public static final class Result {
+
+        private final byte[] buffer;
+        private final int length;
+        private final int cleanedLength;
+        private final Alphabet alphabet;
+        private final boolean ellipsisRemoved;
+        private final boolean quotesRemoved;
+        private final int paddingAdded;
+        private final String standardError;
+        private final String urlSafeError;
+        private final int[] invalidPositions;
+
+        private Result(byte[] buffer, int length, int cleanedLength, Alphabet alphabet, boolean ellipsisRemoved,
+                       boolean quotesRemoved, int paddingAdded, String standardError, String urlSafeError,
+                       int[] invalidPositions) {
+            this.buffer = buffer;
+            this.length = length;
+            this.cleanedLength = cleanedLength;
+            this.alphabet = alphabet;
+            this.ellipsisRemoved = ellipsisRemoved;
+            this.quotesRemoved = quotesRemoved;
+            this.paddingAdded = paddingAdded;
+            this.standardError = standardError;
+            this.urlSafeError = urlSafeError;
+            this.invalidPositions = invalidPositions;
+        }
+
+        public boolean isSuccess() {
+            return buffer != null;
+        }
+
+        /** The reused buffer holding the decoded bytes in {@code [0, length())}; null on failure. */
+        public byte[] buffer() {
+            return buffer;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public byte[] toByteArray() {
+            return buffer == null ? null : Arrays.copyOf(buffer, length);
+        }
+
+        /** The decoded bytes as UTF-8 text; null on failure. */
+        @Override
+        public String toString() {
+            return buffer == null ? null : new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /** Number of Base64 characters left after cleaning, including any padding added. */
+        public int cleanedLength() {
+            return cleanedLength;
+        }
+
+        /** The alphabet the input was decoded with; null on failure. */
+        public Alphabet alphabet() {
+            return alphabet;
+        }
+
+        public boolean ellipsisRemoved() {
+            return ellipsisRemoved;
+        }
+
+        public boolean quotesRemoved() {
+            return quotesRemoved;
+        }
+
+        public int paddingAdded() {
+            return paddingAdded;
+        }
+
+        /** The message the standard JDK decoder would have thrown; null on success. */
+        public String standardError() {
+            return standardError;
+        }
+
+        /** The message the URL-safe JDK decoder would have thrown; null on success. */
+        public String urlSafeError() {
+            return urlSafeError;
+        }
+
+        /** Positions (in the cleaned input) of characters outside both alphabets, at most 32. */
+        public int[] invalidPositions() {
+            return invalidPositions;
+        }
+    }
+}
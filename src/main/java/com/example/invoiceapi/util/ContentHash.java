@@ -0,0 +1,42 @@
+package com.example.invoiceapi.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 fingerprints of decoded invoice XML, used to recognise resubmissions of the same document.
+ */
+public final class ContentHash {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(ContentHash::newDigest);
+
+    private ContentHash() {
+    }
+
+    /**
+     * @return The lowercase hex SHA-256 of {@code bytes[offset, offset + length)}
+     */
+    public static String sha256(byte[] bytes, int offset, int length) {
+        MessageDigest digest = SHA_256.get();
+        digest.update(bytes, offset, length);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * A fresh digest for hashing a stream while it is read, for example through a
+     * {@link java.security.DigestInputStream}.
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Her JRE SHA-256 desteklemek zorunda
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public static String toHex(byte[] digest) {
+        return HexFormat.of().formatHex(digest);
+    }
+}
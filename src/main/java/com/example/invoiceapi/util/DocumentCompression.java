@@ -0,0 +1,143 @@
+package com.example.invoiceapi.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Deflate (zlib) compression of the original invoice XML kept in {@code invoice_documents}.
+ * <p>
+ * {@link Deflater}s hold native zlib memory that is only released by {@link Deflater#end()}, so
+ * {@link #deflate} reuses them from a small shared pool rather than per thread: with virtual
+ * threads every request runs on a new thread and a thread-local would keep nothing.
+ */
+public final class DocumentCompression {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final ArrayBlockingQueue<Deflater> DEFLATERS =
+            new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors() * 2);
+
+    private DocumentCompression() {
+    }
+
+    /**
+     * @return The zlib stream of {@code bytes[offset, offset + length)}
+     */
+    public static byte[] deflate(byte[] bytes, int offset, int length) {
+        Deflater deflater = DEFLATERS.poll();
+        if (deflater == null) {
+            deflater = new Deflater();
+        }
+        try {
+            deflater.setInput(bytes, offset, length);
+            deflater.finish();
+            // XML tipik olarak 5-10 kat küçülür
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length / 4 + 64);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.reset();
+            // Havuz doluysa yerel bellek hemen bırakılır, GC beklenmez
+            if (!DEFLATERS.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Decompresses into the output stream chunk by chunk; the XML is never held in memory whole.
+     */
+    public static void inflate(byte[] compressed, OutputStream out) throws IOException {
+        try (InputStream in = inflating(compressed)) {
+            in.transferTo(out);
+        }
+    }
+
+    /**
+     * @return A stream of the uncompressed bytes, inflated as they are read
+     */
+    public static InputStream inflating(byte[] compressed) {
+        return new InflaterInputStream(new ByteArrayInputStream(compressed));
+    }
+
+    /**
+     * Compresses every byte read through it, so a streamed document can be stored without
+     * keeping an uncompressed copy.
+     */
+    public static final class Capture extends FilterInputStream {
+
+        private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        private final Deflater engine = new Deflater();
+        private final DeflaterOutputStream deflater = new DeflaterOutputStream(compressed, engine, BUFFER_SIZE);
+        private long size;
+
+        public Capture(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                deflater.write(b);
+                size++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                deflater.write(b, off, n);
+                size += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Atlanan byte'lar da saklanmalı; okuyup sıkıştırıyoruz
+            byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+            long skipped = 0;
+            int read;
+            while (skipped < n && (read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped))) > 0) {
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * @return The number of uncompressed bytes read so far
+         */
+        public long size() {
+            return size;
+        }
+
+        /**
+         * Finishes compression; call once the stream has been read to the end.
+         *
+         * @return The zlib stream of everything read
+         */
+        public byte[] toByteArray() throws IOException {
+            deflater.finish();
+            engine.end();
+            return compressed.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.invoiceapi.util;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Bounded read-through cache whose entries expire a fixed time after they were written.
+ * <p>
+ * Misses are cached too (negative caching), with their own, usually shorter, time to live; a
+ * negative time to live of zero turns that off. Loads are not coalesced: threads that miss the
+ * same key at once each call the loader, and the first result stays. A value written with
+ * {@link #put} while a load is running is not overwritten by that load's result, so a
+ * concurrent write is never hidden behind a stale miss.
+ * <p>
+ * At most {@code maxSize} keys are held; beyond that the oldest keys are evicted first. Expired
+ * entries are replaced when they are read, or evicted in turn.
+ */
+public final class ExpiringCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Queue<K> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ExpiringCache(int maxSize, Duration ttl, Duration negativeTtl) {
+        this(maxSize, ttl, negativeTtl, System::nanoTime);
+    }
+
+    ExpiringCache(int maxSize, Duration ttl, Duration negativeTtl, LongSupplier clock) {
+        if (maxSize < 1 || ttl.isNegative() || ttl.isZero() || negativeTtl.isNegative()) {
+            throw new IllegalArgumentException("Size and time to live must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the cached value of the key, or loads, caches and returns it.
+     *
+     * @param loader Reads the value from the source of truth; empty if there is none
+     */
+    public Optional<V> get(K key, Function<K, Optional<V>> loader) {
+        Entry<V> cached = entries.get(key);
+        if (cached != null && !cached.isExpired(clock.getAsLong())) {
+            (cached.value() == null ? negativeHits : hits).increment();
+            return Optional.ofNullable(cached.value());
+        }
+        misses.increment();
+        Optional<V> loaded = loader.apply(key);
+        if (loaded.isPresent() || negativeTtlNanos > 0) {
+            Entry<V> entry = new Entry<>(loaded.orElse(null),
+                    clock.getAsLong() + (loaded.isPresent() ? ttlNanos : negativeTtlNanos));
+            // Yükleme sürerken put ile yazılan değer ezilmez
+            store(key, old -> old == cached ? entry : old);
+        }
+        return loaded;
+    }
+
+    /**
+     * Caches a value that was just written to the source of truth, replacing whatever the key held.
+     */
+    public void put(K key, V value) {
+        Entry<V> entry = new Entry<>(value, clock.getAsLong() + ttlNanos);
+        store(key, old -> entry);
+    }
+
+    /**
+     * Removes the cached values that match, for values that are no longer in the source of
+     * truth. Cached misses are kept.
+     */
+    public void removeValues(Predicate<V> filter) {
+        if (entries.values().removeIf(entry -> entry.value() != null && filter.test(entry.value()))) {
+            insertionOrder.removeIf(key -> !entries.containsKey(key));
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), negativeHits.sum(), misses.sum());
+    }
+
+    private void store(K key, Function<Entry<V>, Entry<V>> update) {
+        boolean[] added = new boolean[1];
+        entries.compute(key, (k, old) -> {
+            Entry<V> updated = update.apply(old);
+            added[0] = old == null && updated != null;
+            return updated;
+        });
+        if (added[0]) {
+            insertionOrder.add(key);
+            evict();
+        }
+    }
+
+    private void evict() {
+        // En eski anahtarlar kuyruğun başında
+        while (entries.size() > maxSize) {
+            K oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            entries.remove(oldest);
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+
+    /**
+     * Lookup counters since the cache was created.
+     *
+     * @param hits         Lookups answered with a cached value
+     * @param negativeHits Lookups answered with a cached miss
+     * @param misses       Lookups that went to the loader
+     */
+    public record Stats(long hits, long negativeHits, long misses) {
+
+        /**
+         * @return The share of lookups answered from the cache, or 0 before the first lookup
+         */
+        public double hitRatio() {
+            long total = hits + negativeHits + misses;
+            return total == 0 ? 0 : (double) (hits + negativeHits) / total;
+        }
+    }
+}
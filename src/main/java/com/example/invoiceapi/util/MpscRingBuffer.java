@@ -0,0 +1,83 @@
+package com.example.invoiceapi.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded ring buffer for many producers and a single consumer that never blocks either side.
+ * <p>
+ * A producer claims a sequence with one compare-and-set on the tail and publishes its element
+ * with an ordered store into the slot; when the buffer is full, {@link #offer(Object)} returns
+ * false instead of waiting. The consumer reads slots in sequence order, so an element whose
+ * producer has claimed but not yet published its slot holds back the ones behind it until it
+ * appears.
+ */
+public final class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // Yalnızca tüketici yazar; üreticiler doluluk kontrolü için okur
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity Rounded up to a power of two
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds the element unless the buffer is full. Safe to call from any thread.
+     *
+     * @return false if the buffer was full and the element was not added
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head.get() > mask) {
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        slots.lazySet((int) sequence & mask, element);
+        return true;
+    }
+
+    /**
+     * Removes the oldest published element. Must only be called from the consumer thread.
+     *
+     * @return The element, or null if there is none to take yet
+     */
+    public E poll() {
+        long sequence = head.get();
+        int index = (int) sequence & mask;
+        E element = slots.get(index);
+        if (element == null) {
+            return null;
+        }
+        // Önce yuva boşaltılır, sonra baş ilerler: üretici yuvayı ancak boşken görür
+        slots.lazySet(index, null);
+        head.lazySet(sequence + 1);
+        return element;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return The number of claimed sequences not yet consumed, including unpublished ones
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.invoiceapi.util;
+
+/**
+ * Cuts bounded excerpts out of submitted payloads for error responses, so echoing a
+ * multi-MB document back costs no more than echoing a small one.
+ */
+public final class TextExcerpt {
+
+    private TextExcerpt() {
+    }
+
+    /**
+     * @return The first {@code limit} characters of the text, or the whole text if it is shorter
+     */
+    public static String head(String text, int limit) {
+        if (text.length() <= limit) {
+            return text;
+        }
+        return text.substring(0, adjust(text, limit));
+    }
+
+    /**
+     * Returns at most {@code limit} characters of the text, centred on the given position.
+     *
+     * @param line   1-based line of the position, or a value below 1 to take the head of the text
+     * @param column 1-based column of the position
+     */
+    public static String around(String text, int line, int column, int limit) {
+        if (text.length() <= limit) {
+            return text;
+        }
+        if (line < 1) {
+            return head(text, limit);
+        }
+        int center = offsetOf(text, line, column);
+        int start = Math.max(0, Math.min(center - limit / 2, text.length() - limit));
+        return text.substring(adjust(text, start), adjust(text, start + limit));
+    }
+
+    private static int offsetOf(String text, int line, int column) {
+        int offset = 0;
+        for (int current = 1; current < line; current++) {
+            int newline = text.indexOf('\n', offset);
+            if (newline < 0) {
+                return text.length();
+            }
+            offset = newline + 1;
+        }
+        return Math.min(text.length(), offset + Math.max(column - 1, 0));
+    }
+
+    /**
+     * Moves a cut that would split a surrogate pair back by one character.
+     */
+    private static int adjust(String text, int index) {
+        if (index > 0 && index < text.length() && Character.isLowSurrogate(text.charAt(index))) {
+            return index - 1;
+        }
+        return index;
+    }
+}
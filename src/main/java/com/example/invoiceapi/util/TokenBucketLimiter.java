@@ -0,0 +1,103 @@
+package com.example.invoiceapi.util;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets keyed by a string (a client or a NIP), refilled at a fixed rate up to a burst size.
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding the time at which it will be full again
+ * (the generic cell rate algorithm, equivalent to a token bucket), so taking a token is one
+ * compare-and-set and no lock is held on the request path. The buckets live in a
+ * {@link ConcurrentHashMap}, whose updates are striped per bin.
+ * <p>
+ * A bucket that has refilled completely behaves exactly like a missing one, so such buckets are
+ * dropped every {@code evictionInterval} and whenever the map reaches {@code maxKeys}. If it is
+ * still full after that, new keys share one overflow bucket until room is made, which keeps
+ * memory bounded even when every request carries a different key.
+ */
+public final class TokenBucketLimiter {
+
+    private final long emissionNanos;
+    private final long toleranceNanos;
+    private final int maxKeys;
+    private final long evictionIntervalNanos;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflow;
+    private final AtomicLong nextEviction;
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public TokenBucketLimiter(double ratePerSecond, int burst, int maxKeys, Duration evictionInterval) {
+        this(ratePerSecond, burst, maxKeys, evictionInterval, System::nanoTime);
+    }
+
+    TokenBucketLimiter(double ratePerSecond, int burst, int maxKeys, Duration evictionInterval, LongSupplier clock) {
+        if (ratePerSecond <= 0 || burst < 1 || maxKeys < 1) {
+            throw new IllegalArgumentException("Rate, burst and key limit must be positive");
+        }
+        this.emissionNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.toleranceNanos = emissionNanos * (burst - 1);
+        this.maxKeys = maxKeys;
+        this.evictionIntervalNanos = evictionInterval.toNanos();
+        this.clock = clock;
+        long now = clock.getAsLong();
+        this.overflow = new AtomicLong(now);
+        this.nextEviction = new AtomicLong(now + evictionIntervalNanos);
+    }
+
+    /**
+     * Takes a token from the key's bucket if one is available.
+     *
+     * @return 0 if a token was taken, otherwise the nanoseconds until the next one is available
+     */
+    public long tryAcquire(String key) {
+        long now = clock.getAsLong();
+        if (now - nextEviction.get() >= 0) {
+            evictIdle(now);
+        }
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys) {
+                evictIdle(now);
+            }
+            bucket = buckets.size() < maxKeys ? buckets.computeIfAbsent(key, k -> new AtomicLong(now)) : overflow;
+        }
+        while (true) {
+            long full = bucket.get();
+            // Dolu kova geçmişte bir zaman tutar; token sayısı (now - full) farkından çıkar
+            long start = Math.max(full, now);
+            long wait = start - now - toleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(full, start + emissionNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return The number of buckets currently held, the overflow bucket excluded
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    private void evictIdle(long now) {
+        // Aynı anda tek bir iş parçacığı tarar; diğerleri beklemeden devam eder
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            nextEviction.set(now + evictionIntervalNanos);
+            // Silinirken token alınan bir kova en fazla bir burst kadar fazladan izin verir
+            buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
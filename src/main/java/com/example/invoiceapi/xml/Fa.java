@@ -3,7 +3,11 @@ package com.example.invoiceapi.xml;
 import jakarta.xml.bind.annotation.*;
 import lombok.Data;
 
+// FaWiersz bilinçli olarak alan değil: tüm Faktura unmarshal edildiğinde satırlar atlanır, listede birikmez.
+// XmlSeeAlso, satırların aynı JAXB bağlamından tek tek unmarshal edilebilmesi için. P_13_x/P_14_x/P_15 toplamları
+// da alan değil: InvoiceLineReader onları satırlarla birlikte okur, InvoiceTotals denetler.
 @XmlAccessorType(XmlAccessType.FIELD)
+@XmlSeeAlso(FaWiersz.class)
 @Data
 public class Fa {
 
@@ -0,0 +1,43 @@
+package com.example.invoiceapi.xml;
+
+import jakarta.xml.bind.annotation.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * One line item of an invoice. Never bound as part of {@link Fa}: lines are unmarshalled one
+ * element at a time by {@code InvoiceLineReader}, so an invoice with any number of lines is
+ * never held in memory whole.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@Data
+public class FaWiersz {
+
+    @XmlElement(name = "NrWierszaFa", namespace = "http://crd.gov.pl/wzor/2023/06/29/12648/")
+    private Integer nrWierszaFa;
+
+    // Mal ya da hizmetin adı
+    @XmlElement(name = "P_7", namespace = "http://crd.gov.pl/wzor/2023/06/29/12648/")
+    private String P7;
+
+    // Ölçü birimi
+    @XmlElement(name = "P_8A", namespace = "http://crd.gov.pl/wzor/2023/06/29/12648/")
+    private String P8A;
+
+    // Miktar
+    @XmlElement(name = "P_8B", namespace = "http://crd.gov.pl/wzor/2023/06/29/12648/")
+    private BigDecimal P8B;
+
+    // Birim net fiyat
+    @XmlElement(name = "P_9A", namespace = "http://crd.gov.pl/wzor/2023/06/29/12648/")
+    private BigDecimal P9A;
+
+    // Satırın net tutarı
+    @XmlElement(name = "P_11", namespace = "http://crd.gov.pl/wzor/2023/06/29/12648/")
+    private BigDecimal P11;
+
+    // KDV oranı: 23, 22, 8, 7, 5, 0 ya da zw (muaf)
+    @XmlElement(name = "P_12", namespace = "http://crd.gov.pl/wzor/2023/06/29/12648/")
+    private String P12;
+}
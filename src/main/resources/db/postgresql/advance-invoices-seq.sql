@@ -0,0 +1,14 @@
+-- invoices_seq'i mevcut en büyük fatura id'sinin ötesine taşır. id'leri identity sütunundan almış eski bir
+-- invoices tablosunda Hibernate (ddl-auto=update) diziyi 1'den başlatır ve kullanılmış id'leri yeniden dağıtır.
+-- Uygulama açılışta aynısını yapar (InvoiceSequenceUpgrade); elle:
+--
+--   psql -v ON_ERROR_STOP=1 -f advance-invoices-seq.sql
+--
+-- Değer allocationSize'a (50) yukarı yuvarlanır: sonraki nextval en az max(id) + 50 döner ve Hibernate'in
+-- ayırdığı value - 49 .. value aralığı kayıtlı id'lerin üstünde kalır. Dizi zaten ilerideyse geri alınmaz.
+
+CREATE SEQUENCE IF NOT EXISTS invoices_seq START WITH 1 INCREMENT BY 50;
+
+SELECT setval('invoices_seq', GREATEST(((max(id) + 49) / 50) * 50, (SELECT last_value FROM invoices_seq)))
+FROM invoices
+HAVING max(id) IS NOT NULL;
@@ -0,0 +1,68 @@
+-- Mevcut (bölümlenmemiş) invoices tablosunu aylara bölünmüş şemaya taşır. Uygulama durdurulmuşken,
+-- bu dizinden tek bir işlem içinde çalıştırılır:
+--
+--   psql -v ON_ERROR_STOP=1 -1 -f migrate-to-partitioned.sql
+--
+-- P_1 metin olarak saklanmışsa date'e çevrilir; tarih olmayan bir değer tüm taşımayı geri alır.
+-- Böyle satırlar önceden şöyle bulunabilir:
+--   SELECT id, p1 FROM invoices WHERE p1 !~ '^\d{4}-\d{2}-\d{2}';
+
+-- Eski tablonun kısıt ve indeks adları yeni tabloda kullanılacak (indeksi yeniden adlandırmak kısıtı da adlandırır)
+ALTER TABLE invoices RENAME TO invoices_old;
+ALTER INDEX IF EXISTS invoices_pkey RENAME TO invoices_old_pkey;
+ALTER INDEX IF EXISTS uk_invoices_content_hash RENAME TO uk_invoices_old_content_hash;
+ALTER INDEX IF EXISTS uk_invoices_nip_p2 RENAME TO uk_invoices_old_nip_p2;
+ALTER INDEX IF EXISTS idx_invoices_nip_id RENAME TO idx_invoices_old_nip_id;
+ALTER INDEX IF EXISTS idx_invoices_p1_id RENAME TO idx_invoices_old_p1_id;
+ALTER INDEX IF EXISTS idx_invoices_p2_id RENAME TO idx_invoices_old_p2_id;
+-- Satır sütunları ve invoice_lines yalnızca Hibernate'in oluşturduğu yeni şemalarda vardır
+ALTER TABLE invoices_old ADD COLUMN IF NOT EXISTS line_count integer;
+ALTER TABLE invoices_old ADD COLUMN IF NOT EXISTS net_total numeric(18, 2);
+ALTER TABLE invoices_old ADD COLUMN IF NOT EXISTS vat_total numeric(18, 2);
+ALTER TABLE invoices_old ADD COLUMN IF NOT EXISTS gross_total numeric(18, 2);
+ALTER TABLE IF EXISTS invoice_lines RENAME TO invoice_lines_old;
+ALTER INDEX IF EXISTS invoice_lines_pkey RENAME TO invoice_lines_old_pkey;
+
+\ir schema-partitioned.sql
+
+-- Mevcut verinin ilk ayından bu aya kadar her ay için bir bölüm; sonraki aylar uygulamaya kalır
+DO $$
+DECLARE
+    m          date;
+    last_month date;
+BEGIN
+    SELECT date_trunc('month', min(p1::date)), date_trunc('month', greatest(max(p1::date), current_date))
+    INTO m, last_month
+    FROM invoices_old;
+    WHILE m <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF invoices FOR VALUES FROM (%L) TO (%L)',
+                       'invoices_' || to_char(m, 'YYYY_MM'), m, (m + interval '1 month')::date);
+        EXECUTE format('CREATE TABLE %I PARTITION OF invoice_lines FOR VALUES FROM (%L) TO (%L)',
+                       'invoice_lines_' || to_char(m, 'YYYY_MM'), m, (m + interval '1 month')::date);
+        m := (m + interval '1 month')::date;
+    END LOOP;
+END
+$$;
+
+-- invoices_insert_key tetikleyicisi invoice_keys'i de doldurur
+INSERT INTO invoices (id, nip, p1, p2, content_hash, line_count, net_total, vat_total, gross_total)
+SELECT id, nip, p1::date, p2, content_hash, line_count, net_total, vat_total, gross_total FROM invoices_old;
+
+-- Taşınan id'ler yeni dizinin önünde; dizi en büyük id'nin ötesine alınır
+\ir advance-invoices-seq.sql
+
+DO $$
+BEGIN
+    IF to_regclass('invoice_lines_old') IS NOT NULL THEN
+        INSERT INTO invoice_lines (invoice_id, line_no, p1, name, unit, quantity, unit_net_price, net_value, vat_rate)
+        SELECT invoice_id, line_no, p1, name, unit, quantity, unit_net_price, net_value, vat_rate FROM invoice_lines_old;
+        DROP TABLE invoice_lines_old;
+    END IF;
+END
+$$;
+
+DROP TABLE invoices_old;
+
+ANALYZE invoices;
+ANALYZE invoice_keys;
+ANALYZE invoice_lines;
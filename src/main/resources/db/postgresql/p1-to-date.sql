@@ -0,0 +1,5 @@
+-- Bölümlenmemiş bir veritabanında, P_1'i metin olarak saklayan invoices tablosunu date sütununa çevirir.
+-- Hibernate ddl-auto=update sütun tipini değiştirmez; uygulamanın yeni sürümünden önce bir kez çalıştırılır.
+-- Tarih olmayan bir değer varsa komut hiçbir satırı değiştirmeden hata verir.
+
+ALTER TABLE invoices ALTER COLUMN p1 TYPE date USING p1::date;
@@ -0,0 +1,90 @@
+-- Aylara bölünmüş fatura şeması (PostgreSQL 11+). Boş bir veritabanında çalıştırılır; mevcut bir
+-- invoices tablosu için migrate-to-partitioned.sql kullanılır. Tekrar çalıştırmak zararsızdır.
+--
+-- invoices, P_1 (düzenleme tarihi) üzerinde aylık aralıklara bölünür: invoices_YYYY_MM bölümleri
+-- uygulama tarafından önceden oluşturulur (invoice.partitioning.*), aralığı olmayan tarihler
+-- invoices_default bölümüne düşer. Bu şemayla spring.jpa.hibernate.ddl-auto=validate ya da none kullanılmalı.
+--
+-- PostgreSQL bölümlenmiş tablodaki benzersiz anahtarların bölüm anahtarını içermesini ister:
+--  * (content_hash, p1): aynı içerik aynı P_1'i taşıdığından content_hash benzersizliğiyle aynıdır.
+--  * (nip, p2): bölümlenmemiş invoice_keys tablosunda zorlanır. invoices'a eklenen her satır (JPA, COPY ve
+--    ara tablo yolu dahil) tetikleyiciyle aynı işlemde buraya da yazılır; farklı tarihli aynı NIP ve numara
+--    ikinci eklemeyi benzersiz kısıt hatasıyla geri alır. (nip, p2, p1) anahtarı NIP/numara sorgularına indeks olarak kalır.
+--    Bir ay silinirken o ayın anahtarları da silinir (InvoicePartitionMaintenance).
+--
+-- invoice_lines (fatura satırları) aynı aylara bölünür: bir ayın faturaları ve satırları birlikte silinir.
+-- Faturaya yabancı anahtar yoktur; satırlar faturayla aynı işlemde yazılır.
+
+CREATE SEQUENCE IF NOT EXISTS invoices_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS invoice_documents (
+    content_hash varchar(64) NOT NULL,
+    content      bytea       NOT NULL,
+    size         bigint      NOT NULL,
+    CONSTRAINT invoice_documents_pkey PRIMARY KEY (content_hash)
+);
+
+CREATE TABLE IF NOT EXISTS invoices (
+    id           bigint       NOT NULL,
+    nip          varchar(255) NOT NULL,
+    p1           date         NOT NULL,
+    p2           varchar(255) NOT NULL,
+    content_hash varchar(64),
+    line_count   integer,
+    net_total    numeric(18, 2),
+    vat_total    numeric(18, 2),
+    gross_total  numeric(18, 2),
+    CONSTRAINT invoices_pkey PRIMARY KEY (id, p1),
+    CONSTRAINT uk_invoices_content_hash UNIQUE (content_hash, p1),
+    CONSTRAINT uk_invoices_nip_p2 UNIQUE (nip, p2, p1)
+) PARTITION BY RANGE (p1);
+
+-- Satır sütunlarından önceki bir sürümle oluşturulmuş tablolar için
+ALTER TABLE invoices ADD COLUMN IF NOT EXISTS line_count integer;
+ALTER TABLE invoices ADD COLUMN IF NOT EXISTS net_total numeric(18, 2);
+ALTER TABLE invoices ADD COLUMN IF NOT EXISTS vat_total numeric(18, 2);
+ALTER TABLE invoices ADD COLUMN IF NOT EXISTS gross_total numeric(18, 2);
+
+-- Bölümlenmiş indeksler: her bölümde kendiliğinden oluşturulur
+CREATE INDEX IF NOT EXISTS idx_invoices_nip_id ON invoices (nip, id);
+CREATE INDEX IF NOT EXISTS idx_invoices_p1_id ON invoices (p1, id);
+CREATE INDEX IF NOT EXISTS idx_invoices_p2_id ON invoices (p2, id);
+
+CREATE TABLE IF NOT EXISTS invoices_default PARTITION OF invoices DEFAULT;
+
+CREATE TABLE IF NOT EXISTS invoice_keys (
+    nip varchar(255) NOT NULL,
+    p2  varchar(255) NOT NULL,
+    p1  date         NOT NULL,
+    CONSTRAINT invoice_keys_pkey PRIMARY KEY (nip, p2)
+);
+
+CREATE OR REPLACE FUNCTION invoices_insert_key() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    INSERT INTO invoice_keys (nip, p2, p1) VALUES (NEW.nip, NEW.p2, NEW.p1);
+    RETURN NULL;
+END
+$$;
+
+-- Bölümlenmiş tablodaki satır tetikleyicisi her bölüme (sonradan bağlananlar dahil) kopyalanır
+DROP TRIGGER IF EXISTS invoices_insert_key ON invoices;
+CREATE TRIGGER invoices_insert_key AFTER INSERT ON invoices FOR EACH ROW EXECUTE FUNCTION invoices_insert_key();
+
+-- invoice_keys'ten önceki bir sürümle oluşturulmuş şemalar için mevcut faturaların anahtarları; o sürümün
+-- yazabildiği farklı tarihli kopyalardan yalnızca ilki anahtar alır
+INSERT INTO invoice_keys (nip, p2, p1) SELECT nip, p2, p1 FROM invoices ON CONFLICT DO NOTHING;
+
+CREATE TABLE IF NOT EXISTS invoice_lines (
+    invoice_id     bigint         NOT NULL,
+    line_no        integer        NOT NULL,
+    p1             date           NOT NULL,
+    name           varchar(512)   NOT NULL,
+    unit           varchar(256),
+    quantity       numeric(22, 8),
+    unit_net_price numeric(22, 8),
+    net_value      numeric(18, 2) NOT NULL,
+    vat_rate       varchar(4)     NOT NULL,
+    CONSTRAINT invoice_lines_pkey PRIMARY KEY (invoice_id, line_no, p1)
+) PARTITION BY RANGE (p1);
+
+CREATE TABLE IF NOT EXISTS invoice_lines_default PARTITION OF invoice_lines DEFAULT;
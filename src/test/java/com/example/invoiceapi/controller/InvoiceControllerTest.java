@@ -1,18 +1,33 @@
 package com.example.invoiceapi.controller;
 
+import com.example.invoiceapi.dto.InvoiceFilter;
 import com.example.invoiceapi.dto.InvoiceRequest;
+import com.example.invoiceapi.dto.InvoiceResult;
+import com.example.invoiceapi.exception.InvoiceConflictException;
 import com.example.invoiceapi.exception.XmlProcessingException;
+import com.example.invoiceapi.service.InvoiceArchiveService;
+import com.example.invoiceapi.service.InvoiceBatchService;
+import com.example.invoiceapi.service.InvoiceExportService;
+import com.example.invoiceapi.service.InvoiceJobService;
+import com.example.invoiceapi.service.InvoiceQueryService;
 import com.example.invoiceapi.service.InvoiceService;
+import com.example.invoiceapi.util.Base64Helper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 class InvoiceControllerTest {
@@ -20,12 +35,29 @@ class InvoiceControllerTest {
     @Mock
     private InvoiceService invoiceService;
 
-    @InjectMocks
+    @Mock
+    private InvoiceBatchService invoiceBatchService;
+
+    @Mock
+    private InvoiceJobService invoiceJobService;
+
+    @Mock
+    private InvoiceQueryService invoiceQueryService;
+
+    @Mock
+    private InvoiceExportService invoiceExportService;
+
+    @Mock
+    private InvoiceArchiveService invoiceArchiveService;
+
     private InvoiceController invoiceController;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        // Hata mesajı sınırı ve dışa aktarma zaman aşımı @Value ile gelir; mock'lanamadıkları için burada verilir
+        invoiceController = new InvoiceController(invoiceService, invoiceBatchService, invoiceJobService,
+                invoiceQueryService, invoiceExportService, invoiceArchiveService, 1024, 60_000);
     }
 
     @Test
@@ -34,6 +66,7 @@ class InvoiceControllerTest {
         InvoiceRequest request = new InvoiceRequest();
         String base64xml = "PD94bWwgdmVyc2lvbj0iMS4wIiBlbmNvZGluZz0iVVRGLTgiPz4KPEZha3R1cmEgeG1sbnM9Imh0dHA6Ly9jcmQuZ292LnBsL3d6b3IvMjAyMy8wNi8yOS8xMjY0OC8iPgogIDxQb2RtaW90MT4KICAgIDxEYW5lSWRlbnR5ZmlrYWN5am5lPgogICAgICA8TklQPjEyMzQ1Njc4OTA8L05JUD4KICAgIDwvRGFuZUlkZW50eWZpa2FjeWpuZT4KICA8L1BvZG1pb3QxPgogIDxGYT4KICAgIDxQXzE+MjAyMy0wOC0zMTwvUF8xPgogICAgPFBfMj5GSzIwMjMvMDgvMzE8L1BfMj4KICA8L0ZhPgo8L0Zha3R1cmE+";
         request.setBase64xml(base64xml);
+        when(invoiceService.processInvoice(base64xml)).thenReturn(InvoiceResult.created(1L));
 
         // Test et
         ResponseEntity<?> response = invoiceController.uploadInvoice(request);
@@ -43,6 +76,35 @@ class InvoiceControllerTest {
         verify(invoiceService, times(1)).processInvoice(base64xml);
     }
 
+    @Test
+    void uploadInvoice_WithResubmittedInvoice_ReturnsOkWithOriginalId() {
+        // Düzenle
+        InvoiceRequest request = new InvoiceRequest();
+        request.setBase64xml("resubmitted");
+        when(invoiceService.processInvoice("resubmitted")).thenReturn(InvoiceResult.duplicate(42L));
+
+        // Test et
+        ResponseEntity<?> response = invoiceController.uploadInvoice(request);
+
+        // Doğrula
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(42L, ((Map<?, ?>) response.getBody()).get("id"));
+    }
+
+    @Test
+    void uploadInvoice_WithConflictingInvoice_ReturnsConflict() {
+        // Düzenle
+        InvoiceRequest request = new InvoiceRequest();
+        request.setBase64xml("conflicting");
+        doThrow(new InvoiceConflictException("farklı içerik", 42L)).when(invoiceService).processInvoice("conflicting");
+
+        // Test et
+        ResponseEntity<?> response = invoiceController.uploadInvoice(request);
+
+        // Doğrula
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+    }
+
     @Test
     void uploadInvoice_WithEmptyRequest_ReturnsBadRequest() {
         // Düzenle
@@ -71,6 +133,31 @@ class InvoiceControllerTest {
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     }
 
+    @Test
+    void uploadInvoice_WithLargeInvalidXml_EchoesBoundedExcerptAroundError() {
+        // Düzenle
+        String xml = "<Faktura>\n" + "<!-- dolgu -->\n".repeat(100_000) + "<Hata/>\n" + "<!-- dolgu -->\n".repeat(100_000) + "</Faktura>";
+        String base64xml = Base64Helper.encode(xml);
+        InvoiceRequest request = new InvoiceRequest();
+        request.setBase64xml(base64xml);
+        doThrow(new XmlProcessingException("XML doğrulama hatası").withDecodedXml(xml).withLocation(100_002, 3))
+                .when(invoiceService).processInvoice(base64xml);
+
+        // Test et
+        ResponseEntity<?> response = invoiceController.uploadInvoice(request);
+
+        // Doğrula
+        Map<?, ?> body = (Map<?, ?>) response.getBody();
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        String echoedXml = (String) body.get("gönderilen_xml");
+        assertTrue(echoedXml.length() <= 1024);
+        assertTrue(echoedXml.contains("<Hata/>"));
+        assertEquals(xml.length(), body.get("gönderilen_xml_uzunluğu"));
+        assertEquals(1024, ((String) body.get("gönderilen_veri")).length());
+        assertEquals(100_002, body.get("hata_satırı"));
+        assertFalse(body.containsKey("decode_hatası"));
+    }
+
     @Test
     void uploadInvoice_WithGenericException_ReturnsInternalServerError() {
         // Düzenle
@@ -85,4 +172,26 @@ class InvoiceControllerTest {
         // Doğrula
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
     }
+
+    @Test
+    void exportInvoices_WritesToTheResponseWithItsOwnTimeout() throws Exception {
+        // Düzenle
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        when(invoiceExportService.export(any(), eq(InvoiceExportService.Format.CSV), eq(true), any())).thenAnswer(invocation -> {
+            invocation.getArgument(3, OutputStream.class).write("id,nip,p1,p2\r\n".getBytes(StandardCharsets.UTF_8));
+            return 0L;
+        });
+
+        // Test et
+        WebAsyncTask<Void> task = invoiceController.exportInvoices(InvoiceExportService.Format.CSV, true,
+                " ", null, null, null, response);
+        task.getCallable().call();
+
+        // Doğrula
+        assertEquals(60_000L, task.getTimeout());
+        assertEquals("application/gzip", response.getContentType());
+        assertEquals("attachment; filename=\"invoices.csv.gz\"", response.getHeader(HttpHeaders.CONTENT_DISPOSITION));
+        assertEquals("id,nip,p1,p2\r\n", response.getContentAsString());
+        verify(invoiceExportService).export(eq(new InvoiceFilter(null, null, null, null)), any(), anyBoolean(), any());
+    }
 }
@@ -0,0 +1,148 @@
+package com.example.invoiceapi.repository;
+
+import com.example.invoiceapi.model.InvoiceEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class InvoiceCopyLoaderTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PGConnection pgConnection;
+
+    @Mock
+    private CopyManager copyManager;
+
+    @Mock
+    private Savepoint savepoint;
+
+    private InvoiceCopyLoader loader;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.isWrapperFor(PGConnection.class)).thenReturn(true);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(connection.setSavepoint()).thenReturn(savepoint);
+        when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        loader = new InvoiceCopyLoader(dataSource, true);
+    }
+
+    @Test
+    void insert_WritesQuotedCsvRowsIntoInvoices() throws Exception {
+        // Düzenle
+        ByteArrayOutputStream rows = new ByteArrayOutputStream();
+        CopyIn copy = copyIn(rows, null);
+        when(copyManager.copyIn(InvoiceCopyLoader.COPY_INVOICES)).thenReturn(copy);
+        InvoiceEntity withLines = invoice(1L, "111", "FK \"A\", 1", "a".repeat(64));
+        withLines.setLineCount(2);
+        withLines.setNetTotal(new BigDecimal("1E+2"));
+        withLines.setVatTotal(new BigDecimal("23.00"));
+        withLines.setGrossTotal(new BigDecimal("123.00"));
+
+        // Test et
+        List<InvoiceEntity> skipped = loader.insert(List.of(withLines, invoice(2L, "222", "", null)));
+
+        // Doğrula
+        assertTrue(loader.isEnabled());
+        assertTrue(skipped.isEmpty());
+        assertEquals("1,\"111\",\"2024-01-02\",\"FK \"\"A\"\", 1\",\"" + "a".repeat(64) + "\",2,100,23.00,123.00\n"
+                        + "2,\"222\",\"2024-01-02\",\"\",,,,,\n",
+                rows.toString(StandardCharsets.UTF_8));
+        verify(connection).releaseSavepoint(savepoint);
+        verify(copyManager, never()).copyIn(InvoiceCopyLoader.COPY_STAGING);
+    }
+
+    @Test
+    void insert_WhenARowIsAlreadyStored_FallsBackToStagingTable() throws Exception {
+        // Düzenle
+        CopyIn direct = copyIn(new ByteArrayOutputStream(), new SQLException("duplicate key", "23505"));
+        when(copyManager.copyIn(InvoiceCopyLoader.COPY_INVOICES)).thenReturn(direct);
+        ByteArrayOutputStream staged = new ByteArrayOutputStream();
+        CopyIn staging = copyIn(staged, null);
+        when(copyManager.copyIn(InvoiceCopyLoader.COPY_STAGING)).thenReturn(staging);
+        Statement statement = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(statement);
+        PreparedStatement merge = mock(PreparedStatement.class);
+        ResultSet inserted = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(merge);
+        when(merge.executeQuery()).thenReturn(inserted);
+        when(inserted.next()).thenReturn(true, false);
+        when(inserted.getLong(1)).thenReturn(1L);
+        InvoiceEntity first = invoice(1L, "111", "FK/1", "a".repeat(64));
+        InvoiceEntity second = invoice(2L, "111", "FK/2", "b".repeat(64));
+
+        // Test et
+        List<InvoiceEntity> skipped = loader.insert(List.of(first, second));
+
+        // Doğrula
+        verify(connection).rollback(savepoint);
+        assertEquals(List.of(second), skipped);
+        assertNull(second.getId());
+        assertEquals(1L, first.getId());
+        assertEquals(2, staged.toString(StandardCharsets.UTF_8).lines().count());
+    }
+
+    @Test
+    void isEnabled_WithNonPostgresDatasource_ReturnsFalse() throws Exception {
+        // Düzenle
+        when(connection.isWrapperFor(PGConnection.class)).thenReturn(false);
+
+        // Test et & Doğrula
+        assertFalse(loader.isEnabled());
+        assertFalse(new InvoiceCopyLoader(dataSource, false).isEnabled());
+        verify(dataSource, times(1)).getConnection();
+    }
+
+    private static CopyIn copyIn(ByteArrayOutputStream sink, SQLException failure) throws SQLException {
+        CopyIn copy = mock(CopyIn.class);
+        doAnswer(invocation -> {
+            sink.write(invocation.<byte[]>getArgument(0), invocation.<Integer>getArgument(1), invocation.<Integer>getArgument(2));
+            return null;
+        }).when(copy).writeToCopy(any(byte[].class), anyInt(), anyInt());
+        if (failure != null) {
+            when(copy.endCopy()).thenThrow(failure);
+        }
+        return copy;
+    }
+
+    private static InvoiceEntity invoice(Long id, String nip, String p2, String contentHash) {
+        InvoiceEntity entity = new InvoiceEntity();
+        entity.setId(id);
+        entity.setNip(nip);
+        entity.setP1(LocalDate.of(2024, 1, 2));
+        entity.setP2(p2);
+        entity.setContentHash(contentHash);
+        return entity;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.invoiceapi.repository;
+
+import com.example.invoiceapi.config.PartitioningProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class InvoicePartitionMaintenanceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private PartitioningProperties properties;
+
+    private InvoicePartitionMaintenance maintenance;
+
+    private final List<String> partitions = new ArrayList<>();
+
+    private final List<String> linePartitions = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new PartitioningProperties();
+        properties.setEnabled(true);
+        properties.setCreateAhead(2);
+        maintenance = new InvoicePartitionMaintenance(properties, jdbcTemplate, transactionManager, eventPublisher, "validate");
+        when(jdbcTemplate.queryForObject(eq(InvoicePartitionMaintenance.IS_PARTITIONED), eq(Boolean.class), anyString()))
+                .thenReturn(true);
+        when(jdbcTemplate.queryForObject(InvoicePartitionMaintenance.LOCK, Boolean.class)).thenReturn(true);
+        when(jdbcTemplate.queryForList(InvoicePartitionMaintenance.PARTITIONS, String.class, "invoices"))
+                .thenAnswer(invocation -> List.copyOf(partitions));
+        when(jdbcTemplate.queryForList(InvoicePartitionMaintenance.PARTITIONS, String.class, "invoice_lines"))
+                .thenAnswer(invocation -> List.copyOf(linePartitions));
+    }
+
+    @Test
+    void maintain_CreatesMissingMonthsAheadAndMovesTheirRowsOutOfTheDefaultPartition() {
+        // Düzenle
+        partitions.addAll(List.of("invoices_default", "invoices_2024_01"));
+        linePartitions.addAll(List.of("invoice_lines_default", "invoice_lines_2024_01", "invoice_lines_2024_02"));
+
+        // Test et
+        maintenance.maintain(YearMonth.of(2024, 1));
+
+        // Doğrula
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).execute(InvoicePartitionMaintenance.createTable("invoices", "invoices_2024_02"));
+        inOrder.verify(jdbcTemplate).update(InvoicePartitionMaintenance.moveFromDefault("invoices", "invoices_2024_02"),
+                LocalDate.of(2024, 2, 1), LocalDate.of(2024, 3, 1));
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE invoices ATTACH PARTITION invoices_2024_02 "
+                + "FOR VALUES FROM ('2024-02-01') TO ('2024-03-01')");
+        inOrder.verify(jdbcTemplate).execute(InvoicePartitionMaintenance.createTable("invoices", "invoices_2024_03"));
+        inOrder.verify(jdbcTemplate).execute(InvoicePartitionMaintenance.createTable("invoice_lines", "invoice_lines_2024_03"));
+        verify(jdbcTemplate, never()).execute(InvoicePartitionMaintenance.createTable("invoices", "invoices_2024_01"));
+        verify(jdbcTemplate, never()).execute(InvoicePartitionMaintenance.createTable("invoice_lines", "invoice_lines_2024_02"));
+        verify(jdbcTemplate, never()).execute(startsWith("DROP"));
+    }
+
+    @Test
+    void maintain_DropsPartitionsPastRetentionWithTheirDocumentsAndKeys() {
+        // Düzenle
+        properties.setCreateAhead(0);
+        properties.setRetentionMonths(2);
+        partitions.addAll(List.of("invoices_default", "invoices_2023_10", "invoices_2023_11", "invoices_2023_12", "invoices_2024_01"));
+        linePartitions.addAll(List.of("invoice_lines_default", "invoice_lines_2023_10", "invoice_lines_2023_11",
+                "invoice_lines_2023_12", "invoice_lines_2024_01"));
+
+        // Test et
+        maintenance.maintain(YearMonth.of(2024, 1));
+
+        // Doğrula
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE invoice_lines DETACH PARTITION invoice_lines_2023_10");
+        inOrder.verify(jdbcTemplate).execute("DROP TABLE invoice_lines_2023_10");
+        inOrder.verify(jdbcTemplate).update(InvoicePartitionMaintenance.deleteDocuments("invoices_2023_10"));
+        inOrder.verify(jdbcTemplate).update(InvoicePartitionMaintenance.deleteKeys("invoices_2023_10"));
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE invoices DETACH PARTITION invoices_2023_10");
+        inOrder.verify(jdbcTemplate).execute("DROP TABLE invoices_2023_10");
+        verify(jdbcTemplate, times(2)).execute(startsWith("DROP"));
+        verify(jdbcTemplate, never()).execute(startsWith("CREATE"));
+        verify(eventPublisher).publishEvent(new InvoicesExpiredEvent(LocalDate.of(2023, 11, 1)));
+    }
+
+    @Test
+    void maintain_WhenLinesAreNotPartitioned_DeletesTheLinesOfDroppedMonthsRowByRow() {
+        // Düzenle
+        when(jdbcTemplate.queryForObject(InvoicePartitionMaintenance.IS_PARTITIONED, Boolean.class, "invoice_lines"))
+                .thenReturn(false);
+        properties.setCreateAhead(0);
+        properties.setRetentionMonths(1);
+        partitions.addAll(List.of("invoices_2023_11", "invoices_2024_01"));
+
+        // Test et
+        maintenance.maintain(YearMonth.of(2024, 1));
+
+        // Doğrula
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).update(InvoicePartitionMaintenance.deleteLines("invoices_2023_11"));
+        inOrder.verify(jdbcTemplate).execute("DROP TABLE invoices_2023_11");
+        verify(jdbcTemplate, never()).queryForList(InvoicePartitionMaintenance.PARTITIONS, String.class, "invoice_lines");
+        verify(jdbcTemplate, never()).execute(startsWith("CREATE"));
+    }
+
+    @Test
+    void maintain_WhenTableIsNotPartitionedOrDisabled_ChangesNothing() {
+        // Düzenle
+        when(jdbcTemplate.queryForObject(InvoicePartitionMaintenance.IS_PARTITIONED, Boolean.class, "invoices"))
+                .thenReturn(false);
+
+        // Test et
+        maintenance.maintain(YearMonth.of(2024, 1));
+        properties.setEnabled(false);
+        maintenance.maintain();
+
+        // Doğrula
+        verify(jdbcTemplate, times(1)).queryForObject(anyString(), eq(Boolean.class), any(Object[].class));
+        verify(jdbcTemplate, never()).execute(anyString());
+        verifyNoInteractions(transactionManager, eventPublisher);
+    }
+
+    @Test
+    void month_ParsesOnlyMonthlyPartitionNames() {
+        // Test et & Doğrula
+        assertEquals("invoices_2024_03", InvoicePartitionMaintenance.partitionName("invoices", YearMonth.of(2024, 3)));
+        assertEquals(YearMonth.of(2024, 3), InvoicePartitionMaintenance.month("invoices_2024_03"));
+        assertEquals(YearMonth.of(2024, 3), InvoicePartitionMaintenance.month("invoice_lines_2024_03"));
+        assertNull(InvoicePartitionMaintenance.month("invoices_default"));
+        assertNull(InvoicePartitionMaintenance.month("invoice_lines_default"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.invoiceapi.repository;
+
+import com.example.invoiceapi.model.InvoiceEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=INFO"
+})
+@Import(InvoiceSequenceUpgrade.class)
+class InvoiceSequenceUpgradeTest {
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private InvoiceSequenceUpgrade upgrade;
+
+    @Test
+    void advance_ThenSaveIntoTableWithIdentityEraRows_GetsIdsAboveTheStoredOnes() {
+        // Düzenle: dizi kullanılmadan önce identity sütunuyla yazılmış satırlar (id 1..120)
+        jdbcTemplate.batchUpdate("INSERT INTO invoices (id, nip, p1, p2) VALUES (?, '9781399259', DATE '2024-01-15', ?)",
+                IntStream.rangeClosed(1, 120).mapToObj(id -> new Object[]{id, "FK/" + id}).toList());
+
+        // Test et
+        upgrade.advance();
+        List<InvoiceEntity> saved = invoiceRepository.saveAllAndFlush(
+                IntStream.rangeClosed(1, 60).mapToObj(i -> invoice("NEW/" + i)).toList());
+
+        // Doğrula
+        assertTrue(saved.stream().allMatch(entity -> entity.getId() > 120));
+        assertEquals(180, invoiceRepository.count());
+    }
+
+    @Test
+    void advance_WhenSequenceIsAlreadyAhead_DoesNotMoveItBack() {
+        // Düzenle
+        Long first = invoiceRepository.saveAndFlush(invoice("FK/1")).getId();
+        Long next = jdbcTemplate.queryForObject(InvoiceSequenceUpgrade.NEXT_VALUE, Long.class);
+
+        // Test et
+        upgrade.advance();
+
+        // Doğrula
+        assertTrue(jdbcTemplate.queryForObject(InvoiceSequenceUpgrade.NEXT_VALUE, Long.class) > next);
+        assertTrue(invoiceRepository.saveAndFlush(invoice("FK/2")).getId() > first);
+    }
+
+    private static InvoiceEntity invoice(String p2) {
+        InvoiceEntity entity = new InvoiceEntity();
+        entity.setNip("5260250274");
+        entity.setP1(LocalDate.of(2024, 2, 1));
+        entity.setP2(p2);
+        return entity;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.config.AuditProperties;
+import com.example.invoiceapi.dto.AuditRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void record_IsWrittenInBackgroundAndReplayedFromTimestamp() throws Exception {
+        // Düzenle
+        AuditLog auditLog = new AuditLog(properties(DataSize.ofMegabytes(1), 0), new InvoiceMetrics(new SimpleMeterRegistry()));
+        byte[] payload = {1, 2, 3};
+
+        // Test et
+        auditLog.record(new AuditRecord(Instant.ofEpochMilli(1_000), AuditRecord.Source.UPLOAD, AuditRecord.Outcome.CREATED,
+                "a".repeat(64), 120, null, 7L, payload));
+        auditLog.record(new AuditRecord(Instant.ofEpochMilli(2_000), AuditRecord.Source.STREAM, AuditRecord.Outcome.REJECTED,
+                null, 40, "xsd", null, null));
+        auditLog.close();
+
+        // Doğrula
+        List<AuditRecord> all = auditLog.reader().read(Instant.EPOCH, 10);
+        assertEquals(2, all.size());
+        AuditRecord created = all.get(0);
+        assertEquals(AuditRecord.Outcome.CREATED, created.outcome());
+        assertEquals("a".repeat(64), created.contentHash());
+        assertEquals(7L, created.invoiceId());
+        assertArrayEquals(payload, created.payload());
+        AuditRecord rejected = all.get(1);
+        assertEquals(AuditRecord.Source.STREAM, rejected.source());
+        assertEquals("xsd", rejected.stage());
+        assertNull(rejected.contentHash());
+        assertNull(rejected.invoiceId());
+        assertNull(rejected.payload());
+
+        assertEquals(List.of(rejected), auditLog.reader().read(Instant.ofEpochMilli(1_500), 10));
+    }
+
+    @Test
+    void record_RotatesFullSegmentsAndKeepsOnlyRetainedOnes() throws Exception {
+        // Düzenle: her segmente birkaç kayıt sığar
+        AuditLog auditLog = new AuditLog(properties(DataSize.ofKilobytes(2), 2), new InvoiceMetrics(new SimpleMeterRegistry()));
+
+        // Test et
+        for (int i = 0; i < 100; i++) {
+            auditLog.record(new AuditRecord(Instant.ofEpochMilli(i), AuditRecord.Source.BATCH, AuditRecord.Outcome.CREATED,
+                    "b".repeat(64), i, null, (long) i, new byte[200]));
+        }
+        auditLog.close();
+
+        // Doğrula: yalnızca son iki segmentin kayıtları kalır, sıra korunur
+        assertEquals(2, AuditSegmentWriter.segments(directory).size());
+        List<AuditRecord> kept = auditLog.reader().read(Instant.EPOCH, 1000);
+        assertFalse(kept.isEmpty());
+        assertTrue(kept.size() < 100);
+        assertEquals(99L, kept.get(kept.size() - 1).invoiceId());
+        for (int i = 1; i < kept.size(); i++) {
+            assertEquals(kept.get(i - 1).invoiceId() + 1, kept.get(i).invoiceId());
+        }
+    }
+
+    @Test
+    void record_WakesTheIdleWriterAndCloseTrimsTheSegment() throws Exception {
+        // Düzenle: yazıcı boş tamponda park etmiş durumda
+        AuditLog auditLog = new AuditLog(properties(DataSize.ofMegabytes(1), 0), new InvoiceMetrics(new SimpleMeterRegistry()));
+        Thread.sleep(50);
+
+        // Test et
+        auditLog.record(new AuditRecord(Instant.ofEpochMilli(1_000), AuditRecord.Source.UPLOAD, AuditRecord.Outcome.CREATED,
+                "c".repeat(64), 10, null, 1L, null));
+
+        // Doğrula: kapanışı beklemeden yazılır
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (auditLog.reader().read(Instant.EPOCH, 10).isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, auditLog.reader().read(Instant.EPOCH, 10).size());
+        auditLog.close();
+        Path segment = AuditSegmentWriter.segments(directory).get(0);
+        assertTrue(Files.size(segment) < DataSize.ofKilobytes(1).toBytes());
+        assertEquals(1, auditLog.reader().read(Instant.EPOCH, 10).size());
+    }
+
+    @Test
+    void start_DeletesSegmentsBeyondTheRetainedOnes() throws Exception {
+        // Düzenle: önceki çalıştırmalardan kalan dört segment
+        for (int i = 1; i <= 4; i++) {
+            Files.write(directory.resolve(AuditSegmentWriter.segmentName(i)), new byte[AuditSegmentWriter.HEADER_SIZE]);
+        }
+
+        // Test et
+        AuditLog auditLog = new AuditLog(properties(DataSize.ofMegabytes(1), 2), new InvoiceMetrics(new SimpleMeterRegistry()));
+        auditLog.close();
+
+        // Doğrula
+        assertEquals(List.of(directory.resolve(AuditSegmentWriter.segmentName(3)), directory.resolve(AuditSegmentWriter.segmentName(4))),
+                AuditSegmentWriter.segments(directory));
+    }
+
+    @Test
+    void start_WhenEnabledWithoutDirectory_Fails() {
+        // Düzenle
+        AuditProperties properties = properties(DataSize.ofMegabytes(1), 0);
+        properties.setDirectory(" ");
+
+        // Test et & Doğrula
+        assertThrows(IllegalStateException.class, () -> new AuditLog(properties, new InvoiceMetrics(new SimpleMeterRegistry())));
+    }
+
+    private AuditProperties properties(DataSize segmentSize, int retainedSegments) {
+        AuditProperties properties = new AuditProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        properties.setSegmentSize(segmentSize);
+        properties.setRetainedSegments(retainedSegments);
+        properties.setIncludePayload(true);
+        properties.setBufferCapacity(1024);
+        return properties;
+    }
+}
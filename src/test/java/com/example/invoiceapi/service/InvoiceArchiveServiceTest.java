@@ -0,0 +1,175 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.config.ArchiveProperties;
+import com.example.invoiceapi.dto.BatchItemResult;
+import com.example.invoiceapi.dto.BatchResult;
+import com.example.invoiceapi.exception.ArchiveProcessingException;
+import com.example.invoiceapi.model.InvoiceEntity;
+import com.example.invoiceapi.repository.InvoiceCopyLoader;
+import com.example.invoiceapi.repository.InvoiceRepository;
+import com.example.invoiceapi.util.Base64Helper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class InvoiceArchiveServiceTest {
+
+    @Mock
+    private InvoiceRepository invoiceRepository;
+
+    private ExecutorService executor;
+
+    private ArchiveProperties properties;
+
+    private InvoiceArchiveService invoiceArchiveService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        executor = Executors.newFixedThreadPool(2);
+        properties = new ArchiveProperties();
+        properties.setMaxInFlight(2);
+        properties.setWriteBatchSize(2);
+        InvoiceService invoiceService = InvoiceService.builder(new SchemaRegistry(new XmlEngine(2), 2))
+                .repository(invoiceRepository)
+                .recentInvoices(new RecentInvoiceCache(100))
+                .build();
+        InvoiceBatchService invoiceBatchService = new InvoiceBatchService(invoiceService, invoiceRepository, new InvoiceCopyLoader(null, false), executor, new InvoiceMetrics(new SimpleMeterRegistry()), mock(AuditLog.class), 10);
+        invoiceArchiveService = new InvoiceArchiveService(invoiceService, invoiceBatchService, executor, properties);
+
+        AtomicLong ids = new AtomicLong();
+        when(invoiceRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<InvoiceEntity> entities = invocation.getArgument(0);
+            entities.forEach(entity -> entity.setId(ids.incrementAndGet()));
+            return entities;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void processArchive_WithMixedEntries_ReturnsNamedResultsAndSavesInGroups() throws IOException {
+        // Düzenle
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("faturalar/", null);
+        entries.put("faturalar/a.xml", invoice("FK/1"));
+        entries.put("faturalar/beni-oku.txt", "xml değil");
+        entries.put("faturalar/b.XML", invoice("FK/2"));
+        entries.put("faturalar/bozuk.xml", "<Faktura>");
+        entries.put("faturalar/c.xml", invoice("FK/3"));
+
+        // Test et
+        BatchResult result = invoiceArchiveService.processArchive(new ByteArrayInputStream(zip(entries)));
+
+        // Doğrula
+        assertEquals(4, result.getTotal());
+        assertEquals(3, result.getCreated());
+        assertEquals(1, result.getRejected());
+        List<BatchItemResult> items = result.getResults();
+        assertEquals(List.of("faturalar/a.xml", "faturalar/b.XML", "faturalar/bozuk.xml", "faturalar/c.xml"),
+                items.stream().map(BatchItemResult::getName).toList());
+        assertEquals(List.of(0, 1, 2, 3), items.stream().map(BatchItemResult::getIndex).toList());
+        assertEquals(BatchItemResult.Status.REJECTED, items.get(2).getStatus());
+        assertEquals(3L, items.get(3).getId());
+        verify(invoiceRepository, times(2)).saveAll(anyList());
+    }
+
+    @Test
+    void processArchive_WithGroupReachingByteLimit_StoresItBeforeTheCountLimit() throws IOException {
+        // Düzenle: her fatura tek başına bayt sınırını doldurur
+        properties.setWriteBatchSize(100);
+        properties.setWriteBatchBytes(DataSize.ofBytes(invoice("FK/1").length()));
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 1; i <= 3; i++) {
+            entries.put(i + ".xml", invoice("FK/" + i));
+        }
+
+        // Test et
+        BatchResult result = invoiceArchiveService.processArchive(new ByteArrayInputStream(zip(entries)));
+
+        // Doğrula
+        assertEquals(3, result.getCreated());
+        verify(invoiceRepository, times(3)).saveAll(anyList());
+    }
+
+    @Test
+    void processArchive_WithEntryInflatingBeyondLimit_StopsAndKeepsEarlierEntries() throws IOException {
+        // Düzenle
+        properties.setMaxEntrySize(DataSize.ofKilobytes(64));
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("a.xml", invoice("FK/1"));
+        // Sıkıştırılmış hali birkaç KB, açılmış hali 1 MB
+        entries.put("bomba.xml", " ".repeat(1024 * 1024));
+        entries.put("c.xml", invoice("FK/3"));
+        byte[] archive = zip(entries);
+        assertTrue(archive.length < 16 * 1024);
+
+        // Test et
+        ArchiveProcessingException e = assertThrows(ArchiveProcessingException.class,
+                () -> invoiceArchiveService.processArchive(new ByteArrayInputStream(archive)));
+
+        // Doğrula
+        assertTrue(e.isLimitExceeded());
+        assertTrue(e.getMessage().startsWith("bomba.xml"));
+        assertEquals(1, e.getPartialResult().getCreated());
+        assertEquals("a.xml", e.getPartialResult().getResults().get(0).getName());
+    }
+
+    @Test
+    void processArchive_WithTooManyEntries_Stops() throws IOException {
+        // Düzenle
+        properties.setMaxEntries(2);
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i < 5; i++) {
+            entries.put(i + ".txt", "");
+        }
+
+        // Test et & Doğrula
+        ArchiveProcessingException e = assertThrows(ArchiveProcessingException.class,
+                () -> invoiceArchiveService.processArchive(new ByteArrayInputStream(zip(entries))));
+        assertTrue(e.isLimitExceeded());
+        verify(invoiceRepository, never()).saveAll(anyList());
+    }
+
+    private static String invoice(String number) {
+        return Base64Helper.generateExample().get("xml").replace("FK2023/08/31", number);
+    }
+
+    private static byte[] zip(Map<String, String> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                if (entry.getValue() != null) {
+                    zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                }
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
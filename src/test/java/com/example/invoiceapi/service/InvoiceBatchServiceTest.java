@@ -0,0 +1,94 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.dto.BatchItemResult;
+import com.example.invoiceapi.dto.BatchResult;
+import com.example.invoiceapi.model.InvoiceEntity;
+import com.example.invoiceapi.repository.InvoiceCopyLoader;
+import com.example.invoiceapi.repository.InvoiceRepository;
+import com.example.invoiceapi.util.Base64Helper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class InvoiceBatchServiceTest {
+
+    @Mock
+    private InvoiceRepository invoiceRepository;
+
+    private ExecutorService executor;
+
+    private InvoiceBatchService invoiceBatchService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        executor = Executors.newFixedThreadPool(2);
+        InvoiceService invoiceService = InvoiceService.builder(new SchemaRegistry(new XmlEngine(2), 2))
+                .repository(invoiceRepository)
+                .recentInvoices(new RecentInvoiceCache(100))
+                .build();
+        invoiceBatchService = new InvoiceBatchService(invoiceService, invoiceRepository, new InvoiceCopyLoader(null, false), executor, new InvoiceMetrics(new SimpleMeterRegistry()), mock(AuditLog.class), 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void processBatch_WithMixedItems_ReturnsPerItemResultsAndSavesOnce() {
+        // Düzenle
+        String valid = Base64Helper.generateExample().get("base64");
+        when(invoiceRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<InvoiceEntity> entities = invocation.getArgument(0);
+            long id = 1;
+            for (InvoiceEntity entity : entities) {
+                entity.setId(id++);
+            }
+            return entities;
+        });
+
+        // Test et
+        BatchResult result = invoiceBatchService.processBatch(Arrays.asList(valid, "invalid-base64", null, valid));
+
+        // Doğrula
+        assertEquals(4, result.getTotal());
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getDuplicates());
+        assertEquals(2, result.getRejected());
+        assertEquals(BatchItemResult.Status.CREATED, result.getResults().get(0).getStatus());
+        assertEquals(BatchItemResult.Status.REJECTED, result.getResults().get(1).getStatus());
+        assertEquals(BatchItemResult.Status.REJECTED, result.getResults().get(2).getStatus());
+        assertEquals(BatchItemResult.Status.DUPLICATE, result.getResults().get(3).getStatus());
+        assertEquals(1L, result.getResults().get(3).getId());
+        verify(invoiceRepository, times(1)).saveAll(argThat(entities -> ((List<?>) entities).size() == 1));
+    }
+
+    @Test
+    void processBatch_WhenDatabaseFails_MarksValidItemsAsFailed() {
+        // Düzenle
+        String valid = Base64Helper.generateExample().get("base64");
+        when(invoiceRepository.saveAll(anyList())).thenThrow(new RuntimeException("connection refused"));
+
+        // Test et
+        BatchResult result = invoiceBatchService.processBatch(List.of(valid, "invalid-base64"));
+
+        // Doğrula
+        assertEquals(1, result.getFailed());
+        assertEquals(1, result.getRejected());
+        assertEquals(BatchItemResult.Status.FAILED, result.getResults().get(0).getStatus());
+    }
+}
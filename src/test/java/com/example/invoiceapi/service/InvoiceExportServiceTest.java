@@ -0,0 +1,71 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.dto.InvoiceFilter;
+import com.example.invoiceapi.dto.InvoiceSummary;
+import com.example.invoiceapi.repository.InvoiceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class InvoiceExportServiceTest {
+
+    @Mock
+    private InvoiceRepository invoiceRepository;
+
+    private InvoiceExportService invoiceExportService;
+
+    private final InvoiceFilter filter = new InvoiceFilter(null, null, null, null);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        invoiceExportService = new InvoiceExportService(invoiceRepository, 100);
+    }
+
+    @Test
+    void export_AsNdjson_WritesOneObjectPerLineAndClosesCursor() throws Exception {
+        // Düzenle
+        AtomicBoolean closed = new AtomicBoolean();
+        when(invoiceRepository.stream(filter, 100)).thenReturn(Stream.of(
+                new InvoiceSummary(1L, "111", LocalDate.of(2023, 8, 31), "FK/1"),
+                new InvoiceSummary(2L, "222", LocalDate.of(2023, 9, 1), "FK \"2\"")).onClose(() -> closed.set(true)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Test et
+        long count = invoiceExportService.export(filter, InvoiceExportService.Format.NDJSON, false, out);
+
+        // Doğrula
+        assertEquals(2, count);
+        assertEquals("{\"id\":1,\"nip\":\"111\",\"p1\":\"2023-08-31\",\"p2\":\"FK/1\"}\n"
+                + "{\"id\":2,\"nip\":\"222\",\"p1\":\"2023-09-01\",\"p2\":\"FK \\\"2\\\"\"}\n", out.toString(StandardCharsets.UTF_8));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void export_AsGzippedCsv_QuotesFieldsThatNeedIt() throws Exception {
+        // Düzenle
+        when(invoiceRepository.stream(filter, 100)).thenReturn(Stream.of(
+                new InvoiceSummary(1L, "111", LocalDate.of(2023, 8, 31), "FK,1"),
+                new InvoiceSummary(2L, "222", LocalDate.of(2023, 9, 1), "FK \"2\"")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Test et
+        invoiceExportService.export(filter, InvoiceExportService.Format.CSV, true, out);
+
+        // Doğrula
+        String csv = new String(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())).readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals("id,nip,p1,p2\r\n1,111,2023-08-31,\"FK,1\"\r\n2,222,2023-09-01,\"FK \"\"2\"\"\"\r\n", csv);
+    }
+}
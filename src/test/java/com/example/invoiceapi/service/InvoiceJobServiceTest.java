@@ -0,0 +1,90 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.dto.InvoiceJob;
+import com.example.invoiceapi.dto.InvoiceResult;
+import com.example.invoiceapi.exception.RateLimitExceededException;
+import com.example.invoiceapi.exception.XmlProcessingException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class InvoiceJobServiceTest {
+
+    @Mock
+    private InvoiceService invoiceService;
+
+    private ThreadPoolExecutor executor;
+
+    private InvoiceJobService invoiceJobService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        invoiceJobService = new InvoiceJobService(invoiceService, executor, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void submit_ProcessesInBackgroundAndRecordsOutcome() throws Exception {
+        // Düzenle
+        when(invoiceService.processAdmittedInvoice("good")).thenReturn(InvoiceResult.created(7L));
+        doThrow(new XmlProcessingException("Invalid XML")).when(invoiceService).processAdmittedInvoice("bad");
+
+        // Test et
+        InvoiceJob ok = invoiceJobService.submit("good");
+        InvoiceJob failed = invoiceJobService.submit("bad");
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        // Doğrula
+        assertEquals(InvoiceJob.Status.COMPLETED, invoiceJobService.find(ok.getId()).orElseThrow().getStatus());
+        assertEquals(InvoiceJob.Status.FAILED, invoiceJobService.find(failed.getId()).orElseThrow().getStatus());
+        assertEquals(7L, ok.getInvoiceId());
+        assertEquals("Invalid XML", failed.getError());
+        assertNotNull(failed.getCompletedAt());
+    }
+
+    @Test
+    void submit_WhenQueueIsFull_RejectsWithoutTrackingTheJob() throws Exception {
+        // Düzenle
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(invoiceService).processAdmittedInvoice(anyString());
+        invoiceJobService.submit("running");
+        invoiceJobService.submit("queued");
+
+        // Test et & Doğrula
+        assertThrows(RejectedExecutionException.class, () -> invoiceJobService.submit("rejected"));
+        release.countDown();
+    }
+
+    @Test
+    void submit_WhenTaxpayerIsOverLimit_RejectsBeforeQueueing() {
+        // Düzenle
+        doThrow(new RateLimitExceededException("NIP 9781399259 için fatura gönderim sınırı aşıldı", 3))
+                .when(invoiceService).admitTaxpayer("limited");
+
+        // Test et & Doğrula
+        assertThrows(RateLimitExceededException.class, () -> invoiceJobService.submit("limited"));
+        verify(invoiceService, never()).processAdmittedInvoice(anyString());
+        assertEquals(0, executor.getTaskCount());
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.exception.XmlProcessingException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvoiceLineReaderTest {
+
+    private InvoiceLineReader reader;
+
+    @BeforeEach
+    void setUp() {
+        reader = new InvoiceLineReader(new SchemaRegistry(new XmlEngine(2), 2));
+    }
+
+    @Test
+    void read_StreamsEveryLineAndChecksTheDeclaredTotals() {
+        // Düzenle: 50.000 satır, belge okundukça üretilir; hiçbir yerde bütün olarak tutulmaz
+        int lines = 50_000;
+        String totals = "<P_13_1>250000.00</P_13_1><P_14_1>57500.00</P_14_1>"
+                + "<P_13_2>250000.00</P_13_2><P_14_2>20000.00</P_14_2><P_15>577500.00</P_15>";
+        AtomicInteger received = new AtomicInteger();
+
+        // Test et
+        InvoiceTotals result = reader.read(invoice(totals, lines), line -> {
+            assertEquals(received.incrementAndGet(), line.getNrWierszaFa());
+        });
+
+        // Doğrula
+        assertEquals(lines, received.get());
+        assertEquals(lines, result.lineCount());
+        assertEquals(new BigDecimal("500000.00"), result.netTotal());
+        assertEquals(new BigDecimal("77500.00"), result.vatTotal());
+        assertEquals(new BigDecimal("577500.00"), result.grossTotal());
+    }
+
+    @Test
+    void read_WithTotalNotMatchingTheLines_Rejects() {
+        // Düzenle
+        String totals = "<P_13_1>20.00</P_13_1><P_14_1>4.60</P_14_1><P_13_2>10.00</P_13_2><P_14_2>0.80</P_14_2>"
+                + "<P_15>40.00</P_15>";
+
+        // Test et & Doğrula
+        XmlProcessingException e = assertThrows(XmlProcessingException.class,
+                () -> reader.read(invoice(totals, 3), line -> {
+                }));
+        assertTrue(e.getMessage().startsWith("P_15 (40.00)"), e.getMessage());
+    }
+
+    @Test
+    void read_WithDiscountedLineAndGapInNumbering_Accepts() {
+        // Düzenle: 2. satırda indirim (5 x 2.50 ama net 10.00), 3. satır 4 olarak numaralı
+        String xml = new String(readAll(invoice("<P_13_1>20.00</P_13_1><P_13_2>10.00</P_13_2>", 3)), StandardCharsets.UTF_8)
+                .replace("<NrWierszaFa>2</NrWierszaFa><P_7>Ürün 2</P_7><P_8A>szt</P_8A><P_8B>4</P_8B>",
+                        "<NrWierszaFa>2</NrWierszaFa><P_7>Ürün 2</P_7><P_8A>szt</P_8A><P_8B>5</P_8B>")
+                .replace("<NrWierszaFa>3</NrWierszaFa>", "<NrWierszaFa>4</NrWierszaFa>");
+
+        // Test et
+        InvoiceTotals result = reader.read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), line -> {
+        });
+
+        // Doğrula
+        assertEquals(3, result.lineCount());
+        assertEquals(new BigDecimal("30.00"), result.netTotal());
+    }
+
+    @Test
+    void read_WithRepeatedLineNumber_RejectsAtThatLine() {
+        // Düzenle
+        String xml = new String(readAll(invoice("", 3)), StandardCharsets.UTF_8)
+                .replace("<NrWierszaFa>3</NrWierszaFa>", "<NrWierszaFa>2</NrWierszaFa>");
+
+        // Test et & Doğrula
+        XmlProcessingException e = assertThrows(XmlProcessingException.class,
+                () -> reader.read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), line -> {
+                }));
+        assertTrue(e.getMessage().startsWith("FaWiersz 3: NrWierszaFa"), e.getMessage());
+        assertTrue(e.getLineNumber() > 0);
+    }
+
+    /**
+     * An invoice whose lines alternate between 23% and 8% VAT, each 4 x 2.50 = 10.00 net.
+     */
+    static InputStream invoice(String totals, int lines) {
+        Iterator<InputStream> parts = Stream.concat(Stream.concat(
+                        Stream.of("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                                + "<Faktura xmlns=\"http://crd.gov.pl/wzor/2023/06/29/12648/\">"
+                                + "<Podmiot1><DaneIdentyfikacyjne><NIP>9781399259</NIP></DaneIdentyfikacyjne></Podmiot1>"
+                                + "<Fa><P_1>2023-08-31</P_1><P_2>FK2023/08/31</P_2>" + totals + "\n"),
+                        IntStream.rangeClosed(1, lines).mapToObj(InvoiceLineReaderTest::line)),
+                        Stream.of("</Fa></Faktura>"))
+                .map(part -> (InputStream) new ByteArrayInputStream(part.getBytes(StandardCharsets.UTF_8)))
+                .iterator();
+        return new SequenceInputStream(new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return parts.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return parts.next();
+            }
+        });
+    }
+
+    private static String line(int number) {
+        return "<FaWiersz><NrWierszaFa>" + number + "</NrWierszaFa><P_7>Ürün " + number + "</P_7>"
+                + "<P_8A>szt</P_8A><P_8B>4</P_8B><P_9A>2.50</P_9A><P_11>10.00</P_11>"
+                + "<P_12>" + (number % 2 == 1 ? "23" : "8") + "</P_12></FaWiersz>\n";
+    }
+
+    private static byte[] readAll(InputStream in) {
+        try (in) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
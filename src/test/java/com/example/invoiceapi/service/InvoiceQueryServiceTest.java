@@ -0,0 +1,101 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.config.LookupCacheProperties;
+import com.example.invoiceapi.dto.InvoiceFilter;
+import com.example.invoiceapi.dto.InvoicePage;
+import com.example.invoiceapi.dto.InvoiceSummary;
+import com.example.invoiceapi.model.InvoiceEntity;
+import com.example.invoiceapi.repository.InvoiceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class InvoiceQueryServiceTest {
+
+    @Mock
+    private InvoiceRepository invoiceRepository;
+
+    private InvoiceQueryService invoiceQueryService;
+
+    private final InvoiceFilter filter = new InvoiceFilter("9781399259", null, null, null);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        LookupCacheProperties noCache = new LookupCacheProperties();
+        noCache.setEnabled(false);
+        invoiceQueryService = new InvoiceQueryService(invoiceRepository, new InvoiceLookupCache(noCache, new SimpleMeterRegistry()), 2, 3);
+    }
+
+    @Test
+    void find_WhenMoreRowsFollow_ReturnsCursorOfLastItem() {
+        // Düzenle
+        when(invoiceRepository.search(filter, 10L, 3)).thenReturn(List.of(summary(11), summary(15), summary(20)));
+
+        // Test et
+        InvoicePage page = invoiceQueryService.find(filter, 10L, null);
+
+        // Doğrula
+        assertEquals(List.of(summary(11), summary(15)), page.items());
+        assertEquals(15L, page.nextCursor());
+    }
+
+    @Test
+    void find_OnLastPage_ReturnsNoCursorAndCapsLimit() {
+        // Düzenle
+        when(invoiceRepository.search(filter, null, 4)).thenReturn(List.of(summary(1)));
+
+        // Test et
+        InvoicePage page = invoiceQueryService.find(filter, null, 1000);
+
+        // Doğrula
+        assertEquals(1, page.items().size());
+        assertNull(page.nextCursor());
+        verify(invoiceRepository).search(filter, null, 4);
+    }
+
+    @Test
+    void findByNipAndP2_ServesHitsAndMissesFromCacheUntilInvoiceIsStored() {
+        // Düzenle
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        InvoiceLookupCache lookupCache = new InvoiceLookupCache(new LookupCacheProperties(), registry);
+        InvoiceQueryService cachedService = new InvoiceQueryService(invoiceRepository, lookupCache, 2, 3);
+        when(invoiceRepository.findSummaryById(1L)).thenReturn(Optional.of(summary(1)));
+        when(invoiceRepository.findSummaryByNipAndP2("9781399259", "FK/2")).thenReturn(Optional.empty());
+
+        // Test et
+        cachedService.findById(1L);
+        Optional<InvoiceSummary> found = cachedService.findById(1L);
+        cachedService.findByNipAndP2("9781399259", "FK/2");
+        Optional<InvoiceSummary> missing = cachedService.findByNipAndP2("9781399259", "FK/2");
+        InvoiceEntity stored = new InvoiceEntity();
+        stored.setId(2L);
+        stored.setNip("9781399259");
+        stored.setP1(LocalDate.of(2023, 8, 31));
+        stored.setP2("FK/2");
+        lookupCache.stored(stored);
+        Optional<InvoiceSummary> afterStore = cachedService.findByNipAndP2("9781399259", "FK/2");
+
+        // Doğrula
+        assertEquals(Optional.of(summary(1)), found);
+        assertTrue(missing.isEmpty());
+        assertEquals(Optional.of(summary(2)), afterStore);
+        verify(invoiceRepository, times(1)).findSummaryById(1L);
+        verify(invoiceRepository, times(1)).findSummaryByNipAndP2("9781399259", "FK/2");
+        assertEquals(1.0, registry.get("invoice.lookup.cache.gets").tag("cache", "nip_p2").tag("result", "negative_hit").functionCounter().count());
+        assertEquals(0.5, registry.get("invoice.lookup.cache.hit.ratio").tag("cache", "id").gauge().value());
+    }
+
+    private static InvoiceSummary summary(long id) {
+        return new InvoiceSummary(id, "9781399259", LocalDate.of(2023, 8, 31), "FK/" + id);
+    }
+}
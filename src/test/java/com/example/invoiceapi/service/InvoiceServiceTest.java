@@ -1,20 +1,47 @@
 package com.example.invoiceapi.service;
 
+import com.example.invoiceapi.config.LineItemProperties;
+import com.example.invoiceapi.config.RateLimitProperties;
+import com.example.invoiceapi.config.XmlProperties;
+import com.example.invoiceapi.dto.AuditRecord;
+import com.example.invoiceapi.dto.InvoiceFields;
+import com.example.invoiceapi.dto.InvoiceResult;
+import com.example.invoiceapi.exception.InvoiceConflictException;
+import com.example.invoiceapi.exception.RateLimitExceededException;
 import com.example.invoiceapi.exception.XmlProcessingException;
+import com.example.invoiceapi.model.InvoiceDocumentEntity;
 import com.example.invoiceapi.model.InvoiceEntity;
+import com.example.invoiceapi.model.InvoiceLineEntity;
+import com.example.invoiceapi.repository.InvoiceLineWriter;
 import com.example.invoiceapi.repository.InvoiceRepository;
+import com.example.invoiceapi.util.Base64Helper;
+import com.example.invoiceapi.util.ContentHash;
+import com.example.invoiceapi.util.DocumentCompression;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class InvoiceServiceTest {
@@ -22,7 +49,10 @@ class InvoiceServiceTest {
     @Mock
     private InvoiceRepository invoiceRepository;
 
-    @InjectMocks
+    private XmlEngine xmlEngine;
+
+    private SimpleMeterRegistry meterRegistry;
+
     private InvoiceService invoiceService;
 
     private String validBase64Xml;
@@ -30,6 +60,13 @@ class InvoiceServiceTest {
     @BeforeEach
     void setUp() throws Exception {
         MockitoAnnotations.openMocks(this);
+        xmlEngine = new XmlEngine(2);
+        meterRegistry = new SimpleMeterRegistry();
+        invoiceService = InvoiceService.builder(new SchemaRegistry(xmlEngine, 2))
+                .repository(invoiceRepository)
+                .metrics(new InvoiceMetrics(meterRegistry))
+                .recentInvoices(new RecentInvoiceCache(100))
+                .build();
         validBase64Xml = loadBase64XmlFromResource("/sample-invoice.xml");
     }
 
@@ -42,6 +79,115 @@ class InvoiceServiceTest {
         verify(invoiceRepository, times(1)).save(any(InvoiceEntity.class));
     }
 
+    @Test
+    void processInvoice_RecordsStageTimersAndFailureCounters() {
+        // Test et
+        invoiceService.processInvoice(validBase64Xml);
+        assertThrows(XmlProcessingException.class, () -> invoiceService.processInvoice("invalid-base64-string"));
+
+        // Doğrula
+        assertEquals(1, meterRegistry.get("invoice.stage.duration").tag("stage", "validate_unmarshal").timer().count());
+        assertEquals(1, meterRegistry.get("invoice.stage.duration").tag("stage", "persist").timer().count());
+        assertEquals(1.0, meterRegistry.get("invoice.failures").tag("type", "base64").counter().count());
+        assertEquals(2, meterRegistry.get("invoice.payload.size").tag("kind", "base64").summary().count());
+    }
+
+    @Test
+    void processInvoice_WithResubmittedInvoice_ReturnsOriginalIdWithoutParsingOrWriting() {
+        // Düzenle
+        when(invoiceRepository.save(any(InvoiceEntity.class))).thenAnswer(invocation -> {
+            InvoiceEntity entity = invocation.getArgument(0);
+            entity.setId(42L);
+            return entity;
+        });
+
+        // Test et
+        InvoiceResult first = invoiceService.processInvoice(validBase64Xml);
+        InvoiceResult retry = invoiceService.processInvoice(validBase64Xml);
+
+        // Doğrula
+        assertEquals(InvoiceResult.created(42L), first);
+        assertEquals(InvoiceResult.duplicate(42L), retry);
+        verify(invoiceRepository, times(1)).save(any(InvoiceEntity.class));
+        verify(invoiceRepository, times(1)).findFirstByContentHashOrNipAndP2(anyString(), anyString(), anyString());
+        assertEquals(1, meterRegistry.get("invoice.stage.duration").tag("stage", "validate_unmarshal").timer().count());
+        assertEquals(1.0, meterRegistry.get("invoice.duplicates").tag("source", "cache").counter().count());
+    }
+
+    @Test
+    void processInvoice_WithSameNipAndNumberButDifferentContent_ThrowsConflict() {
+        // Düzenle
+        InvoiceEntity stored = new InvoiceEntity();
+        stored.setId(7L);
+        stored.setContentHash("0".repeat(64));
+        when(invoiceRepository.findFirstByContentHashOrNipAndP2(anyString(), eq("9781399259"), eq("FK2023/08/31")))
+                .thenReturn(Optional.of(stored));
+
+        // Test et & Doğrula
+        InvoiceConflictException e = assertThrows(InvoiceConflictException.class,
+                () -> invoiceService.processInvoice(validBase64Xml));
+        assertEquals(7L, e.getExistingId());
+        verify(invoiceRepository, never()).save(any(InvoiceEntity.class));
+    }
+
+    @Test
+    void processInvoice_StoresIssueDateAsDateAndRejectsOtherText() {
+        // Düzenle
+        String xml = new String(Base64.getDecoder().decode(validBase64Xml), StandardCharsets.UTF_8);
+        String withOffset = Base64.getEncoder().encodeToString(
+                xml.replace(">2023-08-31<", ">2023-08-31+02:00<").getBytes(StandardCharsets.UTF_8));
+        String notADate = xml.replace(">2023-08-31<", ">31.08.2023<");
+        ArgumentCaptor<InvoiceEntity> saved = ArgumentCaptor.forClass(InvoiceEntity.class);
+        when(invoiceRepository.save(saved.capture())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Test et
+        invoiceService.processInvoice(withOffset);
+        XmlProcessingException e = assertThrows(XmlProcessingException.class,
+                () -> invoiceService.processInvoice(new ByteArrayInputStream(notADate.getBytes(StandardCharsets.UTF_8))));
+
+        // Doğrula
+        assertEquals(LocalDate.of(2023, 8, 31), saved.getValue().getP1());
+        assertEquals("unmarshal", e.getStage());
+        assertTrue(e.getMessage().contains("31.08.2023"));
+        verify(invoiceRepository, times(1)).save(any(InvoiceEntity.class));
+    }
+
+    @Test
+    void processInvoice_StreamedAndBase64Submissions_ShareContentHash() throws Exception {
+        // Düzenle
+        when(invoiceRepository.save(any(InvoiceEntity.class))).thenAnswer(invocation -> {
+            InvoiceEntity entity = invocation.getArgument(0);
+            entity.setId(42L);
+            return entity;
+        });
+
+        // Test et
+        invoiceService.processInvoice(validBase64Xml);
+        InvoiceResult streamed = invoiceService.processInvoice(new ByteArrayInputStream(validXmlBytes()));
+
+        // Doğrula
+        assertEquals(InvoiceResult.duplicate(42L), streamed);
+        verify(invoiceRepository, times(1)).save(any(InvoiceEntity.class));
+    }
+
+    @Test
+    void processInvoice_StoresCompressedOriginalInBothModes() throws Exception {
+        // Düzenle
+        ArgumentCaptor<InvoiceEntity> saved = ArgumentCaptor.forClass(InvoiceEntity.class);
+        // Önbellekten tekrar sayılmasın diye sonuna boşluk eklenmiş farklı bir belge
+        byte[] streamed = Arrays.copyOf(validXmlBytes(), validXmlBytes().length + 1);
+        streamed[streamed.length - 1] = ' ';
+
+        // Test et
+        invoiceService.processInvoice(validBase64Xml);
+        invoiceService.processInvoice(new ByteArrayInputStream(streamed));
+
+        // Doğrula
+        verify(invoiceRepository, times(2)).save(saved.capture());
+        assertOriginal(validXmlBytes(), saved.getAllValues().get(0));
+        assertOriginal(streamed, saved.getAllValues().get(1));
+    }
+
     @Test
     void processInvoice_WithEmptyInput_ShouldThrowException() {
         // Test et & Doğrula
@@ -55,13 +201,283 @@ class InvoiceServiceTest {
     @Test
     void processInvoice_WithInvalidBase64_ShouldThrowException() {
         // Test et & Doğrula
-        assertThrows(XmlProcessingException.class, () -> {
+        XmlProcessingException e = assertThrows(XmlProcessingException.class, () -> {
             invoiceService.processInvoice("invalid-base64-string");
         });
 
+        assertEquals("Last unit does not have enough valid bits", e.getBase64Error());
+        assertNull(e.getDecodedXml());
+        verify(invoiceRepository, never()).save(any(InvoiceEntity.class));
+    }
+
+    @Test
+    void processInvoice_WithSchemaViolation_ReportsSameErrorInBothModes() {
+        // Düzenle
+        String invalidXml = Base64.getEncoder().encodeToString(
+                "<Faktura xmlns=\"http://crd.gov.pl/wzor/2023/06/29/12648/\"><Fa/></Faktura>".getBytes(StandardCharsets.UTF_8));
+        XmlProperties twoPass = new XmlProperties();
+        twoPass.getValidation().setSinglePass(false);
+        InvoiceService twoPassService = InvoiceService.builder(new SchemaRegistry(xmlEngine, 2))
+                .repository(invoiceRepository)
+                .xmlProperties(twoPass)
+                .recentInvoices(new RecentInvoiceCache(100))
+                .build();
+
+        // Test et
+        XmlProcessingException singlePassError = assertThrows(XmlProcessingException.class,
+                () -> invoiceService.processInvoice(invalidXml));
+        XmlProcessingException twoPassError = assertThrows(XmlProcessingException.class,
+                () -> twoPassService.processInvoice(invalidXml));
+
+        // Doğrula
+        assertTrue(singlePassError.getMessage().startsWith("XML doğrulama hatası: cvc-"));
+        assertEquals(twoPassError.getMessage(), singlePassError.getMessage());
+        assertEquals(1, singlePassError.getLineNumber());
+        assertEquals(twoPassError.getColumnNumber(), singlePassError.getColumnNumber());
+        assertNotNull(singlePassError.getDecodedXml());
+        verify(invoiceRepository, never()).save(any(InvoiceEntity.class));
+    }
+
+    @Test
+    void processInvoice_AuditsOutcomeAndRejectingStage() {
+        // Düzenle
+        AuditLog auditLog = mock(AuditLog.class);
+        InvoiceService auditedService = InvoiceService.builder(new SchemaRegistry(xmlEngine, 2))
+                .repository(invoiceRepository)
+                .recentInvoices(new RecentInvoiceCache(100))
+                .auditLog(auditLog)
+                .build();
+        String invalidXml = Base64.getEncoder().encodeToString(
+                "<Faktura xmlns=\"http://crd.gov.pl/wzor/2023/06/29/12648/\"><Fa/></Faktura>".getBytes(StandardCharsets.UTF_8));
+
+        // Test et
+        auditedService.processInvoice(validBase64Xml);
+        assertThrows(XmlProcessingException.class, () -> auditedService.processInvoice(invalidXml));
+        assertThrows(XmlProcessingException.class, () -> auditedService.processInvoice("invalid-base64-string"));
+
+        // Doğrula
+        ArgumentCaptor<AuditRecord> records = ArgumentCaptor.forClass(AuditRecord.class);
+        verify(auditLog, times(3)).record(records.capture());
+        AuditRecord created = records.getAllValues().get(0);
+        assertEquals(AuditRecord.Outcome.CREATED, created.outcome());
+        assertEquals(AuditRecord.Source.UPLOAD, created.source());
+        assertEquals(ContentHash.sha256(validXmlBytes(), 0, validXmlBytes().length), created.contentHash());
+        assertEquals(validXmlBytes().length, created.size());
+        AuditRecord invalid = records.getAllValues().get(1);
+        assertEquals(AuditRecord.Outcome.REJECTED, invalid.outcome());
+        assertEquals("xsd", invalid.stage());
+        assertNotNull(invalid.contentHash());
+        AuditRecord undecodable = records.getAllValues().get(2);
+        assertEquals("base64", undecodable.stage());
+        assertNull(undecodable.contentHash());
+    }
+
+    @Test
+    void processInvoice_WithStreamedXml_ShouldSaveInvoice() throws Exception {
+        // Test et
+        try (InputStream xml = getClass().getResourceAsStream("/sample-invoice.xml")) {
+            invoiceService.processInvoice(xml);
+        }
+        invoiceService.processInvoice(Base64.getMimeDecoder().wrap(
+                new ByteArrayInputStream(Base64.getMimeEncoder().encode(validXmlBytes()))));
+
+        // Doğrula
+        verify(invoiceRepository, times(2)).save(any(InvoiceEntity.class));
+    }
+
+    @Test
+    void processInvoice_WithStreamedSpecificationRoot_ShouldThrowException() {
+        // Düzenle
+        InputStream xml = new ByteArrayInputStream("\n  <specification/>".getBytes(StandardCharsets.UTF_8));
+
+        // Test et & Doğrula
+        XmlProcessingException e = assertThrows(XmlProcessingException.class, () -> invoiceService.processInvoice(xml));
+        assertTrue(e.getMessage().contains("<specification>"));
         verify(invoiceRepository, never()).save(any(InvoiceEntity.class));
     }
 
+    @Test
+    void processInvoice_WhenNipExceedsItsRate_RejectsBeforeValidation() {
+        // Düzenle
+        RateLimitProperties limits = new RateLimitProperties();
+        limits.setEnabled(true);
+        limits.setNip(new RateLimitProperties.Bucket(0.001, 1));
+        InvoiceMetrics metrics = new InvoiceMetrics(meterRegistry);
+        InvoiceService limitedService = InvoiceService.builder(new SchemaRegistry(xmlEngine, 2))
+                .repository(invoiceRepository)
+                .metrics(metrics)
+                .recentInvoices(new RecentInvoiceCache(100))
+                .admission(new InvoiceAdmission(limits, metrics))
+                .build();
+        String secondInvoice = new String(validXmlBytes(), StandardCharsets.UTF_8).replace("FK2023/08/31", "FK2023/08/32");
+
+        // Test et
+        limitedService.processInvoice(validBase64Xml);
+        RateLimitExceededException base64 = assertThrows(RateLimitExceededException.class, () -> limitedService.processInvoice(
+                Base64.getEncoder().encodeToString(secondInvoice.getBytes(StandardCharsets.UTF_8))));
+        RateLimitExceededException streamed = assertThrows(RateLimitExceededException.class, () -> limitedService.processInvoice(
+                new ByteArrayInputStream(secondInvoice.getBytes(StandardCharsets.UTF_8))));
+
+        // Doğrula
+        assertTrue(base64.getMessage().contains("9781399259"));
+        assertTrue(base64.getRetryAfterSeconds() > 1);
+        assertEquals(base64.getMessage(), streamed.getMessage());
+        assertEquals(1, meterRegistry.get("invoice.stage.duration").tag("stage", "validate_unmarshal").timer().count());
+        assertEquals(2.0, meterRegistry.get("invoice.admission.rejections").tag("limit", "nip").counter().count());
+        verify(invoiceRepository, times(1)).save(any(InvoiceEntity.class));
+    }
+
+    @Test
+    void admitTaxpayer_ChargesTheNipOnceAndTheAdmittedInvoiceIsNotChargedAgain() {
+        // Düzenle
+        RateLimitProperties limits = new RateLimitProperties();
+        limits.setEnabled(true);
+        limits.setNip(new RateLimitProperties.Bucket(0.001, 1));
+        InvoiceMetrics metrics = new InvoiceMetrics(meterRegistry);
+        InvoiceService limitedService = InvoiceService.builder(new SchemaRegistry(xmlEngine, 2))
+                .repository(invoiceRepository)
+                .metrics(metrics)
+                .admission(new InvoiceAdmission(limits, metrics))
+                .build();
+
+        // Test et
+        limitedService.admitTaxpayer(validBase64Xml);
+        InvoiceResult result = limitedService.processAdmittedInvoice(validBase64Xml);
+        RateLimitExceededException e = assertThrows(RateLimitExceededException.class,
+                () -> limitedService.admitTaxpayer(validBase64Xml));
+        limitedService.admitTaxpayer("*** not base64 ***");
+
+        // Doğrula
+        assertFalse(result.duplicate());
+        assertTrue(e.getMessage().contains("9781399259"));
+        assertEquals(1.0, meterRegistry.get("invoice.admission.rejections").tag("limit", "nip").counter().count());
+    }
+
+    @Test
+    void processInvoice_WithUnsupportedNamespace_RejectsBeforeValidation() {
+        // Düzenle
+        String otherVersion = new String(validXmlBytes(), StandardCharsets.UTF_8)
+                .replace(InvoiceFieldExtractor.NAMESPACE, "http://crd.gov.pl/wzor/2099/01/01/00000/");
+
+        // Test et
+        XmlProcessingException base64 = assertThrows(XmlProcessingException.class, () -> invoiceService.processInvoice(
+                Base64.getEncoder().encodeToString(otherVersion.getBytes(StandardCharsets.UTF_8))));
+        XmlProcessingException streamed = assertThrows(XmlProcessingException.class, () -> invoiceService.processInvoice(
+                new ByteArrayInputStream(otherVersion.getBytes(StandardCharsets.UTF_8))));
+
+        // Doğrula
+        assertTrue(base64.getMessage().startsWith("Desteklenmeyen kök eleman: {http://crd.gov.pl/wzor/2099/01/01/00000/}Faktura"));
+        assertEquals(base64.getMessage(), streamed.getMessage());
+        assertEquals(2.0, meterRegistry.get("invoice.failures").tag("type", "unsupported_schema").counter().count());
+        assertEquals(0, meterRegistry.get("invoice.stage.duration").tag("stage", "validate_unmarshal").timer().count());
+        verify(invoiceRepository, never()).save(any(InvoiceEntity.class));
+    }
+
+    @Test
+    void readInvoice_StaxAndJaxbModes_ReturnIdenticalFields() {
+        // Düzenle
+        XmlProperties staxProperties = new XmlProperties();
+        staxProperties.getExtraction().setMode(XmlProperties.ExtractionMode.STAX);
+        InvoiceService staxService = InvoiceService.builder(new SchemaRegistry(xmlEngine, 2))
+                .repository(invoiceRepository)
+                .xmlProperties(staxProperties)
+                .recentInvoices(new RecentInvoiceCache(100))
+                .build();
+        String commented = Base64.getEncoder().encodeToString((
+                "<?xml version=\"1.0\"?>\n<!-- yorum --><f:Faktura xmlns:f=\"http://crd.gov.pl/wzor/2023/06/29/12648/\">"
+                        + "<f:Podmiot1><f:DaneIdentyfikacyjne><f:NIP> 111 </f:NIP></f:DaneIdentyfikacyjne></f:Podmiot1>"
+                        + "<f:Fa><f:P_1>2024-01-02</f:P_1><f:P_2><![CDATA[A&B/1]]></f:P_2></f:Fa></f:Faktura>")
+                .getBytes(StandardCharsets.UTF_8));
+
+        // Test et & Doğrula
+        for (String input : new String[]{validBase64Xml, Base64Helper.generateExample().get("base64"), commented}) {
+            InvoiceFields jaxb = invoiceService.readInvoice(input);
+            InvoiceFields stax = staxService.readInvoice(input);
+            assertEquals(jaxb, stax);
+        }
+        assertEquals(new InvoiceFields("9781399259", "2023-08-31", "FK2023/08/31"), staxService.readInvoice(validBase64Xml));
+    }
+
+    @Test
+    void readInvoice_StaxModeWithoutStrictValidation_RejectsUnexpectedRoot() {
+        // Düzenle
+        XmlProperties staxProperties = new XmlProperties();
+        staxProperties.getExtraction().setMode(XmlProperties.ExtractionMode.STAX);
+        staxProperties.getValidation().setStrict(false);
+        InvoiceService staxService = InvoiceService.builder(new SchemaRegistry(xmlEngine, 2))
+                .repository(invoiceRepository)
+                .xmlProperties(staxProperties)
+                .recentInvoices(new RecentInvoiceCache(100))
+                .build();
+        String otherRoot = Base64.getEncoder().encodeToString("<Faktura><Fa/></Faktura>".getBytes(StandardCharsets.UTF_8));
+
+        // Test et & Doğrula
+        assertThrows(XmlProcessingException.class, () -> staxService.readInvoice(otherRoot));
+    }
+
+    @Test
+    void processInvoice_WithLineItems_StoresTotalsAndLinesInBatchesAndRejectsWrongTotals() throws Exception {
+        // Düzenle
+        LineItemProperties lineProperties = new LineItemProperties();
+        lineProperties.setBatchSize(2);
+        InvoiceLineWriter writer = mock(InvoiceLineWriter.class);
+        List<List<Integer>> batches = new ArrayList<>();
+        doAnswer(invocation -> {
+            // Tampon yazıldıktan sonra yeniden kullanılır; satır numaraları hemen kopyalanır
+            List<InvoiceLineEntity> rows = invocation.getArgument(0);
+            rows.forEach(row -> assertEquals(42L, row.getInvoiceId()));
+            batches.add(rows.stream().map(InvoiceLineEntity::getLineNo).toList());
+            return null;
+        }).when(writer).insert(anyList());
+        SchemaRegistry schemaRegistry = new SchemaRegistry(xmlEngine, 2);
+        InvoiceLineService lineItems = new InvoiceLineService(lineProperties, new InvoiceLineReader(schemaRegistry), writer, mock(PlatformTransactionManager.class));
+        InvoiceService lineService = InvoiceService.builder(schemaRegistry)
+                .repository(invoiceRepository)
+                .metrics(new InvoiceMetrics(meterRegistry))
+                .recentInvoices(new RecentInvoiceCache(100))
+                .lines(lineItems)
+                .build();
+        ArgumentCaptor<InvoiceEntity> saved = ArgumentCaptor.forClass(InvoiceEntity.class);
+        when(invoiceRepository.save(saved.capture())).thenAnswer(invocation -> {
+            InvoiceEntity entity = invocation.getArgument(0);
+            entity.setId(42L);
+            return entity;
+        });
+        String totals = "<P_13_1>30.00</P_13_1><P_14_1>6.90</P_14_1><P_13_2>20.00</P_13_2><P_14_2>1.60</P_14_2>";
+        byte[] valid = InvoiceLineReaderTest.invoice(totals + "<P_15>58.50</P_15>", 5).readAllBytes();
+        byte[] wrongTotal = InvoiceLineReaderTest.invoice(totals + "<P_15>60.00</P_15>", 5).readAllBytes();
+
+        // Test et
+        lineService.processInvoice(Base64.getEncoder().encodeToString(valid));
+        XmlProcessingException e = assertThrows(XmlProcessingException.class,
+                () -> lineService.processInvoice(new ByteArrayInputStream(wrongTotal)));
+
+        // Doğrula
+        InvoiceEntity entity = saved.getValue();
+        assertEquals(5, entity.getLineCount());
+        assertEquals(new BigDecimal("50.00"), entity.getNetTotal());
+        assertEquals(new BigDecimal("8.50"), entity.getVatTotal());
+        assertEquals(new BigDecimal("58.50"), entity.getGrossTotal());
+        assertEquals(List.of(List.of(1, 2), List.of(3, 4), List.of(5)), batches);
+        assertEquals("lines", e.getStage());
+        verify(invoiceRepository, times(1)).save(any(InvoiceEntity.class));
+        assertEquals(1.0, meterRegistry.get("invoice.failures").tag("type", "lines").counter().count());
+    }
+
+    private static void assertOriginal(byte[] expected, InvoiceEntity entity) throws Exception {
+        InvoiceDocumentEntity document = entity.getDocument();
+        assertEquals(entity.getContentHash(), document.getContentHash());
+        assertEquals(expected.length, document.getSize());
+        assertTrue(document.getContent().length < expected.length);
+        ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+        DocumentCompression.inflate(document.getContent(), inflated);
+        assertArrayEquals(expected, inflated.toByteArray());
+    }
+
+    private byte[] validXmlBytes() {
+        return Base64.getDecoder().decode(validBase64Xml);
+    }
+
     private String loadBase64XmlFromResource(String resourcePath) throws Exception {
         try (InputStream is = getClass().getResourceAsStream(resourcePath)) {
             if (is == null) {
@@ -0,0 +1,47 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.config.LineItemProperties;
+import com.example.invoiceapi.config.WarmupProperties;
+import com.example.invoiceapi.config.XmlProperties;
+import com.example.invoiceapi.repository.InvoiceLineWriter;
+import com.example.invoiceapi.repository.InvoiceRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class InvoiceWarmupTest {
+
+    @Test
+    void run_ProcessesEverySampleWithItsLinesWithoutWritingToTheDatabase() throws Exception {
+        // Düzenle
+        InvoiceRepository invoiceRepository = mock(InvoiceRepository.class);
+        XmlEngine xmlEngine = new XmlEngine(2);
+        WarmupProperties properties = new WarmupProperties();
+        properties.setIterations(2 * InvoiceWarmup.samples().size());
+        properties.setThreads(2);
+        SchemaRegistry schemaRegistry = new SchemaRegistry(xmlEngine, 2);
+        LineItemProperties lineProperties = new LineItemProperties();
+        InvoiceLineWriter lineWriter = mock(InvoiceLineWriter.class);
+        InvoiceWarmup warmup = new InvoiceWarmup(properties, invoiceRepository, schemaRegistry, new XmlProperties(),
+                new InvoiceFieldExtractor(), new InvoiceLineService(lineProperties, new InvoiceLineReader(schemaRegistry),
+                lineWriter, mock(PlatformTransactionManager.class)));
+
+        // Test et
+        InvoiceWarmup.Result result = warmup.process(warmup.sinkService(), properties.getIterations());
+        warmup.run(new DefaultApplicationArguments());
+
+        // Doğrula
+        assertEquals(properties.getIterations(), result.processed());
+        assertEquals(12, result.rejected());
+        assertEquals(0, result.unexpected());
+        assertTrue(result.completed());
+        assertTrue(xmlEngine.validatingUnmarshallerStats().idle() > 0);
+        verify(invoiceRepository).findFirstByContentHashOrNipAndP2("", "", "");
+        verify(invoiceRepository, never()).save(any());
+        verifyNoInteractions(lineWriter);
+    }
+}
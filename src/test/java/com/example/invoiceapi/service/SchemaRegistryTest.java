@@ -0,0 +1,93 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.exception.XmlProcessingException;
+import com.example.invoiceapi.util.Base64Helper;
+import com.example.invoiceapi.xml.Faktura;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaRegistryTest {
+
+    private static final SchemaVersion OTHER = new SchemaVersion("TEST(1)", new QName("urn:test", "Faktura"),
+            XmlEngine.SCHEMA_LOCATION, Faktura.class, SchemaVersion.FA_2.fields());
+
+    private XmlEngine defaultEngine;
+
+    private SchemaRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        defaultEngine = new XmlEngine(2);
+        registry = new SchemaRegistry(List.of(SchemaVersion.FA_2, OTHER), defaultEngine, 2);
+    }
+
+    @Test
+    void sniff_ReadsRootBehindDeclarationCommentsAndPrefixes() {
+        // Düzenle
+        String xml = "<?xml version=\"1.0\"?>\n<!-- yorum --><?pi x?>\n<f:Faktura xmlns:f=\""
+                + InvoiceFieldExtractor.NAMESPACE + "\"><f:Fa>";
+
+        // Test et
+        QName root = registry.sniff(new StreamSource(new StringReader(xml)));
+
+        // Doğrula
+        assertEquals(SchemaVersion.FA_2.root(), root);
+        assertEquals(SchemaVersion.FA_2, registry.find(root).orElseThrow());
+        assertTrue(registry.find(new QName("", "Faktura")).isEmpty());
+        assertThrows(XmlProcessingException.class, () -> registry.sniff(new StreamSource(new StringReader("xml değil"))));
+    }
+
+    @Test
+    void sniff_OnStream_ResetsItForTheParser() throws Exception {
+        // Düzenle
+        byte[] xml = Base64Helper.generateExample().get("xml").getBytes(StandardCharsets.UTF_8);
+        BufferedInputStream in = new BufferedInputStream(new ByteArrayInputStream(xml), 512);
+
+        // Test et
+        QName root = registry.sniff(in);
+
+        // Doğrula
+        assertEquals(SchemaVersion.FA_2.root(), root);
+        assertArrayEquals(xml, in.readAllBytes());
+        XmlProcessingException e = assertThrows(XmlProcessingException.class,
+                () -> registry.sniff(new BufferedInputStream(new ByteArrayInputStream(new byte[0]))));
+        assertEquals("XML body is empty", e.getMessage());
+    }
+
+    @Test
+    void engine_IsBuiltOnFirstUseAndReused() {
+        // Test et
+        XmlEngine other = registry.engine(OTHER);
+
+        // Doğrula
+        assertSame(defaultEngine, registry.engine(SchemaVersion.FA_2));
+        assertSame(other, registry.engine(OTHER));
+        assertNotSame(defaultEngine, other);
+        assertEquals(OTHER, other.getVersion());
+    }
+
+    @Test
+    void onEngine_SeesTheBuiltEnginesAndThoseBuiltLater() {
+        // Düzenle
+        List<XmlEngine> seen = new ArrayList<>();
+
+        // Test et
+        registry.onEngine(seen::add);
+        XmlEngine other = registry.engine(OTHER);
+        registry.engine(OTHER);
+
+        // Doğrula
+        assertEquals(List.of(defaultEngine, other), seen);
+    }
+}
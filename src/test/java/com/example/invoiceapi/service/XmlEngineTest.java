@@ -0,0 +1,50 @@
+package com.example.invoiceapi.service;
+
+import com.example.invoiceapi.util.Base64Helper;
+import com.example.invoiceapi.xml.Faktura;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xml.sax.SAXException;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XmlEngineTest {
+
+    private XmlEngine xmlEngine;
+
+    private String exampleXml;
+
+    @BeforeEach
+    void setUp() {
+        xmlEngine = new XmlEngine(2);
+        exampleXml = Base64Helper.generateExample().get("xml");
+    }
+
+    @Test
+    void validateAndUnmarshal_ReusesPooledInstances() throws Exception {
+        // Test et
+        for (int i = 0; i < 3; i++) {
+            xmlEngine.validate(new StreamSource(new StringReader(exampleXml)));
+            Faktura faktura = xmlEngine.unmarshal(new StreamSource(new StringReader(exampleXml)));
+            assertEquals("1234567890", faktura.getPodmiot1().getDaneIdentyfikacyjne().getNIP());
+        }
+
+        // Doğrula
+        assertEquals(1, xmlEngine.validatorStats().misses());
+        assertEquals(2, xmlEngine.validatorStats().hits());
+        assertEquals(1, xmlEngine.unmarshallerStats().misses());
+        assertEquals(2, xmlEngine.unmarshallerStats().hits());
+    }
+
+    @Test
+    void validate_WithInvalidXml_ThrowsAndReturnsValidatorToPool() {
+        // Test et & Doğrula
+        assertThrows(SAXException.class, () ->
+                xmlEngine.validate(new StreamSource(new StringReader("<Faktura/>"))));
+
+        assertEquals(1, xmlEngine.validatorStats().idle());
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.invoiceapi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Base64SanitizerTest {
+
+    private static final String ALPHABET = "ABCxyz0189+/-_=.\" \t\r\n\u000B\f\u0000…é";
+
+    @Test
+    void decode_MatchesLegacyCleanupAndDecodeChain() {
+        for (String input : corpus()) {
+            // Düzenle
+            Legacy expected = legacyDecode(input, false);
+
+            // Test et
+            Base64Sanitizer.Result actual = Base64Sanitizer.decode(input);
+
+            // Doğrula
+            assertLegacyEquals(expected, actual, input);
+        }
+    }
+
+    @Test
+    void decodeLenient_MatchesLegacySafeBase64Decode() {
+        for (String input : corpus()) {
+            // Düzenle
+            Legacy expected = legacyDecode(input, true);
+
+            // Test et
+            Base64Sanitizer.Result actual = Base64Sanitizer.decodeLenient(input);
+
+            // Doğrula
+            assertLegacyEquals(expected, actual, input);
+        }
+    }
+
+    @Test
+    void decode_DetectsAlphabetAndReportsInvalidPositions() {
+        // Düzenle
+        byte[] data = {(byte) 0xfb, (byte) 0xff, (byte) 0xbf};
+
+        // Test et & Doğrula
+        assertEquals(Base64Sanitizer.Alphabet.STANDARD, Base64Sanitizer.decode(Base64.getEncoder().encodeToString(data)).alphabet());
+        assertEquals(Base64Sanitizer.Alphabet.URL_SAFE, Base64Sanitizer.decode(Base64.getUrlEncoder().encodeToString(data)).alphabet());
+
+        Base64Sanitizer.Result invalid = Base64Sanitizer.decode("AB*D\"E#");
+        assertFalse(invalid.isSuccess());
+        assertEquals("Illegal base64 character 2a", invalid.standardError());
+        assertArrayEquals(new int[]{2, 4, 6}, invalid.invalidPositions());
+    }
+
+    @Test
+    void decode_PayloadAboveRetainedSize_GetsABufferThatIsNotKept() {
+        // Düzenle
+        byte[] large = new byte[200_000];
+        new Random(7).nextBytes(large);
+        Base64Sanitizer.Result small = Base64Sanitizer.decode(Base64.getEncoder().encodeToString(new byte[]{1, 2, 3}));
+        byte[] retained = small.buffer();
+
+        // Test et
+        Base64Sanitizer.Result decoded = Base64Sanitizer.decode(Base64.getEncoder().encodeToString(large));
+        byte[] oversized = decoded.buffer();
+        Base64Sanitizer.Result again = Base64Sanitizer.decode(Base64.getEncoder().encodeToString(new byte[]{4, 5}));
+
+        // Doğrula
+        assertArrayEquals(large, decoded.toByteArray());
+        assertNotSame(retained, oversized);
+        assertSame(retained, again.buffer());
+        assertArrayEquals(new byte[]{4, 5}, again.toByteArray());
+    }
+
+    private static void assertLegacyEquals(Legacy expected, Base64Sanitizer.Result actual, String input) {
+        String description = "input: " + Arrays.toString(input.toCharArray());
+        if (expected.crashed) {
+            // Eski kod tek bir tırnak karakterinde substring ile patlıyordu; yenisi boş girdi olarak ele alır
+            return;
+        }
+        assertEquals(expected.decoded != null, actual.isSuccess(), description);
+        if (expected.decoded != null) {
+            assertArrayEquals(expected.decoded, actual.toByteArray(), description);
+        } else {
+            assertEquals(expected.standardError, actual.standardError(), description);
+            assertEquals(expected.urlSafeError, actual.urlSafeError(), description);
+        }
+    }
+
+    private static List<String> corpus() {
+        List<String> inputs = new ArrayList<>(List.of(
+                "", " ", "A", "AB", "ABC", "ABCD", "QQ", "QQ=", "QQ==", "QQ==QQ", "QUI=", "QUJD", "=", "==",
+                "\"QUJD\"", "\"", "\"\"", "QU...JD", "QU....JD", "...", "QUJD…", "\"QUJD…\"", "QU\nJD\r\n",
+                "\u0000QUJD\u0000", "QU\u0000JD", "+/+/", "-_-_", "+/-_", "QQ=é", "é", "QUJD=", "QUJDQ",
+                Base64.getMimeEncoder().encodeToString(new byte[300]),
+                Base64Helper.generateExample().get("base64")));
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder input = new StringBuilder();
+            int length = random.nextInt(14);
+            for (int j = 0; j < length; j++) {
+                input.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            inputs.add(input.toString());
+        }
+        for (int i = 0; i < 2_000; i++) {
+            byte[] data = new byte[random.nextInt(40)];
+            random.nextBytes(data);
+            inputs.add(random.nextBoolean()
+                    ? Base64.getEncoder().encodeToString(data)
+                    : Base64.getUrlEncoder().withoutPadding().encodeToString(data));
+        }
+        return inputs;
+    }
+
+    /**
+     * The cleanup and decode chain as it was written in InvoiceService, InvoiceController
+     * (lenient = false) and Base64Helper.safeBase64Decode (lenient = true).
+     */
+    private static Legacy legacyDecode(String input, boolean lenient) {
+        Legacy legacy = new Legacy();
+        try {
+            String clean = input.trim();
+            clean = clean.replaceAll("[\\s\\r\\n\\t]", "");
+            clean = clean.replace("...", "");
+            if (clean.startsWith("\"") && clean.endsWith("\"")) {
+                clean = clean.substring(1, clean.length() - 1);
+            }
+            if (lenient) {
+                if (clean.endsWith("…")) {
+                    clean = clean.substring(0, clean.length() - 1);
+                }
+                int remainder = clean.length() % 4;
+                if (remainder > 0) {
+                    clean = clean + "=".repeat(4 - remainder);
+                }
+            }
+            try {
+                legacy.decoded = Base64.getDecoder().decode(clean);
+            } catch (IllegalArgumentException e1) {
+                legacy.standardError = e1.getMessage();
+                try {
+                    legacy.decoded = Base64.getUrlDecoder().decode(clean);
+                } catch (IllegalArgumentException e2) {
+                    legacy.urlSafeError = e2.getMessage();
+                }
+            }
+        } catch (StringIndexOutOfBoundsException e) {
+            legacy.crashed = true;
+        }
+        if (legacy.decoded != null) {
+            legacy.standardError = null;
+        }
+        return legacy;
+    }
+
+    private static final class Legacy {
+        private byte[] decoded;
+        private String standardError;
+        private String urlSafeError;
+        private boolean crashed;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.invoiceapi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringCacheTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(1_000 * SECOND);
+
+    @Test
+    void get_CachesValuesAndMissesUntilTheyExpire() {
+        // Düzenle
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, Duration.ofSeconds(60), Duration.ofSeconds(5), clock::get);
+        AtomicInteger loads = new AtomicInteger();
+
+        // Test et & Doğrula
+        assertEquals(Optional.of("A"), cache.get("a", key -> { loads.incrementAndGet(); return Optional.of("A"); }));
+        assertEquals(Optional.of("A"), cache.get("a", key -> { loads.incrementAndGet(); return Optional.of("other"); }));
+        assertTrue(cache.get("b", key -> { loads.incrementAndGet(); return Optional.empty(); }).isEmpty());
+        assertTrue(cache.get("b", key -> { loads.incrementAndGet(); return Optional.of("B"); }).isEmpty());
+        assertEquals(2, loads.get());
+
+        // Negatif kayıt kendi, daha kısa süresiyle düşer
+        clock.addAndGet(5 * SECOND);
+        assertEquals(Optional.of("B"), cache.get("b", key -> Optional.of("B")));
+        assertEquals(Optional.of("A"), cache.get("a", key -> Optional.of("other")));
+        clock.addAndGet(55 * SECOND);
+        assertEquals(Optional.of("new"), cache.get("a", key -> Optional.of("new")));
+
+        assertEquals(new ExpiringCache.Stats(2, 1, 4), cache.stats());
+    }
+
+    @Test
+    void put_WinsOverAConcurrentLoadAndEvictsOldestKeys() {
+        // Düzenle
+        ExpiringCache<String, String> cache = new ExpiringCache<>(2, Duration.ofSeconds(60), Duration.ofSeconds(5), clock::get);
+
+        // Test et: yükleme sürerken kayıt yazılır
+        Optional<String> loaded = cache.get("a", key -> {
+            cache.put("a", "stored");
+            return Optional.empty();
+        });
+        cache.put("b", "B");
+        cache.put("c", "C");
+
+        // Doğrula
+        assertTrue(loaded.isEmpty());
+        assertEquals(2, cache.size());
+        assertEquals(Optional.of("C"), cache.get("c", key -> Optional.empty()));
+        assertEquals(Optional.of("reloaded"), cache.get("a", key -> Optional.of("reloaded")));
+    }
+
+    @Test
+    void removeValues_DropsMatchingValuesAndKeepsCachedMisses() {
+        // Düzenle
+        ExpiringCache<String, String> cache = new ExpiringCache<>(2, Duration.ofSeconds(60), Duration.ofSeconds(5), clock::get);
+        cache.put("a", "old");
+        cache.get("b", key -> Optional.empty());
+
+        // Test et
+        cache.removeValues("old"::equals);
+        cache.put("c", "C");
+
+        // Doğrula: "a" silindi, yer açıldığı için önbelleğe alınmış "b" boşluğu "c" ile birlikte tutulur
+        assertEquals(2, cache.size());
+        assertTrue(cache.get("b", key -> Optional.of("B")).isEmpty());
+        assertEquals(Optional.of("reloaded"), cache.get("a", key -> Optional.of("reloaded")));
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.invoiceapi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(1_000 * SECOND);
+
+    @Test
+    void tryAcquire_AdmitsBurstThenRefillsAtRate() {
+        // Düzenle
+        TokenBucketLimiter limiter = new TokenBucketLimiter(2, 3, 10, Duration.ofMinutes(1), clock::get);
+
+        // Test et & Doğrula
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("111"));
+        }
+        assertEquals(SECOND / 2, limiter.tryAcquire("111"));
+        // Diğer anahtarın kovası ayrı
+        assertEquals(0, limiter.tryAcquire("222"));
+
+        clock.addAndGet(SECOND / 2);
+        assertEquals(0, limiter.tryAcquire("111"));
+        assertTrue(limiter.tryAcquire("111") > 0);
+    }
+
+    @Test
+    void tryAcquire_EvictsRefilledBucketsAndSharesOverflowWhenFull() {
+        // Düzenle
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 1, 2, Duration.ofMinutes(1), clock::get);
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("b");
+
+        // Test et: tablo dolu ve iki kova da boş, yeni anahtarlar taşma kovasını paylaşır
+        long first = limiter.tryAcquire("c");
+        long second = limiter.tryAcquire("d");
+
+        // Doğrula
+        assertEquals(0, first);
+        assertTrue(second > 0);
+        assertEquals(2, limiter.size());
+
+        // Dolan kovalar düşülür, yer açılır
+        clock.addAndGet(2 * SECOND);
+        assertEquals(0, limiter.tryAcquire("e"));
+        assertEquals(1, limiter.size());
+    }
+}